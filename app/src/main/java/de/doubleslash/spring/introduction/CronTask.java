@@ -1,29 +1,85 @@
 package de.doubleslash.spring.introduction;
 
-import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.config.CronConfiguration;
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.LeaseLock;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
 import de.doubleslash.spring.introduction.repository.CarRepository;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.CARS_BUCKET;
 
 
-@AllArgsConstructor
 @Component
 @Configuration
 @EnableScheduling
 @Slf4j
 public class CronTask {
 
+    private static final String RETENTION_LEASE_NAME = "car-retention-";
+
     private final CarRepository repository;
+    private final CarImageRepository carImageRepository;
+    private final BlobStoreFileHandler fileHandler;
+    private final LeaseLock leaseLock;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor imageDeletionExecutor;
+    private final CronConfiguration configuration;
+    private final Counter deletedCarsCounter;
+    private final Counter deletedImagesCounter;
+    private final Timer runTimer;
+    private final MeterRegistry meterRegistry;
+    // cars deleted per second by the last run of this replica
+    private volatile double lastRunRate;
+    private final String owner = LeaseLock.newOwner();
+
+    public CronTask(CarRepository repository, CarImageRepository carImageRepository, BlobStoreFileHandler fileHandler,
+                    LeaseLock leaseLock, TransactionTemplate transactionTemplate,
+                    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                    Executor imageDeletionExecutor,
+                    CronConfiguration configuration, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.carImageRepository = carImageRepository;
+        this.fileHandler = fileHandler;
+        this.leaseLock = leaseLock;
+        this.transactionTemplate = transactionTemplate;
+        this.imageDeletionExecutor = imageDeletionExecutor;
+        this.configuration = configuration;
+        this.deletedCarsCounter = Counter.builder("retention.cars.deleted")
+                .description("Expired cars deleted from the database").register(meterRegistry);
+        this.deletedImagesCounter = Counter.builder("retention.images.deleted")
+                .description("Images of expired cars deleted from the blob store").register(meterRegistry);
+        this.runTimer = Timer.builder("retention.duration")
+                .description("Duration of the runs of the retention job").register(meterRegistry);
+        Gauge.builder("retention.rate", this, task -> task.lastRunRate)
+                .description("Cars deleted per second by the last run of the retention job")
+                .baseUnit("cars/s").register(meterRegistry);
+        this.meterRegistry = meterRegistry;
+    }
 
     @Scheduled(cron = "${configuration.cron.schedule}")
     public void scheduledDeletionOfOldData() {
@@ -36,9 +92,144 @@ public class CronTask {
         ));
 
         Instant oneDayAgoInstant = oneDayAgo.atZone(ZoneId.systemDefault()).toInstant();
-        List<Car> deletedCars = repository.deleteAllByDateBefore(oneDayAgoInstant);
+        deleteCarsCreatedBefore(oneDayAgoInstant);
+    }
+
+    /**
+     * Deletes the expired cars of every partition whose lease this replica acquires. All replicas run the job at the
+     * same time, each partition is only deleted by the first of them.
+     *
+     * @return number of deleted cars
+     */
+    public int deleteCarsCreatedBefore(Instant expiration) {
+        long start = System.nanoTime();
+        int partitions = configuration.getPartitions();
+        // replicas start with different partitions, so that they share the work instead of queueing for one lease
+        int firstPartition = ThreadLocalRandom.current().nextInt(partitions);
+        int deletedCars = 0;
+
+        for (int i = 0; i < partitions; i++) {
+            deletedCars += deletePartitionIfLeaseAcquired(expiration, (firstPartition + i) % partitions);
+        }
+
+        runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        lastRunRate = carsPerSecond(deletedCars, start);
+
+        return deletedCars;
+    }
+
+    private int deletePartitionIfLeaseAcquired(Instant expiration, int partition) {
+        CronConfiguration.Lease lease = configuration.getLease();
+
+        return leaseLock.callWithLease(RETENTION_LEASE_NAME + partition, owner, lease.getMaximum(),
+                        lease.getMinimum(), renewLease -> deletePartition(expiration, partition, renewLease))
+                .orElseGet(() -> {
+                    log.info("Cron job skipped partition %d of %d, its lease is held by another replica".formatted(
+                            partition, configuration.getPartitions()));
+                    return 0;
+                });
+    }
+
+    /**
+     * Deletes the expired cars of one partition in id order, in one short transaction per chunk. The images of a
+     * chunk are deleted from the blob store in the background while the next chunk is processed. The lease is renewed
+     * after every chunk; the deletion stops if it has been lost.
+     *
+     * @return number of deleted cars
+     */
+    private int deletePartition(Instant expiration, int partition, BooleanSupplier renewLease) {
+        long start = System.nanoTime();
+        List<CompletableFuture<Integer>> imageDeletions = new ArrayList<>();
+        int deletedCars = 0;
+        int deletedImages = 0;
+        Long afterId = 0L;
+        DeletedChunk chunk;
+
+        do {
+            final Long lastId = afterId;
+            chunk = transactionTemplate.execute(status -> deleteChunk(expiration, partition, lastId));
+
+            if (chunk.deletedCars() > 0) {
+                deletedCars += chunk.deletedCars();
+                deletedCarsCounter.increment(chunk.deletedCars());
+                deletedImages += chunk.imageObjectNames().size();
+                afterId = chunk.lastId();
+                imageDeletions.add(deleteImageObjects(chunk.imageObjectNames()));
+
+                log.info("Cron job progress - deleted %d car(s) of partition %d so far, %.1f car(s)/s".formatted(
+                        deletedCars, partition, carsPerSecond(deletedCars, start)));
+            }
 
-        log.info("Cron job successful - deleted %d car(s) from database".formatted(deletedCars.size()));
+            if (chunk.deletedCars() >= configuration.getChunkSize() && !renewLease.getAsBoolean()) {
+                log.warn("Cron job lost the lease of partition %d, stopping".formatted(partition));
+                break;
+            }
+        } while (chunk.deletedCars() >= configuration.getChunkSize());
+
+        int failedImages = imageDeletions.stream().mapToInt(CompletableFuture::join).sum();
+        long durationNanos = System.nanoTime() - start;
+        long durationMillis = durationNanos / 1_000_000;
+
+        // partitions skipped for their lease are not recorded
+        Timer.builder("retention.partition.duration")
+                .description("Duration of the deletion of one partition by the retention job")
+                .tag("partition", String.valueOf(partition))
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+
+        log.info(("Cron job successful - deleted %d car(s) of partition %d from database and %d of %d image(s) " +
+                "from blob store in %d ms, %.1f car(s)/s").formatted(deletedCars, partition,
+                deletedImages - failedImages, deletedImages, durationMillis, carsPerSecond(deletedCars, start)));
+
+        return deletedCars;
+    }
+
+    private DeletedChunk deleteChunk(Instant expiration, int partition, Long afterId) {
+        List<Long> ids = repository.findExpiredIds(expiration, afterId, configuration.getPartitions(), partition,
+                PageRequest.ofSize(configuration.getChunkSize()));
+
+        if (ids.isEmpty()) {
+            return new DeletedChunk(afterId, 0, List.of());
+        }
+
+        List<String> imageObjectNames = carImageRepository.findImageObjectNamesByCarIds(ids).stream()
+                .map(CarImageRepository.ImageObjectNameView::getImageObjectName)
+                .toList();
+        repository.deleteAllByIdIn(ids);
+
+        return new DeletedChunk(ids.get(ids.size() - 1), ids.size(), imageObjectNames);
     }
 
-}
\ No newline at end of file
+    /**
+     * @return number of images which could not be deleted
+     */
+    private CompletableFuture<Integer> deleteImageObjects(List<String> imageObjectNames) {
+        if (imageObjectNames.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        return fileHandler.deleteMultipleAsync(imageObjectNames, CARS_BUCKET, imageDeletionExecutor)
+                .thenApply(failedImageObjectNames -> {
+                    deletedImagesCounter.increment(imageObjectNames.size() - failedImageObjectNames.size());
+                    if (!failedImageObjectNames.isEmpty()) {
+                        log.error("Cron job failed to delete %d image object(s): %s".formatted(
+                                failedImageObjectNames.size(), failedImageObjectNames));
+                    }
+
+                    return failedImageObjectNames.size();
+                })
+                .exceptionally(e -> {
+                    log.error("Cron job failed to delete %d image object(s)".formatted(imageObjectNames.size()), e);
+
+                    return imageObjectNames.size();
+                });
+    }
+
+    private static double carsPerSecond(int deletedCars, long start) {
+        return deletedCars / Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+    }
+
+    // lastId is the cursor of the next chunk
+    private record DeletedChunk(Long lastId, int deletedCars, List<String> imageObjectNames) {
+    }
+}
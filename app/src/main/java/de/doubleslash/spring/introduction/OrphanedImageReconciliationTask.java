@@ -0,0 +1,152 @@
+package de.doubleslash.spring.introduction;
+
+import de.doubleslash.spring.introduction.config.CronConfiguration;
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.BlobStoreObjectInfo;
+import de.doubleslash.spring.introduction.model.LeaseLock;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.ImageObjectClaimRepository;
+import de.doubleslash.spring.introduction.repository.UploadReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.CARS_BUCKET;
+
+/**
+ * Deletes image objects which are not referenced by any {@link de.doubleslash.spring.introduction.model.CarImage},
+ * e.g. because the car could not be saved after its images had been uploaded. Presigned uploads are kept while their
+ * reservation lasts; expired reservations and claims of image objects are removed.
+ */
+@Component
+@Slf4j
+public class OrphanedImageReconciliationTask {
+
+    private static final String RECONCILIATION_LEASE_NAME = "image-reconciliation";
+
+    private final BlobStoreFileHandler fileHandler;
+    private final CarImageRepository carImageRepository;
+    private final UploadReservationRepository uploadReservationRepository;
+    private final ImageObjectClaimRepository claimRepository;
+    private final LeaseLock leaseLock;
+    private final CronConfiguration configuration;
+    private final Counter deletedOrphansCounter;
+    private final String owner = LeaseLock.newOwner();
+
+    public OrphanedImageReconciliationTask(BlobStoreFileHandler fileHandler, CarImageRepository carImageRepository,
+                                           UploadReservationRepository uploadReservationRepository,
+                                           ImageObjectClaimRepository claimRepository, LeaseLock leaseLock, CronConfiguration configuration,
+                                           MeterRegistry meterRegistry) {
+        this.fileHandler = fileHandler;
+        this.carImageRepository = carImageRepository;
+        this.uploadReservationRepository = uploadReservationRepository;
+        this.claimRepository = claimRepository;
+        this.leaseLock = leaseLock;
+        this.configuration = configuration;
+        this.deletedOrphansCounter = Counter.builder("reconciliation.orphans.deleted")
+                .description("Image objects without a car deleted from the blob store").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${configuration.cron.reconciliation.schedule}")
+    public void scheduledReconciliation() {
+        Instant uploadedBefore = Instant.now().minus(configuration.getReconciliation().getGracePeriod());
+
+        log.info("Beginning reconciliation: attempting to delete image objects uploaded before %s without a car"
+                .formatted(uploadedBefore));
+
+        deleteOrphanedImagesUploadedBefore(uploadedBefore);
+    }
+
+    /**
+     * Deletes the orphaned images if this replica acquires the lease of the job.
+     *
+     * @return number of deleted image objects
+     */
+    public int deleteOrphanedImagesUploadedBefore(Instant uploadedBefore) {
+        CronConfiguration.Lease lease = configuration.getLease();
+
+        return leaseLock.callWithLease(RECONCILIATION_LEASE_NAME, owner, lease.getMaximum(), lease.getMinimum(),
+                        renewLease -> deleteOrphanedImages(uploadedBefore, renewLease))
+                .orElseGet(() -> {
+                    log.info("Reconciliation skipped, its lease is held by another replica");
+                    return 0;
+                });
+    }
+
+    /**
+     * Walks the bucket page by page in name order. The names of each page are looked up in the database at once, so
+     * memory is bounded by the page size however many objects the bucket holds. The lease is renewed after every
+     * page; the job stops if it has been lost.
+     *
+     * @return number of deleted image objects
+     */
+    private int deleteOrphanedImages(Instant uploadedBefore, BooleanSupplier renewLease) {
+        long start = System.nanoTime();
+        int pageSize = configuration.getReconciliation().getPageSize();
+        int listedImages = 0;
+        int orphanedImages = 0;
+        int failedImages = 0;
+        String startAfter = null;
+        List<BlobStoreObjectInfo> page;
+
+        try {
+            uploadReservationRepository.deleteExpired();
+            claimRepository.deleteExpired();
+
+            do {
+                page = fileHandler.listFiles(CARS_BUCKET, startAfter, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                listedImages += page.size();
+                startAfter = page.get(page.size() - 1).name();
+
+                List<String> orphans = findOrphans(page, uploadedBefore);
+                if (!orphans.isEmpty()) {
+                    int failedPageImages = fileHandler.deleteMultiple(orphans, CARS_BUCKET).size();
+                    orphanedImages += orphans.size();
+                    failedImages += failedPageImages;
+                    deletedOrphansCounter.increment(orphans.size() - failedPageImages);
+                }
+
+                if (page.size() >= pageSize && !renewLease.getAsBoolean()) {
+                    log.warn("Reconciliation lost its lease, stopping");
+                    break;
+                }
+            } while (page.size() >= pageSize);
+        } catch (Exception e) {
+            log.error("Reconciliation failed after listing %d image object(s)".formatted(listedImages), e);
+        }
+
+        long durationMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Reconciliation finished - listed %d image object(s), deleted %d of %d orphan(s) in %d ms".formatted(
+                listedImages, orphanedImages - failedImages, orphanedImages, durationMillis));
+
+        return orphanedImages - failedImages;
+    }
+
+    private List<String> findOrphans(List<BlobStoreObjectInfo> page, Instant uploadedBefore) {
+        List<String> candidates = page.stream()
+                .filter(object -> object.lastModified().isBefore(uploadedBefore))
+                .map(BlobStoreObjectInfo::name)
+                .toList();
+
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        Set<String> reserved = new HashSet<>(uploadReservationRepository.findReservedImageObjectNames(candidates));
+        return carImageRepository.findUnreferencedImageObjectNames(candidates).stream()
+                .filter(name -> !reserved.contains(name))
+                .toList();
+    }
+}
@@ -0,0 +1,39 @@
+package de.doubleslash.spring.introduction.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "configuration.cron")
+@Getter
+@Setter
+public class CronConfiguration {
+    private String schedule;
+    // expired cars deleted per transaction
+    private int chunkSize = 500;
+    // cars are split into this many partitions by id, each partition is deleted by a single replica
+    private int partitions = 1;
+    private Lease lease = new Lease();
+    private Reconciliation reconciliation = new Reconciliation();
+
+    @Getter
+    @Setter
+    public static class Lease {
+        // a lease which has not been renewed for this long, e.g. because its replica crashed, can be taken over
+        private Duration maximum = Duration.ofMinutes(10);
+        // a finished run keeps its lease at least this long, so that replicas starting the same tick later skip it
+        private Duration minimum = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Reconciliation {
+        private String schedule;
+        // objects listed from the blob store and checked against the database at once
+        private int pageSize = 1000;
+        // younger objects may belong to a car which is still being saved, so they are never treated as orphans
+        private Duration gracePeriod = Duration.ofHours(1);
+    }
+}
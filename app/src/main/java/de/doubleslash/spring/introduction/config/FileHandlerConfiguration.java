@@ -4,6 +4,10 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
 
 @ConfigurationProperties(prefix = "handler")
 @ConfigurationPropertiesScan
@@ -13,4 +17,73 @@ public class FileHandlerConfiguration {
     private String endpoint;
     private String username;
     private String password;
+    private Http http = new Http();
+    private Cache cache = new Cache();
+    private Upload upload = new Upload();
+    private Renditions renditions = new Renditions();
+    private Presigned presigned = new Presigned();
+    private ObjectNaming objectNaming = ObjectNaming.CONTENT_HASH;
+
+    public enum ObjectNaming {
+        // every upload is stored as a new object
+        RANDOM,
+        // identical images are stored once, named by the hash of their content
+        CONTENT_HASH
+    }
+
+    @Getter
+    @Setter
+    public static class Http {
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        // maximum time a read or write waits for the blob store, not the duration of a whole transfer
+        private Duration readTimeout = Duration.ofSeconds(60);
+        private Duration writeTimeout = Duration.ofSeconds(60);
+        // requests sent to the blob store at the same time, further requests wait for one of them to finish
+        private int maxRequests = 64;
+        // connections kept open for reuse after their request, each closed after keep-alive without use
+        private int maxIdleConnections = 64;
+        private Duration keepAlive = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private boolean enabled = true;
+        // total size of all cached images
+        private DataSize maximumSize = DataSize.ofMegabytes(64);
+        // larger images are streamed from the blob store without being cached
+        private DataSize maximumEntrySize = DataSize.ofMegabytes(2);
+    }
+
+    @Getter
+    @Setter
+    public static class Upload {
+        // number of images uploaded at the same time, shared by all requests
+        private int parallelism = 8;
+        // images streamed without a known size are uploaded in parts of this size, at least 5MB
+        private DataSize partSize = DataSize.ofMegabytes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Renditions {
+        // number of renditions generated at the same time, shared by all requests
+        private int parallelism = 2;
+        // renditions waiting to be generated; further ones are skipped after uploads and rejected on request
+        private int queueCapacity = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Presigned {
+        // clients download and upload images through presigned URLs instead of through the app
+        private boolean enabled = false;
+        // validity of a presigned URL
+        private Duration expiry = Duration.ofMinutes(5);
+        // endpoint through which clients reach the blob store, handler.endpoint if empty
+        @Nullable
+        private String endpoint;
+        // region of the blob store, signing a URL would have to ask for it otherwise
+        private String region = "us-east-1";
+    }
 }
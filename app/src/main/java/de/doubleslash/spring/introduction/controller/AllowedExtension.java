@@ -0,0 +1,47 @@
+package de.doubleslash.spring.introduction.controller;
+
+import org.springframework.http.MediaType;
+
+import javax.annotation.Nullable;
+
+/**
+ * Extensions of the images accepted by the app, named as they appear in filenames.
+ */
+public enum AllowedExtension {
+    png(MediaType.IMAGE_PNG),
+    jpg(MediaType.IMAGE_JPEG),
+    jpeg(MediaType.IMAGE_JPEG),
+    webp(MediaType.valueOf("image/webp"));
+
+    // values() clones the array on every call
+    private static final AllowedExtension[] EXTENSIONS = values();
+
+    private final MediaType mediaType;
+
+    AllowedExtension(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Looks up the extension making up the rest of <code>filename</code> from <code>start</code>, without copying it.
+     *
+     * @return the extension, null if it is not allowed
+     */
+    @Nullable
+    static AllowedExtension fromFilename(String filename, int start) {
+        int length = filename.length() - start;
+
+        for (AllowedExtension extension : EXTENSIONS) {
+            String name = extension.name();
+            if (name.length() == length && filename.regionMatches(start, name, 0, length)) {
+                return extension;
+            }
+        }
+
+        return null;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,164 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.BulkCarResult;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.JsonStringToInstanceConverter;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.CarRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.*;
+
+/**
+ * Adds many cars at once. Every car is validated and its image uploaded on its own, rejected cars are reported
+ * without failing the whole request. All accepted cars and images are then inserted in a single transaction, which
+ * Hibernate sends as JDBC batches.
+ */
+@Service
+@Slf4j
+public class CarBulkIngestionService {
+    public final static int MAX_CARS_PER_BULK_REQUEST = 1000;
+    public final static String BULK_REQUEST_TOO_LARGE_STRING = "A bulk request may contain at most %d cars."
+            .formatted(MAX_CARS_PER_BULK_REQUEST);
+    public final static String BULK_REQUEST_TOO_MANY_FILES_STRING = "A bulk request may not contain more files than " +
+            "cars.";
+
+    private final CarDealershipService carDealershipService;
+    private final CarRepository carRepository;
+    private final CarImageRepository carImageRepository;
+    private final BlobStoreFileHandler fileHandler;
+    private final JsonStringToInstanceConverter converter;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageRenditionService imageRenditionService;
+
+    public CarBulkIngestionService(CarDealershipService carDealershipService, CarRepository carRepository,
+                                   CarImageRepository carImageRepository, BlobStoreFileHandler fileHandler,
+                                   JsonStringToInstanceConverter converter,
+                                   PlatformTransactionManager transactionManager,
+                                   ImageRenditionService imageRenditionService) {
+        this.carDealershipService = carDealershipService;
+        this.carRepository = carRepository;
+        this.carImageRepository = carImageRepository;
+        this.fileHandler = fileHandler;
+        this.converter = converter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.imageRenditionService = imageRenditionService;
+    }
+
+    /**
+     * Adds the cars of the given JSON array. The image at position <code>i</code> of <code>images</code> belongs to
+     * the car at position <code>i</code>; cars without a matching image are added without one.
+     *
+     * @return one result per car, in the order of the request
+     */
+    public List<BulkCarResult> addCarsIfValid(String carsJson, List<MultipartFile> images) throws Exception {
+        List<Car> cars = Arrays.asList(converter.convert(carsJson, Car[].class));
+
+        if (cars.size() > MAX_CARS_PER_BULK_REQUEST) {
+            throw new InvalidBulkRequestException(BULK_REQUEST_TOO_LARGE_STRING);
+        }
+        if (images.size() > cars.size()) {
+            throw new InvalidBulkRequestException(BULK_REQUEST_TOO_MANY_FILES_STRING);
+        }
+
+        BulkCarResult[] results = new BulkCarResult[cars.size()];
+        List<Integer> acceptedIndices = new ArrayList<>();
+        List<String> uploadedImageObjectNames = new ArrayList<>();
+
+        for (int i = 0; i < cars.size(); i++) {
+            Pair<Boolean, String> uploadResult = validateAndUploadImage(cars.get(i), i < images.size() ?
+                    images.get(i) : null);
+
+            if (uploadResult.getFirst()) {
+                acceptedIndices.add(i);
+                uploadedImageObjectNames.add(uploadResult.getSecond());
+            } else {
+                results[i] = BulkCarResult.rejected(i, uploadResult.getSecond());
+            }
+        }
+
+        List<String> imageObjectNames = uploadedImageObjectNames.stream().filter(name -> !name.isEmpty()).toList();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> saveCarsAndImages(cars, acceptedIndices,
+                    uploadedImageObjectNames));
+        } catch (RuntimeException e) {
+            // nothing has been saved, so none of the uploaded images is referenced
+            fileHandler.releaseUploads(imageObjectNames);
+            fileHandler.deleteMultiple(imageObjectNames, CARS_BUCKET);
+            throw e;
+        }
+
+        fileHandler.releaseUploads(imageObjectNames);
+        imageRenditionService.generateRenditionsAsync(imageObjectNames);
+        acceptedIndices.forEach(i -> results[i] = BulkCarResult.added(i, cars.get(i)));
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Returns whether the car is valid and its image, if any, has been uploaded. The second member of the
+     * <code>Pair</code> is the image object name (empty if there is no image) or the reason for rejecting the car.
+     */
+    private Pair<Boolean, String> validateAndUploadImage(Car car, MultipartFile image) {
+        if (car == null || car.getBrand() == null || car.getModel() == null
+                || !carDealershipService.validateCarBrandAndModelStringLengths(car)) {
+            return Pair.of(false, CAR_MODEL_AND_OR_BRAND_NAME_INVALID_STRING);
+        }
+
+        if (image == null || image.isEmpty()) {
+            return Pair.of(true, "");
+        }
+
+        AllowedExtension extension = ImageFilenameValidator.validateUploadFilename(image.getOriginalFilename());
+
+        if (extension == null) {
+            return Pair.of(false, FILE_UPLOAD_INVALID_NAME_FAILURE_STRING);
+        }
+
+        try (InputStream inputStream = image.getInputStream()) {
+            return Pair.of(true, fileHandler.uploadFile(inputStream, image.getSize(), extension.name(), CARS_BUCKET));
+        } catch (Exception e) {
+            log.error("Upload of image for bulk request failed due to exception", e);
+            return Pair.of(false, FILE_UPLOAD_INTERNAL_ERROR_FAILURE_STRING);
+        }
+    }
+
+    private void saveCarsAndImages(List<Car> cars, List<Integer> acceptedIndices,
+                                   List<String> uploadedImageObjectNames) {
+        List<Car> acceptedCars = acceptedIndices.stream().map(cars::get).toList();
+        List<CarImage> carImages = new ArrayList<>();
+
+        // always insert, even if the client sent ids
+        acceptedCars.forEach(car -> car.setId(null));
+
+        carRepository.saveAll(acceptedCars);
+
+        for (int i = 0; i < acceptedCars.size(); i++) {
+            Car car = acceptedCars.get(i);
+            String imageObjectName = uploadedImageObjectNames.get(i);
+
+            if (imageObjectName.isEmpty()) {
+                car.setCarImageList(List.of());
+            } else {
+                CarImage carImage = new CarImage(car, imageObjectName);
+                car.setCarImageList(List.of(carImage));
+                carImages.add(carImage);
+            }
+        }
+
+        carImageRepository.saveAll(carImages);
+    }
+}
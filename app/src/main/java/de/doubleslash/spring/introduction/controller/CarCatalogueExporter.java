@@ -0,0 +1,77 @@
+package de.doubleslash.spring.introduction.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.repository.CarRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole car catalogue as newline-delimited JSON. Cars are read through a database cursor and detached
+ * after every chunk, so memory usage does not depend on the size of the table.
+ */
+@Service
+@Slf4j
+public class CarCatalogueExporter {
+    // an export is cut off after this time, other async responses keep spring.mvc.async.request-timeout
+    public static final Duration EXPORT_TIMEOUT = Duration.ofMinutes(30);
+    // matches the batch size of Car.carImageList, so that every chunk initializes its images with one query
+    private static final int CHUNK_SIZE = 100;
+
+    private final CarRepository carRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public CarCatalogueExporter(CarRepository carRepository, EntityManager entityManager, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.carRepository = carRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void exportAllCars(OutputStream outputStream) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Car> cars = carRepository.streamAllByOrderByIdAsc()) {
+                List<Car> chunk = new ArrayList<>(CHUNK_SIZE);
+                Iterator<Car> iterator = cars.iterator();
+
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == CHUNK_SIZE) {
+                        writeChunkAndDetach(chunk, outputStream);
+                    }
+                }
+                writeChunkAndDetach(chunk, outputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeChunkAndDetach(List<Car> chunk, OutputStream outputStream) throws IOException {
+        for (Car car : chunk) {
+            outputStream.write(objectMapper.writeValueAsBytes(car));
+            outputStream.write('\n');
+        }
+        outputStream.flush();
+
+        // nothing is modified during the export, so the whole persistence context can be dropped
+        entityManager.clear();
+        chunk.clear();
+    }
+}
@@ -1,34 +1,83 @@
 package de.doubleslash.spring.introduction.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import de.doubleslash.spring.introduction.model.BlobStoreObject;
+import de.doubleslash.spring.introduction.model.BulkCarResult;
 import de.doubleslash.spring.introduction.model.Car;
 import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.CarSummary;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.util.Pair;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static de.doubleslash.spring.introduction.controller.CarDealershipService.*;
 
 @RestController
+@Profile("!reactive")
 @AllArgsConstructor
 @Slf4j
 public class CarDealershipController {
 
+    static final CacheControl IMAGE_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic()
+            .immutable();
+
     private final CarDealershipService carDealershipService;
+    private final CarCatalogueExporter carCatalogueExporter;
+    private final CarBulkIngestionService carBulkIngestionService;
+    private final StreamingCarUploadService streamingCarUploadService;
+    private final PresignedImageService presignedImageService;
 
     @GetMapping(CARS_ROOT)
-    public ResponseEntity<List<Car>> allCars() {
-        return new ResponseEntity<>(carDealershipService.getAllCars(), HttpStatus.OK);
+    public ResponseEntity<List<Car>> allCars(@RequestParam(value = "after", defaultValue = "0") Long afterId,
+                                             @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE)
+                                             int limit) {
+        List<Car> page = carDealershipService.getCarPage(afterId, limit);
+
+        return pageResponse(page, limit, page.isEmpty() ? null : page.get(page.size() - 1).getId());
+    }
+
+    @GetMapping(value = CARS_ROOT, params = "view=summary")
+    public ResponseEntity<List<CarSummary>> allCarSummaries(@RequestParam(value = "after", defaultValue = "0")
+                                                            Long afterId,
+                                                            @RequestParam(value = "limit",
+                                                                    defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        List<CarSummary> page = carDealershipService.getCarSummaryPage(afterId, limit);
+
+        return pageResponse(page, limit, page.isEmpty() ? null : page.get(page.size() - 1).id());
+    }
+
+    /**
+     * Writes the catalogue on an async thread like a {@link StreamingResponseBody}, but with a timeout of its own: an
+     * export of the whole table may take far longer than the default async timeout allows any other response.
+     */
+    @GetMapping(value = CARS_ROOT + "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<Void> streamAllCars(HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+        return new WebAsyncTask<>(CarCatalogueExporter.EXPORT_TIMEOUT.toMillis(), () -> {
+            carCatalogueExporter.exportAllCars(response.getOutputStream());
+            return null;
+        });
     }
 
     @GetMapping(IMAGES_ROOT)
@@ -44,21 +93,61 @@ public class CarDealershipController {
     @GetMapping(value = IMAGES_ROOT + "/{imageObjectName}", produces = {MediaType.IMAGE_PNG_VALUE,
             MediaType.IMAGE_JPEG_VALUE, "image/webp"})
     @ResponseBody
-    public ResponseEntity<byte[]> getImage(@Valid @NotNull @PathVariable String imageObjectName) throws
-            Exception {
+    public ResponseEntity<StreamingResponseBody> getImage(@Valid @NotNull @PathVariable String imageObjectName,
+                                                          @RequestParam(value = "size", required = false)
+                                                          ImageRendition size,
+                                                          @RequestHeader HttpHeaders requestHeaders)
+            throws Exception {
+
+        // the client downloads the image from the blob store itself
+        if (presignedImageService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(presignedImageService.getImageUrlIfValid(imageObjectName, size))
+                    .cacheControl(presignedImageService.getRedirectCacheControl()).build();
+        }
 
-        Pair<byte[], MediaType> imageData = carDealershipService.getImageIfValid(imageObjectName);
+        MediaType mediaType = carDealershipService.getImageMediaTypeIfValid(imageObjectName);
+        String eTag = getImageETag(imageObjectName, size);
+
+        // image objects never change, so a matching tag can be answered without touching the blob store
+        if (eTagMatches(requestHeaders.getIfNoneMatch(), eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(IMAGE_CACHE_CONTROL).build();
+        }
+
+        HttpRange range = getRequestedRange(requestHeaders, eTag);
+
+        if (range == null) {
+            BlobStoreObject image = carDealershipService.getImageIfValid(imageObjectName, size).getFirst();
+
+            return imageResponse(HttpStatus.OK, mediaType, eTag, image).body(streamAndClose(image));
+        }
+
+        long length = carDealershipService.getImageSizeIfValid(imageObjectName, size);
+        long start = range.getRangeStart(length);
+        long end = range.getRangeEnd(length);
+
+        if (start >= length || start > end) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */%d".formatted(length)).build();
+        }
 
-        return ResponseEntity.ok().contentType(imageData.getSecond()).contentLength(imageData.getFirst().length)
-                .body(imageData.getFirst());
+        BlobStoreObject part = carDealershipService.getImageRangeIfValid(imageObjectName, size, start,
+                end - start + 1).getFirst();
+
+        return imageResponse(HttpStatus.PARTIAL_CONTENT, mediaType, eTag, part)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, length))
+                .body(streamAndClose(part));
     }
 
+    /**
+     * Expects the car as <code>car</code> field and its images as <code>file</code> parts. The request is parsed by
+     * {@link StreamingCarUploadService} while it is received, Spring's multipart resolution is lazy and never touches
+     * it.
+     */
     @PostMapping(value = CARS_ROOT + "/add", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<String> addCarAndImage(@Valid @NotNull @RequestParam("car") String newCarJson,
-                                                 @Valid @NotNull @RequestParam("file") MultipartFile imageOfNewCar)
-            throws InvalidFileRequestException, CarModelAndOrBrandStringInvalidException, JsonProcessingException {
+    public ResponseEntity<String> addCarAndImage(HttpServletRequest request) throws Exception {
 
-        Pair<Boolean, Car> carDataIfAdded = carDealershipService.addCarAndImageIfValid(newCarJson, imageOfNewCar);
+        Pair<Boolean, Car> carDataIfAdded = streamingCarUploadService.addCarAndImagesIfValid(request);
 
         if (!carDataIfAdded.getFirst()) {
             return new ResponseEntity<>(FILE_UPLOAD_INTERNAL_ERROR_FAILURE_STRING, HttpStatus.INTERNAL_SERVER_ERROR);
@@ -67,6 +156,14 @@ public class CarDealershipController {
         }
     }
 
+    @PostMapping(value = CARS_ROOT + "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<BulkCarResult>> addCars(@Valid @NotNull @RequestParam("cars") String carsJson,
+                                                       @RequestParam(value = "file", required = false)
+                                                       List<MultipartFile> images) throws Exception {
+        return new ResponseEntity<>(carBulkIngestionService.addCarsIfValid(carsJson,
+                images == null ? List.of() : images), HttpStatus.OK);
+    }
+
     @PostMapping(CARS_ROOT + "/replace")
     public ResponseEntity<String> replaceCar(@Valid @NotNull @RequestParam("oldId") Long oldCarId,
                                              @Valid @NotNull @RequestParam("car") String carString,
@@ -97,7 +194,60 @@ public class CarDealershipController {
         return new ResponseEntity<>(responseText, HttpStatus.OK);
     }
 
-    enum AllowedExtension {
-        png, jpg, jpeg, webp
+    /**
+     * Adds the cursor of the next page if the current page is full, i.e. if there might be more cars.
+     */
+    static <T> ResponseEntity<List<T>> pageResponse(List<T> page, int limit, Long lastId) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (lastId != null && page.size() >= Math.min(limit, MAX_PAGE_SIZE)) {
+            response.header(NEXT_CURSOR_HEADER, lastId.toString());
+        }
+
+        return response.body(page);
+    }
+
+    static boolean eTagMatches(List<String> requestedETags, String eTag) {
+        return requestedETags.stream().anyMatch(requested -> requested.equals("*")
+                || (requested.startsWith("W/") ? requested.substring(2) : requested).equals(eTag));
+    }
+
+    /**
+     * Returns the single byte range requested by the client, or <code>null</code> if the full image should be sent.
+     * Unparsable, multi-part and outdated (<code>If-Range</code>) requests fall back to the full image.
+     */
+    static HttpRange getRequestedRange(HttpHeaders requestHeaders, String eTag) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(eTag)) {
+            return null;
+        }
+
+        try {
+            List<HttpRange> ranges = requestHeaders.getRange();
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ResponseEntity.BodyBuilder imageResponse(HttpStatus status, MediaType mediaType, String eTag,
+                                                            BlobStoreObject image) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status).contentType(mediaType).eTag(eTag)
+                .cacheControl(IMAGE_CACHE_CONTROL).header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (image.length() >= 0) {
+            response.contentLength(image.length());
+        }
+
+        return response;
+    }
+
+    /**
+     * Copies the image through a fixed-size buffer so that heap usage does not depend on the size of the image.
+     */
+    private static StreamingResponseBody streamAndClose(BlobStoreObject image) {
+        return outputStream -> {
+            try (image) {
+                StreamUtils.copy(image.stream(), outputStream);
+            }
+        };
     }
 }
\ No newline at end of file
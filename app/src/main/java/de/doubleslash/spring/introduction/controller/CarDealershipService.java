@@ -2,23 +2,30 @@ package de.doubleslash.spring.introduction.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.BlobStoreObject;
 import de.doubleslash.spring.introduction.model.Car;
 import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.CarSummary;
+import de.doubleslash.spring.introduction.model.ImageRendition;
 import de.doubleslash.spring.introduction.model.JsonStringToInstanceConverter;
 import de.doubleslash.spring.introduction.repository.CarImageRepository;
 import de.doubleslash.spring.introduction.repository.CarRepository;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.util.Pair;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
-import java.util.Arrays;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -34,26 +41,61 @@ public class CarDealershipService {
     public final static String CARS_ROOT = "/cars";
     public final static String IMAGES_ROOT = "/images";
     public final static String CAR_NOT_FOUND_STRING = "No car with requested id found.";
+    public final static String IMAGE_NOT_FOUND_STRING = "No image with requested name found.";
     public final static String DELETE_CAR_SUCCESS_STRING = "Deletion successful.";
     public final static String DELETE_CAR_BY_BRAND_SUCCESS_STRING = "Successfully deleted %d car(s) of brand %s.";
     public final static String DELETE_CAR_BY_BRAND_NONE_DELETED_NEUTRAL_STRING = "No cars were deleted.";
+    public final static String IMAGE_RENDITION_UNAVAILABLE_STRING = "Image rendition is not available yet, please " +
+            "try again later.";
+    public final static String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public final static int DEFAULT_PAGE_SIZE = 100;
+    public final static int MAX_PAGE_SIZE = 1000;
+    public final static int MAX_IMAGES_PER_CAR = 20;
+    public final static String TOO_MANY_IMAGES_STRING = "A car may have at most %d images."
+            .formatted(MAX_IMAGES_PER_CAR);
 
     private CarRepository carRepository;
     private CarImageRepository carImageRepository;
     private BlobStoreFileHandler fileHandler;
     private JsonStringToInstanceConverter converter;
+    private ImageUploadPipeline imageUploadPipeline;
+    private ImageRenditionService imageRenditionService;
 
-    @NotNull
-    public static MediaType getMediaType(String fileExtension) {
-        return switch (AllowedExtension.valueOf(fileExtension)) {
-            case png -> MediaType.IMAGE_PNG;
-            case jpg, jpeg -> MediaType.IMAGE_JPEG;
-            case webp -> MediaType.valueOf("image/webp");
-        };
+    static Pageable firstPageOf(int limit) {
+        return PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
     }
 
-    public List<Car> getAllCars() {
-        return carRepository.findAll();
+    /**
+     * Returns up to <code>limit</code> cars with an id greater than <code>afterId</code>, ordered by id. The id of the
+     * last car is the cursor for the next page.
+     */
+    public List<Car> getCarPage(Long afterId, int limit) {
+        List<Long> ids = carRepository.findIdsByIdGreaterThan(afterId, firstPageOf(limit));
+
+        return ids.isEmpty() ? List.of() : carRepository.findWithImagesByIdInOrderByIdAsc(ids);
+    }
+
+    /**
+     * Same as {@link #getCarPage(Long, int)}, but returns summaries which are built from two queries without loading
+     * any entities.
+     */
+    public List<CarSummary> getCarSummaryPage(Long afterId, int limit) {
+        List<CarSummary> summaries = carRepository.findSummariesByIdGreaterThan(afterId, firstPageOf(limit));
+
+        if (summaries.isEmpty()) {
+            return summaries;
+        }
+
+        Map<Long, List<String>> imageObjectNamesByCarId = carImageRepository
+                .findImageObjectNamesByCarIds(summaries.stream().map(CarSummary::id).toList()).stream()
+                .collect(Collectors.groupingBy(CarImageRepository.ImageObjectNameView::getCarId,
+                        Collectors.mapping(CarImageRepository.ImageObjectNameView::getImageObjectName,
+                                Collectors.toList())));
+
+        return summaries.stream()
+                .map(summary -> summary.withImageObjectNames(imageObjectNamesByCarId.getOrDefault(summary.id(),
+                        List.of())))
+                .toList();
     }
 
     public List<CarImage> getAllCarImages() {
@@ -72,16 +114,82 @@ public class CarDealershipService {
         return optionalCar.get();
     }
 
-    public Pair<byte[], MediaType> getImageIfValid(String imageObjectName) throws Exception {
-        Pair<Boolean, String> fileValidationResult = validateImageFilenameAndReturnExtension(imageObjectName);
+    /**
+     * Image objects are immutable once uploaded, so their name doubles as a strong entity tag.
+     */
+    @NotNull
+    public static String getImageETag(String imageObjectName) {
+        return "\"" + imageObjectName + "\"";
+    }
+
+    @NotNull
+    public static String getImageETag(String imageObjectName, @Nullable ImageRendition rendition) {
+        return getImageETag(rendition == null ? imageObjectName : rendition.objectName(imageObjectName));
+    }
+
+    public AllowedExtension getImageExtensionIfValid(String imageObjectName) throws InvalidFileRequestException {
+        AllowedExtension extension = ImageFilenameValidator.validateObjectName(imageObjectName);
 
-        if (!fileValidationResult.getFirst()) {
+        if (extension == null) {
             throw new InvalidFileRequestException(FILE_UPLOAD_INVALID_NAME_FAILURE_STRING);
         }
 
-        MediaType mediaType = getMediaType(fileValidationResult.getSecond());
+        return extension;
+    }
+
+    public MediaType getImageMediaTypeIfValid(String imageObjectName) throws InvalidFileRequestException {
+        return getImageExtensionIfValid(imageObjectName).getMediaType();
+    }
+
+    /**
+     * Opens the requested image for streaming. The caller is responsible for closing the returned
+     * <code>BlobStoreObject</code>.
+     */
+    public Pair<BlobStoreObject, MediaType> getImageIfValid(String imageObjectName) throws Exception {
+        return getImageIfValid(imageObjectName, null);
+    }
+
+    /**
+     * Same as {@link #getImageIfValid(String)}, but opens the given rendition of the image if it is not null.
+     */
+    public Pair<BlobStoreObject, MediaType> getImageIfValid(String imageObjectName,
+                                                            @Nullable ImageRendition rendition) throws Exception {
+        AllowedExtension extension = getImageExtensionIfValid(imageObjectName);
+
+        return Pair.of(callWithImageOrRendition(imageObjectName, extension, rendition,
+                (bucketName, objectName) -> fileHandler.downloadFileStream(objectName, bucketName)),
+                extension.getMediaType());
+    }
+
+    /**
+     * Opens <code>length</code> bytes of the requested image or its rendition, starting at <code>offset</code>, for
+     * streaming. The caller is responsible for closing the returned <code>BlobStoreObject</code>.
+     */
+    public Pair<BlobStoreObject, MediaType> getImageRangeIfValid(String imageObjectName,
+                                                                 @Nullable ImageRendition rendition, long offset,
+                                                                 long length) throws Exception {
+        AllowedExtension extension = getImageExtensionIfValid(imageObjectName);
+
+        return Pair.of(callWithImageOrRendition(imageObjectName, extension, rendition,
+                (bucketName, objectName) -> fileHandler.downloadFileRange(objectName, bucketName, offset, length)),
+                extension.getMediaType());
+    }
+
+    public long getImageSizeIfValid(String imageObjectName, @Nullable ImageRendition rendition) throws Exception {
+        AllowedExtension extension = getImageExtensionIfValid(imageObjectName);
 
-        return Pair.of(fileHandler.downloadFile(imageObjectName, CARS_BUCKET), mediaType);
+        return callWithImageOrRendition(imageObjectName, extension, rendition,
+                (bucketName, objectName) -> fileHandler.getFileSize(objectName, bucketName));
+    }
+
+    private <T> T callWithImageOrRendition(String imageObjectName, AllowedExtension extension,
+                                           @Nullable ImageRendition rendition,
+                                           ImageRenditionService.BlobStoreCall<T> blobStoreCall) throws Exception {
+        if (rendition == null) {
+            return blobStoreCall.call(CARS_BUCKET, imageObjectName);
+        }
+
+        return imageRenditionService.callWithImageOrRendition(imageObjectName, extension, rendition, blobStoreCall);
     }
 
     public Car carFromJsonIfValid(String carString) throws CarModelAndOrBrandStringInvalidException, JsonProcessingException {
@@ -95,8 +203,13 @@ public class CarDealershipService {
 
     public Pair<Boolean, Car> addCarAndImageIfValid(String newCarJson, MultipartFile imageOfNewCar)
             throws CarModelAndOrBrandStringInvalidException, JsonProcessingException, InvalidFileRequestException {
+        return addCarAndImagesIfValid(newCarJson, List.of(imageOfNewCar));
+    }
+
+    public Pair<Boolean, Car> addCarAndImagesIfValid(String newCarJson, List<MultipartFile> imagesOfNewCar)
+            throws CarModelAndOrBrandStringInvalidException, JsonProcessingException, InvalidFileRequestException {
         Car car = carFromJsonIfValid(newCarJson);
-        return addCarAndUploadImageIfValidated(car, imageOfNewCar);
+        return addCarAndUploadImagesIfValidated(car, imagesOfNewCar);
     }
 
     public Pair<Boolean, Car> replaceCarIfValid(Long oldCarId, String newCarJson, MultipartFile imageOfNewCar)
@@ -108,7 +221,7 @@ public class CarDealershipService {
         Car newCar = carFromJsonIfValid(newCarJson);
 
         carRepository.deleteById(oldCarId);
-        return addCarAndUploadImageIfValidated(newCar, imageOfNewCar);
+        return addCarAndUploadImagesIfValidated(newCar, List.of(imageOfNewCar));
     }
 
     public void deleteCarAndImageIfValid(Long id) throws Exception {
@@ -117,7 +230,7 @@ public class CarDealershipService {
                 .map(CarImage::getImageObjectName).toList();
 
         carRepository.deleteById(id);
-        fileHandler.deleteMultiple(associatedImageObjects, CARS_BUCKET);
+        deleteImageObjects(associatedImageObjects);
     }
 
     public String deleteCarByBrand(String brand) throws Exception {
@@ -132,62 +245,102 @@ public class CarDealershipService {
     }
 
     public void cleanUpImageFiles(List<Car> deleted) throws Exception {
-        List<List<String>> imageObjectListList = deleted.stream()
-                .map(Car::getCarImageList)
-                .map(carImageList -> carImageList.stream()
-                        .map(CarImage::getImageObjectName).toList())
+        // collect the images of all cars so that they can be removed with as few requests as possible
+        List<String> imageObjectNames = deleted.stream()
+                .flatMap(car -> car.getCarImageList().stream())
+                .map(CarImage::getImageObjectName)
                 .toList();
-        for (List<String> imageObjectList : imageObjectListList) {
-            fileHandler.deleteMultiple(imageObjectList, CARS_BUCKET);
+
+        deleteImageObjects(imageObjectNames);
+    }
+
+    void deleteImageObjects(List<String> imageObjectNames) throws Exception {
+        if (imageObjectNames.isEmpty()) {
+            return;
+        }
+
+        List<String> failedImageObjectNames = fileHandler.deleteMultiple(imageObjectNames, CARS_BUCKET);
+
+        if (!failedImageObjectNames.isEmpty()) {
+            log.error("Failed to delete %d of %d image object(s): %s".formatted(failedImageObjectNames.size(),
+                    imageObjectNames.size(), failedImageObjectNames));
         }
     }
 
-    private Pair<Boolean, Car> addCarAndUploadImageIfValidated(Car car, MultipartFile imageOfNewCar)
-            throws InvalidFileRequestException {
+    /**
+     * Deletes images which have been uploaded for a car that is not saved, see
+     * {@link BlobStoreFileHandler#releaseUploads(List)}.
+     */
+    void deleteUploadedImageObjects(List<String> imageObjectNames) throws Exception {
+        fileHandler.releaseUploads(imageObjectNames);
+        deleteImageObjects(imageObjectNames);
+    }
 
-        Pair<Boolean, String> fileValidationResult = validateImageFilenameAndReturnExtension(imageOfNewCar
-                .getOriginalFilename());
+    /**
+     * Uploads all images before anything is saved. The car is then saved together with its images, so that either
+     * both or neither end up in the database; uploaded images are deleted if any upload or the save fails.
+     */
+    private Pair<Boolean, Car> addCarAndUploadImagesIfValidated(Car car, List<MultipartFile> imagesOfNewCar)
+            throws InvalidFileRequestException {
 
-        if (!fileValidationResult.getFirst()) {
-            throw new InvalidFileRequestException(FILE_UPLOAD_INVALID_NAME_FAILURE_STRING);
+        if (imagesOfNewCar.size() > MAX_IMAGES_PER_CAR) {
+            throw new InvalidFileRequestException(TOO_MANY_IMAGES_STRING);
         }
 
-        try (InputStream inputStream = imageOfNewCar.getInputStream()) {
-            String savedFilename = fileHandler.uploadFile(inputStream,
-                    imageOfNewCar.getSize(), fileValidationResult.getSecond(), CARS_BUCKET);
+        List<ImageUploadPipeline.ImageUpload> uploads = new ArrayList<>();
 
-            Car saved = carRepository.save(car);
+        for (MultipartFile imageOfNewCar : imagesOfNewCar) {
+            AllowedExtension extension = ImageFilenameValidator.validateUploadFilename(imageOfNewCar
+                    .getOriginalFilename());
 
-            // now that image object name is known, save new entity
-            carImageRepository.save(new CarImage(saved, savedFilename));
+            if (extension == null) {
+                throw new InvalidFileRequestException(FILE_UPLOAD_INVALID_NAME_FAILURE_STRING);
+            }
+            uploads.add(new ImageUploadPipeline.ImageUpload(imageOfNewCar, extension.name()));
+        }
+
+        List<String> savedFilenames;
 
-            return Pair.of(true, saved);
+        try {
+            savedFilenames = imageUploadPipeline.uploadAll(uploads, CARS_BUCKET);
         } catch (Exception e) {
             log.error("Requested multipart data upload failed due to exception", e);
 
             return Pair.of(false, new Car());
         }
+
+        return saveCarWithUploadedImages(car, savedFilenames);
     }
 
     /**
-     * Validates name of uploaded image file. Returns the validation result and, if result is <code>True</code>,
-     * the extension of the valid file. Otherwise, the second member of the <code>Pair</code> will be an empty String.
+     * Saves the car together with its already uploaded images and releases the uploads. The images are deleted again
+     * if the save fails.
      */
-    public Pair<Boolean, String> validateImageFilenameAndReturnExtension(String filename) {
+    public Pair<Boolean, Car> saveCarWithUploadedImages(Car car, List<String> savedFilenames) {
+        // images are persisted by cascade, within the transaction that saves the car
+        car.setCarImageList(savedFilenames.stream().map(savedFilename -> new CarImage(car, savedFilename))
+                .collect(Collectors.toCollection(ArrayList::new)));
 
-        if (filename == null || filename.isEmpty() || filename.length() >= 255) {
-            return Pair.of(false, "");
-        }
+        Car savedCar;
 
-        String[] substrings = filename.split("\\.");
-        // just for easier access of last element
-        String fileExtension = substrings[1];
+        try {
+            savedCar = carRepository.save(car);
+        } catch (Exception e) {
+            log.error("Saving car with uploaded images failed due to exception", e);
+
+            try {
+                deleteUploadedImageObjects(savedFilenames);
+            } catch (Exception cleanupException) {
+                log.error("Cleanup of uploaded images failed due to exception", cleanupException);
+            }
+
+            return Pair.of(false, new Car());
+        }
 
-        // make sure that there is no trickery like file.php.jpg or sth like that
-        // and that file has no extension other than jpg, jpeg or png
-        if (substrings.length != 2 || !isValidExtension(fileExtension)) return Pair.of(false, "");
+        fileHandler.releaseUploads(savedFilenames);
+        imageRenditionService.generateRenditionsAsync(savedFilenames);
 
-        return Pair.of(true, fileExtension);
+        return Pair.of(true, savedCar);
     }
 
     public Boolean validateCarBrandAndModelStringLengths(Car car) {
@@ -195,13 +348,4 @@ public class CarDealershipService {
         int brandStringLength = car.getBrand().length();
         return modelStringLength != 0 && modelStringLength <= 300 && brandStringLength != 0 && brandStringLength <= 100;
     }
-
-    public Boolean isValidExtension(String fileExtension) {
-        return Arrays.stream(CarDealershipController.AllowedExtension.values()).anyMatch(allowedExtension -> allowedExtension.name()
-                .equals(fileExtension));
-    }
-
-    private enum AllowedExtension {
-        png, jpg, jpeg, webp
-    }
 }
@@ -0,0 +1,59 @@
+package de.doubleslash.spring.introduction.controller;
+
+import javax.annotation.Nullable;
+
+/**
+ * Validates the names of uploaded images and of stored image objects. Both run on every request handling images, so
+ * names are checked in a single pass over their characters without allocating.
+ */
+public final class ImageFilenameValidator {
+    public static final int MAX_FILENAME_LENGTH = 254;
+    // object names are the hex encoded SHA-256 hash of their content or of a random value
+    public static final int OBJECT_NAME_HASH_LENGTH = 64;
+
+    private ImageFilenameValidator() {
+    }
+
+    /**
+     * Accepts a non-empty name without dots followed by one of the {@link AllowedExtension}s, which rules out names
+     * like <code>file.php.jpg</code>.
+     *
+     * @return extension of the file, null if the name is invalid
+     */
+    @Nullable
+    public static AllowedExtension validateUploadFilename(@Nullable String filename) {
+        if (filename == null || filename.length() > MAX_FILENAME_LENGTH) {
+            return null;
+        }
+
+        int dot = filename.indexOf('.');
+        if (dot <= 0 || filename.indexOf('.', dot + 1) >= 0) {
+            return null;
+        }
+
+        return AllowedExtension.fromFilename(filename, dot + 1);
+    }
+
+    /**
+     * Accepts names of the form generated by the blob store file handlers: 64 lowercase hex characters, a dot and one
+     * of the {@link AllowedExtension}s.
+     *
+     * @return extension of the object, null if the name is invalid
+     */
+    @Nullable
+    public static AllowedExtension validateObjectName(@Nullable String objectName) {
+        if (objectName == null || objectName.length() <= OBJECT_NAME_HASH_LENGTH + 1
+                || objectName.charAt(OBJECT_NAME_HASH_LENGTH) != '.') {
+            return null;
+        }
+
+        for (int i = 0; i < OBJECT_NAME_HASH_LENGTH; i++) {
+            char c = objectName.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return null;
+            }
+        }
+
+        return AllowedExtension.fromFilename(objectName, OBJECT_NAME_HASH_LENGTH + 1);
+    }
+}
@@ -0,0 +1,290 @@
+package de.doubleslash.spring.introduction.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.BucketNotFoundException;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.CARS_BUCKET;
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.IMAGE_RENDITION_UNAVAILABLE_STRING;
+
+/**
+ * Generates the {@link ImageRendition}s of car images on a bounded pool, so that listings can load small images
+ * instead of the originals. Renditions are generated in the background after an upload, and on their first request if
+ * they are still missing; concurrent requests for the same rendition share one generation. Images which can't be
+ * decoded, or whose format the JDK can't write (webp), are served in place of their renditions.
+ */
+@Component
+@Slf4j
+public class ImageRenditionService {
+    // larger images are not decoded, their pixels alone would take hundreds of megabytes
+    static final long MAXIMUM_PIXELS = 40_000_000L;
+    private static final int MAXIMUM_UNRENDERABLE_IMAGES = 10_000;
+    private static final Set<AllowedExtension> WRITABLE_EXTENSIONS = Arrays.stream(AllowedExtension.values())
+            .filter(extension -> ImageIO.getImageWritersByFormatName(extension.name()).hasNext())
+            .collect(Collectors.toCollection(() -> EnumSet.noneOf(AllowedExtension.class)));
+
+    private final BlobStoreFileHandler fileHandler;
+    private final ThreadPoolExecutor executor;
+    // keyed by the object name of the rendition
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> generations = new ConcurrentHashMap<>();
+    // the content of an object name never changes, so an image which can't be rendered once never can
+    private final Cache<String, Boolean> unrenderableImages = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_UNRENDERABLE_IMAGES)
+            .build();
+
+    public ImageRenditionService(BlobStoreFileHandler fileHandler, FileHandlerConfiguration configuration) {
+        FileHandlerConfiguration.Renditions renditions = configuration.getRenditions();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("image-rendition-");
+        threadFactory.setDaemon(true);
+
+        this.fileHandler = fileHandler;
+        this.executor = new ThreadPoolExecutor(renditions.getParallelism(), renditions.getParallelism(), 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(renditions.getQueueCapacity()), threadFactory);
+    }
+
+    @FunctionalInterface
+    public interface BlobStoreCall<T> {
+        T call(String bucketName, String objectName) throws Exception;
+    }
+
+    /**
+     * Returns whether the rendition of the image can be served; otherwise the original is served in its place.
+     */
+    public boolean canRender(String imageObjectName, AllowedExtension extension, @Nullable ImageRendition rendition) {
+        return rendition != null && WRITABLE_EXTENSIONS.contains(extension)
+                && unrenderableImages.getIfPresent(imageObjectName) == null;
+    }
+
+    /**
+     * Generates the missing renditions of the given images in the background. Renditions which don't fit into the
+     * queue are generated on their first request instead.
+     */
+    public void generateRenditionsAsync(List<String> imageObjectNames) {
+        for (String imageObjectName : imageObjectNames) {
+            AllowedExtension extension = ImageFilenameValidator.validateObjectName(imageObjectName);
+
+            for (ImageRendition rendition : ImageRendition.values()) {
+                if (extension != null && canRender(imageObjectName, extension, rendition)) {
+                    generate(imageObjectName, extension, rendition, true).exceptionally(e -> {
+                        log.warn("Generating rendition %s of image %s failed: %s".formatted(rendition,
+                                imageObjectName, e.getMessage()));
+                        return false;
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls <code>blobStoreCall</code> with bucket and object name of the requested rendition, which is generated
+     * first if it is missing. The original is used instead if the rendition can't be generated or none is requested.
+     */
+    public <T> T callWithImageOrRendition(String imageObjectName, AllowedExtension extension,
+                                          @Nullable ImageRendition rendition, BlobStoreCall<T> blobStoreCall)
+            throws Exception {
+        if (!canRender(imageObjectName, extension, rendition)) {
+            return blobStoreCall.call(CARS_BUCKET, imageObjectName);
+        }
+
+        String renditionObjectName = rendition.objectName(imageObjectName);
+
+        try {
+            return blobStoreCall.call(ImageRendition.BUCKET, renditionObjectName);
+        } catch (FileNotFoundException | BucketNotFoundException e) {
+            // not generated yet, the bucket itself is created with the first rendition
+        }
+
+        if (await(generate(imageObjectName, extension, rendition, false))) {
+            return blobStoreCall.call(ImageRendition.BUCKET, renditionObjectName);
+        }
+
+        return blobStoreCall.call(CARS_BUCKET, imageObjectName);
+    }
+
+    /**
+     * Generates the rendition on the pool, unless a generation of it is already running.
+     *
+     * @return future completing with whether the rendition has been stored, failing with
+     * {@link ImageRenditionUnavailableException} if the pool is saturated
+     */
+    public CompletableFuture<Boolean> generate(String imageObjectName, AllowedExtension extension,
+                                               ImageRendition rendition, boolean skipIfExists) {
+        String renditionObjectName = rendition.objectName(imageObjectName);
+        CompletableFuture<Boolean> generation = new CompletableFuture<>();
+        CompletableFuture<Boolean> runningGeneration = generations.putIfAbsent(renditionObjectName, generation);
+
+        if (runningGeneration != null) {
+            return runningGeneration;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    generation.complete(render(imageObjectName, extension, rendition, skipIfExists));
+                } catch (Exception e) {
+                    generation.completeExceptionally(e);
+                } finally {
+                    generations.remove(renditionObjectName, generation);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            generations.remove(renditionObjectName, generation);
+            generation.completeExceptionally(new ImageRenditionUnavailableException(
+                    IMAGE_RENDITION_UNAVAILABLE_STRING));
+        }
+
+        return generation;
+    }
+
+    private static boolean await(CompletableFuture<Boolean> generation) throws Exception {
+        try {
+            return generation.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * @return whether the rendition has been stored
+     */
+    private boolean render(String imageObjectName, AllowedExtension extension, ImageRendition rendition,
+                           boolean skipIfExists) throws Exception {
+        String renditionObjectName = rendition.objectName(imageObjectName);
+
+        // images shared with other cars already have their renditions
+        if (skipIfExists && exists(renditionObjectName)) {
+            return true;
+        }
+
+        byte[] original = fileHandler.downloadFile(imageObjectName, CARS_BUCKET);
+        BufferedImage image = decode(original);
+
+        if (image == null) {
+            log.warn("Image %s can't be decoded, it is served in place of its renditions".formatted(imageObjectName));
+            unrenderableImages.put(imageObjectName, true);
+            return false;
+        }
+
+        byte[] renditionData = image.getWidth() <= rendition.getMaximumWidth() ? original :
+                encode(downscale(image, rendition.getMaximumWidth(), extension), extension);
+        fileHandler.uploadFileAs(renditionData, renditionObjectName, ImageRendition.BUCKET);
+
+        return true;
+    }
+
+    private boolean exists(String renditionObjectName) throws Exception {
+        try {
+            fileHandler.getFileSize(renditionObjectName, ImageRendition.BUCKET);
+            return true;
+        } catch (FileNotFoundException | BucketNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the decoded image, null if it is corrupt or too large
+     */
+    @Nullable
+    private static BufferedImage decode(byte[] imageData) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // checked before decoding, the header is enough to tell the size
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAXIMUM_PIXELS) {
+                    return null;
+                }
+
+                return reader.read(0);
+            } catch (IOException e) {
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Halves the image until it is at most <code>maximumWidth</code> wide, keeping its aspect ratio. Halving in steps
+     * keeps bilinear interpolation from skipping pixels.
+     */
+    private static BufferedImage downscale(BufferedImage image, int maximumWidth, AllowedExtension extension) {
+        // only png can keep an alpha channel
+        int type = extension == AllowedExtension.png && image.getColorModel().hasAlpha() ?
+                BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = image;
+        int width = image.getWidth();
+
+        do {
+            width = Math.max(width / 2, maximumWidth);
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(scaled, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            scaled = step;
+        } while (width > maximumWidth);
+
+        return scaled;
+    }
+
+    private static byte[] encode(BufferedImage image, AllowedExtension extension) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        if (!ImageIO.write(image, extension.name(), output)) {
+            throw new IOException("No image writer for %s".formatted(extension));
+        }
+
+        return output.toByteArray();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,13 @@
+package de.doubleslash.spring.introduction.controller;
+
+public class ImageRenditionUnavailableException extends Exception {
+    /**
+     * Constructs an <code>ImageRenditionUnavailableException</code> with the specified
+     * detail message.
+     *
+     * @param s the detail message
+     */
+    public ImageRenditionUnavailableException(String s) {
+        super(s);
+    }
+}
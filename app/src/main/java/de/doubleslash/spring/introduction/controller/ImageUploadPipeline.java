@@ -0,0 +1,239 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Uploads the images of a car concurrently, so that adding a car with many images takes about as long as its
+ * slowest upload. The uploads of all requests share one bounded pool, which limits the number of open connections to
+ * the blob store. The pool consists of virtual threads if they are enabled.
+ */
+@Component
+@Slf4j
+public class ImageUploadPipeline {
+    private final BlobStoreFileHandler fileHandler;
+    private final ExecutorService executor;
+
+    public ImageUploadPipeline(BlobStoreFileHandler fileHandler, FileHandlerConfiguration configuration,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.fileHandler = fileHandler;
+        this.executor = Executors.newFixedThreadPool(configuration.getUpload().getParallelism(),
+                virtualThreads ? Thread.ofVirtual().name("image-upload-", 0).factory() : platformThreadFactory());
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("image-upload-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    public record ImageUpload(MultipartFile image, String fileExtension) {
+    }
+
+    /**
+     * Uploads all images and waits for every upload to finish, see {@link #awaitAll(List, String)}.
+     *
+     * @return the object names of the uploaded images, in the order of <code>uploads</code>
+     */
+    public List<String> uploadAll(List<ImageUpload> uploads, String bucketName) throws Exception {
+        // a single image is uploaded on the calling thread, handing it to the pool would only add latency
+        if (uploads.size() == 1) {
+            return List.of(upload(uploads.get(0), bucketName));
+        }
+
+        return awaitAll(uploads.stream()
+                .map(upload -> executor.submit(() -> upload(upload, bucketName)))
+                .toList(), bucketName);
+    }
+
+    /**
+     * Uploads an image which is still being received, e.g. a part of a streamed multipart request. Returns once
+     * <code>content</code> has been read to its end or the upload has failed, so that the caller can receive its next
+     * image while the blob store completes this upload. <code>content</code> is left open for the caller.
+     *
+     * @return the pending upload, to be passed to {@link #awaitAll(List, String)}
+     */
+    public Future<String> uploadWhileReceiving(InputStream content, String fileExtension, String bucketName)
+            throws InterruptedException {
+        ReceivedContent receivedContent = new ReceivedContent(content);
+        FutureTask<String> upload = new FutureTask<>(() ->
+                fileHandler.uploadFile(receivedContent, null, fileExtension, bucketName)) {
+            @Override
+            protected void done() {
+                // after the outcome has been set, so that the caller sees a failed upload as such
+                receivedContent.release();
+            }
+        };
+        executor.execute(upload);
+
+        try {
+            receivedContent.awaitReceived();
+        } catch (InterruptedException e) {
+            upload.cancel(true);
+            throw e;
+        }
+
+        return upload;
+    }
+
+    /**
+     * Waits for every upload to finish. If any upload fails, the images uploaded by the others are deleted again and
+     * the first failure is thrown.
+     *
+     * @return the object names of the uploaded images, in the order of <code>futures</code>
+     */
+    public List<String> awaitAll(List<Future<String>> futures, String bucketName) throws Exception {
+        List<String> uploadedFilenames = new ArrayList<>();
+        Exception failure = null;
+
+        for (Future<String> future : futures) {
+            try {
+                uploadedFilenames.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception cause ? cause : e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                failure = e;
+                break;
+            }
+        }
+
+        if (failure != null) {
+            deleteUploaded(uploadedFilenames, bucketName);
+            throw failure;
+        }
+
+        return uploadedFilenames;
+    }
+
+    private String upload(ImageUpload upload, String bucketName) throws Exception {
+        try (InputStream inputStream = upload.image().getInputStream()) {
+            return fileHandler.uploadFile(inputStream, upload.image().getSize(), upload.fileExtension(), bucketName);
+        }
+    }
+
+    /**
+     * Waits for the uploads and deletes the images they have uploaded, e.g. if the car they were uploaded for is
+     * rejected while they are running.
+     */
+    public void discardAll(List<Future<String>> futures, String bucketName) {
+        try {
+            deleteUploaded(awaitAll(futures, bucketName), bucketName);
+        } catch (Exception e) {
+            // the images of the successful uploads have been deleted by awaitAll
+        }
+    }
+
+    private void deleteUploaded(List<String> filenames, String bucketName) {
+        if (filenames.isEmpty()) {
+            return;
+        }
+
+        fileHandler.releaseUploads(filenames);
+
+        try {
+            List<String> failedFilenames = fileHandler.deleteMultiple(filenames, bucketName);
+            if (!failedFilenames.isEmpty()) {
+                log.error("Cleanup after failed upload left objects %s".formatted(failedFilenames));
+            }
+        } catch (Exception e) {
+            log.error("Cleanup of objects %s after failed upload failed due to exception".formatted(filenames), e);
+        }
+    }
+
+    /**
+     * Hands the content of an upload from the receiving to the uploading thread. Once its end has been read, it is
+     * released back to the receiving thread and not touched by the uploading thread any more, as the receiving thread
+     * goes on reading the request it has been read from.
+     */
+    private static class ReceivedContent extends FilterInputStream {
+        private final CountDownLatch received = new CountDownLatch(1);
+
+        ReceivedContent(InputStream content) {
+            super(content);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (isReleased()) {
+                return -1;
+            }
+
+            int read = super.read();
+            if (read == -1) {
+                release();
+            }
+
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (isReleased()) {
+                return -1;
+            }
+
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                release();
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return isReleased() ? 0 : super.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return isReleased() ? 0 : super.available();
+        }
+
+        @Override
+        public void close() {
+            // the content belongs to the receiving thread, which closes it
+            release();
+        }
+
+        void release() {
+            received.countDown();
+        }
+
+        private boolean isReleased() {
+            return received.getCount() == 0;
+        }
+
+        void awaitReceived() throws InterruptedException {
+            received.await();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
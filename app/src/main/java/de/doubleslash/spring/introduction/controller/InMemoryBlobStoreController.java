@@ -0,0 +1,57 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+import static de.doubleslash.spring.introduction.model.InMemoryFileHandler.PRESIGNED_URL_ROOT;
+
+/**
+ * Serves the presigned URLs of {@link InMemoryFileHandler}, as the blob store serves those of the Minio handler, so
+ * that tests need no blob store.
+ */
+@RestController
+@Profile("test & !reactive")
+@AllArgsConstructor
+public class InMemoryBlobStoreController {
+
+    private final InMemoryFileHandler fileHandler;
+
+    @GetMapping(PRESIGNED_URL_ROOT + "/{bucketName}/{*filename}")
+    public ResponseEntity<byte[]> download(@PathVariable String bucketName, @PathVariable String filename,
+                                           @RequestParam("expires") long expires,
+                                           @RequestParam("response-content-type") String contentType,
+                                           @RequestParam("signature") String signature)
+            throws IOException {
+        // the captured path starts with a slash
+        String objectName = filename.substring(1);
+
+        if (!fileHandler.isValidPresignedUrl("GET", bucketName, objectName, expires, contentType, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(contentType))
+                .body(fileHandler.downloadFileStream(objectName, bucketName).stream().readAllBytes());
+    }
+
+    @PutMapping(PRESIGNED_URL_ROOT + "/{bucketName}/{*filename}")
+    public ResponseEntity<Void> upload(@PathVariable String bucketName, @PathVariable String filename,
+                                       @RequestParam("expires") long expires,
+                                       @RequestParam("signature") String signature, @RequestBody byte[] content) {
+        String objectName = filename.substring(1);
+
+        if (!fileHandler.isValidPresignedUrl("PUT", bucketName, objectName, expires, "", signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        fileHandler.uploadFileAs(content, objectName, bucketName);
+
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,13 @@
+package de.doubleslash.spring.introduction.controller;
+
+public class InvalidBulkRequestException extends Exception {
+    /**
+     * Constructs an <code>InvalidBulkRequestException</code> with the specified
+     * detail message.
+     *
+     * @param s the detail message
+     */
+    public InvalidBulkRequestException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,228 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import de.doubleslash.spring.introduction.model.ObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.PresignedUpload;
+import de.doubleslash.spring.introduction.model.RandomObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.UploadReservation;
+import de.doubleslash.spring.introduction.repository.UploadReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.Pair;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import javax.annotation.Nullable;
+import java.io.FileNotFoundException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.*;
+
+/**
+ * Lets clients download and upload images directly from and to the blob store through short-lived presigned URLs,
+ * so that image bytes don't pass through the app. Adding a car takes two steps: object names are reserved together
+ * with URLs to upload the images to, and the car is added with these names once the client has uploaded its images.
+ * The uploaded images are then copied to names of their own, which no upload URL has been issued for.
+ */
+@Slf4j
+@Service
+@Profile("!reactive")
+public class PresignedImageService {
+    private static final byte[] NO_CONTENT = new byte[0];
+
+    private final CarDealershipService carDealershipService;
+    private final BlobStoreFileHandler fileHandler;
+    private final ImageRenditionService imageRenditionService;
+    private final FileHandlerConfiguration.Presigned configuration;
+    private final MultipartProperties multipartProperties;
+    // the content is unknown when the name is reserved, so it can't be named by its hash
+    private final ObjectNameGenerator objectNameGenerator = new RandomObjectNameGenerator();
+    // reservations are stored in the database, as the car may be added through another replica than the one which
+    // has reserved its images
+    private final UploadReservationRepository uploadReservationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public PresignedImageService(CarDealershipService carDealershipService, BlobStoreFileHandler fileHandler,
+                                 ImageRenditionService imageRenditionService,
+                                 FileHandlerConfiguration fileHandlerConfiguration,
+                                 MultipartProperties multipartProperties,
+                                 UploadReservationRepository uploadReservationRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.carDealershipService = carDealershipService;
+        this.fileHandler = fileHandler;
+        this.imageRenditionService = imageRenditionService;
+        this.configuration = fileHandlerConfiguration.getPresigned();
+        this.multipartProperties = multipartProperties;
+        this.uploadReservationRepository = uploadReservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // a reservation must be visible to other replicas immediately, independent of the caller's transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return configuration.isEnabled();
+    }
+
+    /**
+     * The redirect to a presigned URL may be reused for half of its validity, the other half is left for the
+     * download.
+     */
+    public CacheControl getRedirectCacheControl() {
+        return CacheControl.maxAge(configuration.getExpiry().dividedBy(2)).cachePrivate();
+    }
+
+    /**
+     * Returns a presigned URL of the image, or of its rendition if <code>rendition</code> is not null.
+     */
+    public URI getImageUrlIfValid(String imageObjectName, @Nullable ImageRendition rendition) throws Exception {
+        AllowedExtension extension = carDealershipService.getImageExtensionIfValid(imageObjectName);
+        String contentType = extension.getMediaType().toString();
+        Duration expiry = configuration.getExpiry();
+
+        if (rendition == null) {
+            return URI.create(fileHandler.getPresignedDownloadUrl(imageObjectName, CARS_BUCKET, expiry, contentType));
+        }
+
+        // a missing rendition is generated first, signing a URL alone would not notice that it is missing
+        return URI.create(imageRenditionService.callWithImageOrRendition(imageObjectName, extension, rendition,
+                (bucketName, objectName) -> {
+                    fileHandler.getFileSize(objectName, bucketName);
+                    return fileHandler.getPresignedDownloadUrl(objectName, bucketName, expiry, contentType);
+                }));
+    }
+
+    /**
+     * Reserves an object name for every filename and returns the URLs to upload the images to.
+     */
+    public List<PresignedUpload> reserveUploadsIfValid(List<String> filenames) throws Exception {
+        if (filenames.size() > MAX_IMAGES_PER_CAR) {
+            throw new InvalidFileRequestException(TOO_MANY_IMAGES_STRING);
+        }
+
+        Duration expiry = configuration.getExpiry();
+        Instant expiresAt = Instant.now().plus(expiry);
+        List<String> imageObjectNames = new ArrayList<>();
+
+        for (String filename : filenames) {
+            AllowedExtension extension = ImageFilenameValidator.validateUploadFilename(filename);
+
+            if (extension == null) {
+                throw new InvalidFileRequestException(FILE_UPLOAD_INVALID_NAME_FAILURE_STRING);
+            }
+
+            imageObjectNames.add(objectNameGenerator.name(NO_CONTENT, extension.name()));
+        }
+
+        // the client may take as long to add the car as it had to upload
+        transactionTemplate.executeWithoutResult(status -> {
+            Instant reservedUntil = uploadReservationRepository.currentInstant().plus(expiry.multipliedBy(2));
+            uploadReservationRepository.saveAll(imageObjectNames.stream()
+                    .map(imageObjectName -> new UploadReservation(imageObjectName, reservedUntil))
+                    .toList());
+        });
+
+        List<PresignedUpload> uploads = new ArrayList<>();
+        for (String imageObjectName : imageObjectNames) {
+            uploads.add(new PresignedUpload(imageObjectName,
+                    fileHandler.getPresignedUploadUrl(imageObjectName, CARS_BUCKET, expiry), expiresAt));
+        }
+
+        return uploads;
+    }
+
+    /**
+     * Adds the car with images the client has uploaded through {@link #reserveUploadsIfValid(List)}. Every reserved
+     * name can be used once. The images are copied to new names first, as their upload URLs stay valid and would
+     * replace the checked images otherwise. Images larger than <code>spring.servlet.multipart.max-file-size</code>
+     * are rejected, as the size of an upload can't be limited by its URL.
+     * <p>
+     * The uploads and their reservations are only removed once all images have been copied, so that the client can
+     * add the car again if copying fails.
+     *
+     * @return the car, with the new names of its images
+     */
+    public Pair<Boolean, Car> addCarWithUploadedImagesIfValid(String newCarJson, List<String> imageObjectNames)
+            throws Exception {
+        Car car = carDealershipService.carFromJsonIfValid(newCarJson);
+
+        if (imageObjectNames.size() > MAX_IMAGES_PER_CAR) {
+            throw new InvalidFileRequestException(TOO_MANY_IMAGES_STRING);
+        }
+
+        List<AllowedExtension> extensions = new ArrayList<>();
+        for (String imageObjectName : imageObjectNames) {
+            extensions.add(carDealershipService.getImageExtensionIfValid(imageObjectName));
+        }
+        throwIfNotReserved(imageObjectNames, transactionTemplate.execute(status ->
+                uploadReservationRepository.findReservedImageObjectNames(imageObjectNames)));
+
+        long maxFileSize = multipartProperties.getMaxFileSize().toBytes();
+        List<String> copiedObjectNames = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < imageObjectNames.size(); i++) {
+                String copiedObjectName = objectNameGenerator.name(NO_CONTENT, extensions.get(i).name());
+
+                // throws if the client has not uploaded the image
+                fileHandler.copyFile(imageObjectNames.get(i), copiedObjectName, CARS_BUCKET);
+                copiedObjectNames.add(copiedObjectName);
+
+                if (fileHandler.getFileSize(copiedObjectName, CARS_BUCKET) > maxFileSize) {
+                    throw new MaxUploadSizeExceededException(maxFileSize);
+                }
+            }
+
+            // only one of concurrent requests adding the same uploads removes their reservations
+            Integer removed = transactionTemplate.execute(status ->
+                    uploadReservationRepository.deleteReserved(imageObjectNames));
+            if (removed == null || removed != new HashSet<>(imageObjectNames).size()) {
+                throw new FileNotFoundException("Uploads %s have already been added or have expired."
+                        .formatted(imageObjectNames));
+            }
+        } catch (Exception e) {
+            try {
+                carDealershipService.deleteImageObjects(copiedObjectNames);
+            } catch (Exception cleanupException) {
+                e.addSuppressed(cleanupException);
+            }
+            throw e;
+        }
+
+        deleteUploads(imageObjectNames);
+        return carDealershipService.saveCarWithUploadedImages(car, copiedObjectNames);
+    }
+
+    private static void throwIfNotReserved(List<String> imageObjectNames, @Nullable List<String> reservedObjectNames)
+            throws FileNotFoundException {
+        for (String imageObjectName : imageObjectNames) {
+            if (reservedObjectNames == null || !reservedObjectNames.contains(imageObjectName)) {
+                throw new FileNotFoundException("Upload %s has not been reserved or has expired."
+                        .formatted(imageObjectName));
+            }
+        }
+    }
+
+    /**
+     * Uploads which can't be deleted now are left to the reconciliation job, as no car refers to them.
+     */
+    private void deleteUploads(List<String> imageObjectNames) {
+        try {
+            carDealershipService.deleteImageObjects(imageObjectNames);
+        } catch (Exception e) {
+            log.warn("Failed to delete uploads {} after copying them.", imageObjectNames, e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.PresignedUpload;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.CARS_ROOT;
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.FILE_UPLOAD_INTERNAL_ERROR_FAILURE_STRING;
+
+/**
+ * Adds cars whose images the client uploads directly to the blob store, see {@link PresignedImageService}. Only
+ * available if presigned URLs are enabled.
+ */
+@RestController
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "handler.presigned", name = "enabled", havingValue = "true")
+@AllArgsConstructor
+public class PresignedUploadController {
+
+    private final PresignedImageService presignedImageService;
+
+    @PostMapping(CARS_ROOT + "/add/uploads")
+    public ResponseEntity<List<PresignedUpload>> reserveImageUploads(@Valid @NotNull @RequestParam("filename")
+                                                                     List<String> filenames) throws Exception {
+        return new ResponseEntity<>(presignedImageService.reserveUploadsIfValid(filenames), HttpStatus.OK);
+    }
+
+    @PostMapping(CARS_ROOT + "/add/confirm")
+    public ResponseEntity<String> addCarWithUploadedImages(@Valid @NotNull @RequestParam("car") String newCarJson,
+                                                           @Valid @NotNull @RequestParam("image")
+                                                           List<String> imageObjectNames) throws Exception {
+        Pair<Boolean, Car> carDataIfAdded = presignedImageService.addCarWithUploadedImagesIfValid(newCarJson,
+                imageObjectNames);
+
+        if (!carDataIfAdded.getFirst()) {
+            return new ResponseEntity<>(FILE_UPLOAD_INTERNAL_ERROR_FAILURE_STRING, HttpStatus.INTERNAL_SERVER_ERROR);
+        } else {
+            return new ResponseEntity<>(carDataIfAdded.getSecond().toString(), HttpStatus.OK);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.model.BulkCarResult;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.CarSummary;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import de.doubleslash.spring.introduction.model.ReactiveBlobStoreObject;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.MissingRequestValueException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipController.*;
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.*;
+
+/**
+ * Same API as {@link CarDealershipController}, served by WebFlux with the "reactive" profile.
+ */
+@RestController
+@Profile("reactive")
+@AllArgsConstructor
+public class ReactiveCarDealershipController {
+
+    private final ReactiveCarDealershipService carDealershipService;
+
+    @GetMapping(CARS_ROOT)
+    public Mono<ResponseEntity<List<Car>>> allCars(@RequestParam(value = "after", defaultValue = "0") Long afterId,
+                                                   @RequestParam(value = "limit",
+                                                           defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        return carDealershipService.getCarPage(afterId, limit)
+                .map(page -> pageResponse(page, limit, page.isEmpty() ? null : page.get(page.size() - 1).getId()));
+    }
+
+    @GetMapping(value = CARS_ROOT, params = "view=summary")
+    public Mono<ResponseEntity<List<CarSummary>>> allCarSummaries(@RequestParam(value = "after", defaultValue = "0")
+                                                                  Long afterId,
+                                                                  @RequestParam(value = "limit",
+                                                                          defaultValue = "" + DEFAULT_PAGE_SIZE)
+                                                                  int limit) {
+        return carDealershipService.getCarSummaryPage(afterId, limit)
+                .map(page -> pageResponse(page, limit, page.isEmpty() ? null : page.get(page.size() - 1).id()));
+    }
+
+    @GetMapping(value = CARS_ROOT + "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Car> streamAllCars() {
+        return carDealershipService.streamAllCars();
+    }
+
+    @GetMapping(IMAGES_ROOT)
+    public Flux<CarImage> allCarImages() {
+        return carDealershipService.getAllCarImages();
+    }
+
+    @GetMapping(CARS_ROOT + "/{id}")
+    public Mono<Car> get(@Valid @NotNull @PathVariable Long id) {
+        return carDealershipService.getCarIfValid(id);
+    }
+
+    @GetMapping(value = IMAGES_ROOT + "/{imageObjectName}", produces = {MediaType.IMAGE_PNG_VALUE,
+            MediaType.IMAGE_JPEG_VALUE, "image/webp"})
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getImage(@Valid @NotNull @PathVariable String imageObjectName,
+                                                           @RequestParam(value = "size", required = false)
+                                                           ImageRendition size,
+                                                           @RequestHeader HttpHeaders requestHeaders)
+            throws InvalidFileRequestException {
+
+        MediaType mediaType = carDealershipService.getImageMediaTypeIfValid(imageObjectName);
+        String eTag = getImageETag(imageObjectName, size);
+
+        // image objects never change, so a matching tag can be answered without touching the blob store
+        if (eTagMatches(requestHeaders.getIfNoneMatch(), eTag)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag)
+                    .cacheControl(IMAGE_CACHE_CONTROL).build());
+        }
+
+        HttpRange range = getRequestedRange(requestHeaders, eTag);
+
+        if (range == null) {
+            return carDealershipService.getImageIfValid(imageObjectName, size)
+                    .map(image -> imageResponse(HttpStatus.OK, mediaType, eTag, image).body(image.content()));
+        }
+
+        return carDealershipService.getImageSizeIfValid(imageObjectName, size).flatMap(length -> {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+
+            if (start >= length || start > end) {
+                return Mono.just(ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */%d".formatted(length)).build());
+            }
+
+            return carDealershipService.getImageRangeIfValid(imageObjectName, size, start, end - start + 1)
+                    .map(part -> imageResponse(HttpStatus.PARTIAL_CONTENT, mediaType, eTag, part)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, length))
+                            .body(part.content()));
+        });
+    }
+
+    /**
+     * As with the streaming upload of the servlet stack, the car is only read from the <code>car</code> part.
+     */
+    @PostMapping(value = CARS_ROOT + "/add", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ResponseEntity<String>> addCarAndImage(@RequestPart("car") String newCarJson,
+                                                       @RequestPart("file") Flux<FilePart> imagesOfNewCar) {
+        return carDealershipService.addCarAndImagesIfValid(newCarJson, imagesOfNewCar)
+                .map(carDataIfAdded -> carResponse(carDataIfAdded.getFirst(), carDataIfAdded.getSecond()));
+    }
+
+    @PostMapping(value = CARS_ROOT + "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<List<BulkCarResult>> addCars(@RequestPart(value = "cars", required = false) String carsPart,
+                                             @RequestPart(value = "file", required = false) Flux<FilePart> images,
+                                             ServerWebExchange exchange) {
+        return carDealershipService.addCarsIfValid(partOrQueryParam(carsPart, "cars", exchange),
+                images == null ? Flux.empty() : images);
+    }
+
+    @PostMapping(CARS_ROOT + "/replace")
+    public Mono<ResponseEntity<String>> replaceCar(@RequestPart(value = "oldId", required = false) String oldIdPart,
+                                                   @RequestPart(value = "car", required = false) String carPart,
+                                                   @RequestPart("file") Flux<FilePart> file,
+                                                   ServerWebExchange exchange) {
+        String oldCarId = partOrQueryParam(oldIdPart, "oldId", exchange);
+        Long oldId;
+        try {
+            oldId = Long.valueOf(oldCarId);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid oldId %s".formatted(oldCarId));
+        }
+
+        return carDealershipService.replaceCarIfValid(oldId, partOrQueryParam(carPart, "car", exchange), file)
+                .map(carDataIfReplaced -> carResponse(carDataIfReplaced.getFirst(), carDataIfReplaced.getSecond()));
+    }
+
+    /**
+     * <code>@RequestParam</code> of the servlet stack binds query parameters as well as multipart fields, whereas
+     * that of WebFlux binds query parameters only. Fields are therefore taken from the part if there is one, and from
+     * the query otherwise.
+     */
+    private static String partOrQueryParam(@Nullable String part, String name, ServerWebExchange exchange) {
+        String value = part != null ? part : exchange.getRequest().getQueryParams().getFirst(name);
+
+        if (value == null) {
+            throw new MissingRequestValueException(name, String.class, "request parameter", null);
+        }
+
+        return value;
+    }
+
+    @DeleteMapping(CARS_ROOT + "/{id}")
+    public Mono<String> deleteCar(@Valid @NotNull @PathVariable Long id) {
+        return carDealershipService.deleteCarAndImageIfValid(id).thenReturn(DELETE_CAR_SUCCESS_STRING);
+    }
+
+    @DeleteMapping(CARS_ROOT + "/brand/{brand}")
+    public Mono<String> deleteCarByBrand(@Valid @NotNull @PathVariable String brand) {
+        return carDealershipService.deleteCarByBrand(brand);
+    }
+
+    private static ResponseEntity<String> carResponse(boolean saved, Car car) {
+        if (!saved) {
+            return new ResponseEntity<>(FILE_UPLOAD_INTERNAL_ERROR_FAILURE_STRING, HttpStatus.INTERNAL_SERVER_ERROR);
+        } else {
+            return new ResponseEntity<>(car.toString(), HttpStatus.OK);
+        }
+    }
+
+    private static ResponseEntity.BodyBuilder imageResponse(HttpStatus status, MediaType mediaType, String eTag,
+                                                            ReactiveBlobStoreObject image) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status).contentType(mediaType).eTag(eTag)
+                .cacheControl(IMAGE_CACHE_CONTROL).header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (image.length() >= 0) {
+            response.contentLength(image.length());
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,488 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.BucketNotFoundException;
+import de.doubleslash.spring.introduction.model.BulkCarResult;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.CarImageRow;
+import de.doubleslash.spring.introduction.model.CarRow;
+import de.doubleslash.spring.introduction.model.CarSummary;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import de.doubleslash.spring.introduction.model.JsonStringToInstanceConverter;
+import de.doubleslash.spring.introduction.model.ReactiveBlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.ReactiveBlobStoreObject;
+import de.doubleslash.spring.introduction.repository.ReactiveCarImageRepository;
+import de.doubleslash.spring.introduction.repository.ReactiveCarRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.util.Pair;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.Nullable;
+import java.io.FileNotFoundException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static de.doubleslash.spring.introduction.controller.CarBulkIngestionService.*;
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.*;
+
+/**
+ * Non-blocking counterpart of {@link CarDealershipService} and {@link CarBulkIngestionService}, used with the
+ * "reactive" profile. Validation is shared with the blocking service, which never touches the database or the blob
+ * store for it.
+ */
+@Service
+@Profile("reactive")
+@Slf4j
+public class ReactiveCarDealershipService {
+    // same block size as the sequence generators of Car and CarImage, see allocateIds
+    private static final int ID_ALLOCATION_SIZE = 50;
+    private static final String CAR_SEQUENCE = "car_seq";
+    private static final String CAR_IMAGE_SEQUENCE = "car_image_seq";
+    private static final int STREAM_CHUNK_SIZE = 100;
+
+    private final ReactiveCarRepository carRepository;
+    private final ReactiveCarImageRepository carImageRepository;
+    private final ReactiveBlobStoreFileHandler fileHandler;
+    // claims the uploads of the reactive handler and deletes image objects, see ReferenceCheckingFileHandler
+    private final BlobStoreFileHandler blockingFileHandler;
+    private final CarDealershipService carDealershipService;
+    private final ImageRenditionService imageRenditionService;
+    private final JsonStringToInstanceConverter converter;
+    private final R2dbcEntityTemplate entityTemplate;
+    private final TransactionalOperator transactionalOperator;
+    private final int uploadParallelism;
+
+    public ReactiveCarDealershipService(ReactiveCarRepository carRepository,
+                                        ReactiveCarImageRepository carImageRepository,
+                                        ReactiveBlobStoreFileHandler fileHandler,
+                                        BlobStoreFileHandler blockingFileHandler,
+                                        CarDealershipService carDealershipService,
+                                        ImageRenditionService imageRenditionService,
+                                        JsonStringToInstanceConverter converter, R2dbcEntityTemplate entityTemplate,
+                                        ReactiveTransactionManager transactionManager,
+                                        FileHandlerConfiguration configuration) {
+        this.carRepository = carRepository;
+        this.carImageRepository = carImageRepository;
+        this.fileHandler = fileHandler;
+        this.blockingFileHandler = blockingFileHandler;
+        this.carDealershipService = carDealershipService;
+        this.imageRenditionService = imageRenditionService;
+        this.converter = converter;
+        this.entityTemplate = entityTemplate;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.uploadParallelism = configuration.getUpload().getParallelism();
+    }
+
+    private static Car toCar(CarRow row, List<String> imageObjectNames) {
+        Car car = Car.builder().id(row.id()).brand(row.brand()).model(row.model()).date(row.date()).build();
+        car.setCarImageList(imageObjectNames.stream().map(name -> new CarImage(car, name)).toList());
+
+        return car;
+    }
+
+    /**
+     * Loads the images of all given cars with a single query.
+     */
+    private Mono<List<Car>> withImages(List<CarRow> rows) {
+        if (rows.isEmpty()) {
+            return Mono.just(List.of());
+        }
+
+        return imageObjectNamesByCarId(rows).map(imageObjectNamesByCarId -> rows.stream()
+                .map(row -> toCar(row, imageObjectNamesByCarId.getOrDefault(row.id(), List.of())))
+                .toList());
+    }
+
+    private Mono<Map<Long, List<String>>> imageObjectNamesByCarId(List<CarRow> rows) {
+        return carImageRepository.findAllByAssociatedCarIdIn(rows.stream().map(CarRow::id).toList())
+                .collectMultimap(CarImageRow::associatedCarId, CarImageRow::imageObjectName)
+                .map(imageObjectNamesByCarId -> {
+                    // collectMultimap returns collections, but cars and summaries take lists
+                    return imageObjectNamesByCarId.entrySet().stream().collect(Collectors.toMap(
+                            Map.Entry::getKey, entry -> List.copyOf(entry.getValue())));
+                });
+    }
+
+    public Mono<List<Car>> getCarPage(Long afterId, int limit) {
+        return carRepository.findByIdGreaterThanOrderByIdAsc(afterId, firstPageOf(limit)).collectList()
+                .flatMap(this::withImages);
+    }
+
+    public Mono<List<CarSummary>> getCarSummaryPage(Long afterId, int limit) {
+        return carRepository.findByIdGreaterThanOrderByIdAsc(afterId, firstPageOf(limit)).collectList()
+                .flatMap(rows -> rows.isEmpty() ? Mono.just(List.<CarSummary>of()) : imageObjectNamesByCarId(rows)
+                        .map(imageObjectNamesByCarId -> rows.stream()
+                                .map(row -> new CarSummary(row.id(), row.brand(), row.model(), row.date(),
+                                        imageObjectNamesByCarId.getOrDefault(row.id(), List.of())))
+                                .toList()));
+    }
+
+    /**
+     * Emits all cars ordered by id. Images are loaded for {@value #STREAM_CHUNK_SIZE} cars at a time, rows are only
+     * read from the database as fast as the client consumes them.
+     */
+    public Flux<Car> streamAllCars() {
+        return carRepository.findAllByOrderByIdAsc()
+                .buffer(STREAM_CHUNK_SIZE)
+                .concatMap(this::withImages)
+                .flatMapIterable(cars -> cars);
+    }
+
+    public Flux<CarImage> getAllCarImages() {
+        return carImageRepository.findAll().map(row -> new CarImage(null, row.imageObjectName()));
+    }
+
+    public Mono<Car> getCarIfValid(Long id) {
+        return carRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new CarNotFoundException(CAR_NOT_FOUND_STRING)))
+                .flatMap(row -> withImages(List.of(row)))
+                .map(cars -> cars.get(0));
+    }
+
+    public MediaType getImageMediaTypeIfValid(String imageObjectName) throws InvalidFileRequestException {
+        return carDealershipService.getImageMediaTypeIfValid(imageObjectName);
+    }
+
+    public Mono<ReactiveBlobStoreObject> getImageIfValid(String imageObjectName,
+                                                         @Nullable ImageRendition rendition) {
+        return withImageOrRendition(imageObjectName, rendition,
+                (bucketName, objectName) -> fileHandler.downloadFileStream(objectName, bucketName));
+    }
+
+    public Mono<ReactiveBlobStoreObject> getImageRangeIfValid(String imageObjectName,
+                                                              @Nullable ImageRendition rendition, long offset,
+                                                              long length) {
+        return withImageOrRendition(imageObjectName, rendition,
+                (bucketName, objectName) -> fileHandler.downloadFileRange(objectName, bucketName, offset, length));
+    }
+
+    public Mono<Long> getImageSizeIfValid(String imageObjectName, @Nullable ImageRendition rendition) {
+        return withImageOrRendition(imageObjectName, rendition,
+                (bucketName, objectName) -> fileHandler.getFileSize(objectName, bucketName));
+    }
+
+    /**
+     * Same as {@link ImageRenditionService#callWithImageOrRendition}, but waits for a missing rendition without
+     * blocking.
+     */
+    private <T> Mono<T> withImageOrRendition(String imageObjectName, @Nullable ImageRendition rendition,
+                                             BiFunction<String, String, Mono<T>> blobStoreCall) {
+        return Mono.fromCallable(() -> carDealershipService.getImageExtensionIfValid(imageObjectName))
+                .flatMap(extension -> {
+                    if (!imageRenditionService.canRender(imageObjectName, extension, rendition)) {
+                        return blobStoreCall.apply(CARS_BUCKET, imageObjectName);
+                    }
+
+                    String renditionObjectName = rendition.objectName(imageObjectName);
+
+                    // not generated yet, the bucket itself is created with the first rendition
+                    return blobStoreCall.apply(ImageRendition.BUCKET, renditionObjectName)
+                            .onErrorResume(e -> e instanceof FileNotFoundException || e instanceof BucketNotFoundException,
+                                    e -> Mono.fromFuture(() -> imageRenditionService.generate(imageObjectName,
+                                                    extension, rendition, false))
+                                            .flatMap(rendered -> rendered ?
+                                                    blobStoreCall.apply(ImageRendition.BUCKET, renditionObjectName) :
+                                                    blobStoreCall.apply(CARS_BUCKET, imageObjectName)));
+                });
+    }
+
+    public Mono<Pair<Boolean, Car>> addCarAndImagesIfValid(String newCarJson, Flux<FilePart> imagesOfNewCar) {
+        return Mono.fromCallable(() -> carDealershipService.carFromJsonIfValid(newCarJson))
+                .zipWith(imagesOfNewCar.collectList())
+                .flatMap(carAndImages -> addCarAndUploadImagesIfValidated(carAndImages.getT1(),
+                        carAndImages.getT2()));
+    }
+
+    public Mono<Pair<Boolean, Car>> replaceCarIfValid(Long oldCarId, String newCarJson,
+                                                      Flux<FilePart> imagesOfNewCar) {
+        return carRepository.existsById(oldCarId)
+                .flatMap(exists -> exists ? Mono.fromCallable(() -> carDealershipService.carFromJsonIfValid(newCarJson))
+                        : Mono.error(new CarNotFoundException(CAR_NOT_FOUND_STRING)))
+                .flatMap(newCar -> carRepository.deleteById(oldCarId)
+                        .then(imagesOfNewCar.collectList())
+                        .flatMap(images -> addCarAndUploadImagesIfValidated(newCar, images)));
+    }
+
+    public Mono<Void> deleteCarAndImageIfValid(Long id) {
+        return getCarIfValid(id).flatMap(car -> carRepository.deleteById(id)
+                .then(deleteImageObjects(car.getCarImageList().stream().map(CarImage::getImageObjectName).toList())));
+    }
+
+    public Mono<String> deleteCarByBrand(String brand) {
+        return carRepository.findAllByBrand(brand).map(CarRow::id).collectList()
+                .flatMap(ids -> ids.isEmpty() ? Mono.just(DELETE_CAR_BY_BRAND_NONE_DELETED_NEUTRAL_STRING) :
+                        carImageRepository.findAllByAssociatedCarIdIn(ids).map(CarImageRow::imageObjectName)
+                                .collectList()
+                                // images rows are removed by the foreign key cascade
+                                .flatMap(imageObjectNames -> carRepository.deleteAllById(ids)
+                                        .thenReturn(imageObjectNames))
+                                .as(transactionalOperator::transactional)
+                                .flatMap(this::deleteImageObjects)
+                                .thenReturn(DELETE_CAR_BY_BRAND_SUCCESS_STRING.formatted(ids.size(), brand)));
+    }
+
+    /**
+     * Adds the cars of the given JSON array, see {@link CarBulkIngestionService#addCarsIfValid(String, List)}.
+     * Images of different cars are uploaded concurrently.
+     */
+    public Mono<List<BulkCarResult>> addCarsIfValid(String carsJson, Flux<FilePart> images) {
+        return Mono.fromCallable(() -> Arrays.asList(converter.convert(carsJson, Car[].class)))
+                .zipWith(images.collectList())
+                .flatMap(carsAndImages -> {
+                    List<Car> cars = carsAndImages.getT1();
+                    List<FilePart> imageList = carsAndImages.getT2();
+
+                    if (cars.size() > MAX_CARS_PER_BULK_REQUEST) {
+                        return Mono.error(new InvalidBulkRequestException(BULK_REQUEST_TOO_LARGE_STRING));
+                    }
+                    if (imageList.size() > cars.size()) {
+                        return Mono.error(new InvalidBulkRequestException(BULK_REQUEST_TOO_MANY_FILES_STRING));
+                    }
+
+                    return Flux.range(0, cars.size())
+                            .flatMapSequential(i -> validateAndUploadImage(cars.get(i), i < imageList.size() ?
+                                    imageList.get(i) : null), uploadParallelism)
+                            .collectList()
+                            .flatMap(uploadResults -> saveBulk(cars, uploadResults));
+                });
+    }
+
+    /**
+     * Returns whether the car is valid and its image, if any, has been uploaded. The second member of the
+     * <code>Pair</code> is the image object name (empty if there is no image) or the reason for rejecting the car.
+     */
+    private Mono<Pair<Boolean, String>> validateAndUploadImage(Car car, FilePart image) {
+        if (car == null || car.getBrand() == null || car.getModel() == null
+                || !carDealershipService.validateCarBrandAndModelStringLengths(car)) {
+            return Mono.just(Pair.of(false, CAR_MODEL_AND_OR_BRAND_NAME_INVALID_STRING));
+        }
+
+        if (image == null) {
+            return Mono.just(Pair.of(true, ""));
+        }
+
+        AllowedExtension extension = ImageFilenameValidator.validateUploadFilename(image.filename());
+
+        if (extension == null) {
+            return Mono.just(Pair.of(false, FILE_UPLOAD_INVALID_NAME_FAILURE_STRING));
+        }
+
+        return uploadImage(image, extension.name())
+                .map(imageObjectName -> Pair.of(true, imageObjectName))
+                .onErrorResume(e -> {
+                    log.error("Upload of image for bulk request failed due to exception", e);
+                    return Mono.just(Pair.of(false, FILE_UPLOAD_INTERNAL_ERROR_FAILURE_STRING));
+                });
+    }
+
+    private Mono<List<BulkCarResult>> saveBulk(List<Car> cars, List<Pair<Boolean, String>> uploadResults) {
+        List<Integer> acceptedIndices = IntStream.range(0, cars.size())
+                .filter(i -> uploadResults.get(i).getFirst()).boxed().toList();
+        List<String> imageObjectNames = acceptedIndices.stream().map(i -> uploadResults.get(i).getSecond()).toList();
+        List<String> uploadedImageObjectNames = imageObjectNames.stream().filter(name -> !name.isEmpty()).toList();
+
+        return allocateIds(CAR_SEQUENCE, acceptedIndices.size())
+                .zipWith(allocateIds(CAR_IMAGE_SEQUENCE, uploadedImageObjectNames.size()))
+                .flatMap(ids -> {
+                    Instant now = Instant.now();
+                    List<CarRow> carRows = new ArrayList<>();
+                    List<CarImageRow> imageRows = new ArrayList<>();
+                    int imageIndex = 0;
+
+                    for (int i = 0; i < acceptedIndices.size(); i++) {
+                        Car car = cars.get(acceptedIndices.get(i));
+                        CarRow carRow = new CarRow(ids.getT1().get(i), car.getBrand(), car.getModel(), now);
+                        carRows.add(carRow);
+
+                        if (!imageObjectNames.get(i).isEmpty()) {
+                            imageRows.add(new CarImageRow(ids.getT2().get(imageIndex++), carRow.id(),
+                                    imageObjectNames.get(i)));
+                        }
+                    }
+
+                    return insertAll(carRows).then(insertAll(imageRows)).thenReturn(carRows);
+                })
+                .as(transactionalOperator::transactional)
+                // nothing has been saved, so none of the uploaded images is referenced
+                .onErrorResume(e -> deleteUploadedImageObjects(uploadedImageObjectNames).then(Mono.error(e)))
+                .flatMap(carRows -> releaseUploads(uploadedImageObjectNames).thenReturn(carRows))
+                .doOnNext(carRows -> imageRenditionService.generateRenditionsAsync(uploadedImageObjectNames))
+                .map(carRows -> {
+                    BulkCarResult[] results = new BulkCarResult[cars.size()];
+
+                    for (int i = 0; i < cars.size(); i++) {
+                        if (!uploadResults.get(i).getFirst()) {
+                            results[i] = BulkCarResult.rejected(i, uploadResults.get(i).getSecond());
+                        }
+                    }
+                    for (int i = 0; i < acceptedIndices.size(); i++) {
+                        String imageObjectName = imageObjectNames.get(i);
+                        results[acceptedIndices.get(i)] = BulkCarResult.added(acceptedIndices.get(i),
+                                toCar(carRows.get(i), imageObjectName.isEmpty() ? List.of() :
+                                        List.of(imageObjectName)));
+                    }
+
+                    return Arrays.asList(results);
+                });
+    }
+
+    /**
+     * Uploads all images before anything is saved. The car and its images are then inserted in one transaction;
+     * uploaded images are deleted if any upload or the insert fails.
+     */
+    private Mono<Pair<Boolean, Car>> addCarAndUploadImagesIfValidated(Car car, List<FilePart> imagesOfNewCar) {
+        if (imagesOfNewCar.size() > MAX_IMAGES_PER_CAR) {
+            return Mono.error(new InvalidFileRequestException(TOO_MANY_IMAGES_STRING));
+        }
+
+        List<String> fileExtensions = new ArrayList<>();
+
+        for (FilePart imageOfNewCar : imagesOfNewCar) {
+            AllowedExtension extension = ImageFilenameValidator.validateUploadFilename(imageOfNewCar.filename());
+
+            if (extension == null) {
+                return Mono.error(new InvalidFileRequestException(FILE_UPLOAD_INVALID_NAME_FAILURE_STRING));
+            }
+            fileExtensions.add(extension.name());
+        }
+
+        return uploadAll(imagesOfNewCar, fileExtensions)
+                .flatMap(imageObjectNames -> saveCarWithImages(car, imageObjectNames)
+                        .onErrorResume(e -> deleteUploadedImageObjects(imageObjectNames).then(Mono.error(e)))
+                        .flatMap(saved -> releaseUploads(imageObjectNames).thenReturn(saved))
+                        .doOnNext(saved -> imageRenditionService.generateRenditionsAsync(imageObjectNames)))
+                .map(saved -> Pair.of(true, saved))
+                .onErrorResume(e -> {
+                    log.error("Requested multipart data upload failed due to exception", e);
+
+                    return Mono.just(Pair.of(false, new Car()));
+                });
+    }
+
+    /**
+     * Uploads the images concurrently and waits for all of them. If any upload fails, the other images are deleted
+     * again and the first failure is emitted.
+     */
+    private Mono<List<String>> uploadAll(List<FilePart> images, List<String> fileExtensions) {
+        return Flux.range(0, images.size())
+                .flatMapSequential(i -> uploadImage(images.get(i), fileExtensions.get(i)).materialize(),
+                        uploadParallelism)
+                .collectList()
+                .flatMap(signals -> {
+                    List<String> uploaded = signals.stream().filter(Signal::isOnNext).map(Signal::get).toList();
+                    Optional<Throwable> failure = signals.stream().filter(Signal::isOnError)
+                            .map(Signal::getThrowable).findFirst();
+
+                    return failure.isEmpty() ? Mono.just(uploaded) :
+                            deleteUploadedImageObjects(uploaded).then(Mono.error(failure.get()));
+                });
+    }
+
+    /**
+     * Images are streamed to the blob store while the request is read, so that only a few buffers of each are held in
+     * memory.
+     */
+    private Mono<String> uploadImage(FilePart image, String fileExtension) {
+        return fileHandler.uploadFile(image.content(), fileExtension, CARS_BUCKET)
+                .flatMap(this::claimUpload);
+    }
+
+    /**
+     * Claims run on the blocking handler, as they are stored through JPA, see
+     * {@link BlobStoreFileHandler#claimUpload(String, String)}.
+     */
+    private Mono<String> claimUpload(String imageObjectName) {
+        return Mono.fromCallable(() -> {
+            blockingFileHandler.claimUpload(imageObjectName, CARS_BUCKET);
+            return imageObjectName;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Void> releaseUploads(List<String> imageObjectNames) {
+        return Mono.fromRunnable(() -> blockingFileHandler.releaseUploads(imageObjectNames))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * Deletes images which have been uploaded for cars that are not saved.
+     */
+    private Mono<Void> deleteUploadedImageObjects(List<String> imageObjectNames) {
+        return releaseUploads(imageObjectNames).then(deleteImageObjects(imageObjectNames));
+    }
+
+    private Mono<Car> saveCarWithImages(Car car, List<String> imageObjectNames) {
+        return allocateIds(CAR_SEQUENCE, 1)
+                .zipWith(allocateIds(CAR_IMAGE_SEQUENCE, imageObjectNames.size()))
+                .flatMap(ids -> {
+                    CarRow carRow = new CarRow(ids.getT1().get(0), car.getBrand(), car.getModel(), Instant.now());
+                    List<CarImageRow> imageRows = IntStream.range(0, imageObjectNames.size())
+                            .mapToObj(i -> new CarImageRow(ids.getT2().get(i), carRow.id(), imageObjectNames.get(i)))
+                            .toList();
+
+                    return entityTemplate.insert(carRow).then(insertAll(imageRows))
+                            .then(Mono.fromSupplier(() -> toCar(carRow, imageObjectNames)));
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    private <T> Mono<Void> insertAll(List<T> rows) {
+        return Flux.fromIterable(rows).concatMap(entityTemplate::insert).then();
+    }
+
+    /**
+     * Allocates ids the way Hibernate's pooled optimizer does, so that rows inserted by both stacks never collide:
+     * each value taken from the sequence stands for itself and the {@value #ID_ALLOCATION_SIZE} - 1 ids below it.
+     */
+    private Mono<List<Long>> allocateIds(String sequenceName, int count) {
+        return entityTemplate.getDatabaseClient().sql("select nextval('%s')".formatted(sequenceName))
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .repeat()
+                .concatMapIterable(highestId -> LongStream.rangeClosed(Math.max(1, highestId - ID_ALLOCATION_SIZE + 1),
+                        highestId).boxed().toList(), 1)
+                .take(count, true)
+                .collectList();
+    }
+
+    /**
+     * Deletes the objects which no car image refers to any more, together with their renditions. Deletions go through
+     * the same {@link de.doubleslash.spring.introduction.model.ReferenceCheckingFileHandler} as those of the blocking
+     * stack, so that both stacks check references and claims alike.
+     */
+    private Mono<Void> deleteImageObjects(List<String> imageObjectNames) {
+        if (imageObjectNames.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return Mono.fromCallable(() -> blockingFileHandler.deleteMultiple(imageObjectNames, CARS_BUCKET))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(failedImageObjectNames -> {
+                    if (!failedImageObjectNames.isEmpty()) {
+                        log.error("Failed to delete %d of %d image object(s): %s".formatted(
+                                failedImageObjectNames.size(), imageObjectNames.size(), failedImageObjectNames));
+                    }
+                })
+                .then();
+    }
+}
@@ -0,0 +1,72 @@
+package de.doubleslash.spring.introduction.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.minio.errors.MinioException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Maps the same exceptions to the same responses as {@link SpringExceptionHandler}.
+ */
+@Slf4j
+@RestControllerAdvice
+@Profile("reactive")
+public class ReactiveExceptionHandler {
+    @ExceptionHandler(CarNotFoundException.class)
+    public ResponseEntity<String> handleCarNotFoundException(CarNotFoundException e) {
+        log.error(e.getMessage());
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(JsonProcessingException.class)
+    public ResponseEntity<String> handleJsonProcessingException(JsonProcessingException e) {
+        log.error(e.getMessage());
+        return new ResponseEntity<>(CarDealershipService.CAR_JSON_PARSE_FAILURE_STRING, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(CarModelAndOrBrandStringInvalidException.class)
+    public ResponseEntity<String> handleCarModelAndOrBrandStringInvalidException(
+            CarModelAndOrBrandStringInvalidException e) {
+        log.error(e.getMessage());
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidFileRequestException.class)
+    public ResponseEntity<String> handleInvalidFileRequestException(InvalidFileRequestException e) {
+        log.error(e.getMessage());
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<String> handleInvalidBulkRequestException(InvalidBulkRequestException e) {
+        log.error(e.getMessage());
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(FileNotFoundException.class)
+    public ResponseEntity<String> handleFileNotFoundException(FileNotFoundException e) {
+        log.error(e.getMessage());
+        return new ResponseEntity<>(CarDealershipService.IMAGE_NOT_FOUND_STRING, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(ImageRenditionUnavailableException.class)
+    public ResponseEntity<String> handleImageRenditionUnavailableException(ImageRenditionUnavailableException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, SpringExceptionHandler.RENDITION_RETRY_AFTER_SECONDS)
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(MinioException.class)
+    public ResponseEntity<String> handleMinioException(MinioException e) {
+        log.error(e.getMessage());
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
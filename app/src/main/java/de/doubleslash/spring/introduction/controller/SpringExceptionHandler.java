@@ -4,17 +4,24 @@ package de.doubleslash.spring.introduction.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.minio.errors.MinioException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.io.FileNotFoundException;
+
 @Slf4j
 @RestControllerAdvice
+@Profile("!reactive")
 public class SpringExceptionHandler extends ResponseEntityExceptionHandler {
+    static final String RENDITION_RETRY_AFTER_SECONDS = "1";
+
     @ExceptionHandler(CarNotFoundException.class)
     public ResponseEntity<Object> handleCarNotFoundException(CarNotFoundException e, WebRequest req) {
         log.error(e.getMessage());
@@ -41,6 +48,34 @@ public class SpringExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(e, e.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST, req);
     }
 
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<Object> handleInvalidBulkRequestException(InvalidBulkRequestException e, WebRequest req) {
+        log.error(e.getMessage());
+        return handleExceptionInternal(e, e.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST, req);
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Object> handleMaxUploadSizeExceededException(MaxUploadSizeExceededException e,
+                                                                       WebRequest req) {
+        log.error(e.getMessage());
+        return handleExceptionInternal(e, e.getMessage(), new HttpHeaders(), HttpStatus.PAYLOAD_TOO_LARGE, req);
+    }
+
+    @ExceptionHandler(FileNotFoundException.class)
+    public ResponseEntity<Object> handleFileNotFoundException(FileNotFoundException e, WebRequest req) {
+        log.error(e.getMessage());
+        return handleExceptionInternal(e, CarDealershipService.IMAGE_NOT_FOUND_STRING, new HttpHeaders(), HttpStatus.NOT_FOUND, req);
+    }
+
+    @ExceptionHandler(ImageRenditionUnavailableException.class)
+    public ResponseEntity<Object> handleImageRenditionUnavailableException(ImageRenditionUnavailableException e,
+                                                                           WebRequest req) {
+        log.warn(e.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RENDITION_RETRY_AFTER_SECONDS);
+        return handleExceptionInternal(e, e.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE, req);
+    }
+
     @ExceptionHandler(MinioException.class)
     public ResponseEntity<Object> handleMinioException(MinioException e, WebRequest req) {
         log.error(e.getMessage());
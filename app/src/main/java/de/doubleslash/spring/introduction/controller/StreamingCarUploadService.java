@@ -0,0 +1,177 @@
+package de.doubleslash.spring.introduction.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import de.doubleslash.spring.introduction.model.Car;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+import org.apache.tomcat.util.http.fileupload.FileUpload;
+import org.apache.tomcat.util.http.fileupload.impl.SizeException;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletRequestContext;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Service;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.support.MissingServletRequestPartException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.*;
+
+/**
+ * Adds a car from a multipart request which is parsed while it is received. Every image is piped from the request
+ * into the blob store, instead of being spooled to a temporary file by the servlet container and read from there
+ * again. The filename of every image is validated from its part headers, before any of its bytes are read. Once an
+ * image has been received, the next one is received while the blob store completes its upload.
+ */
+@Service
+@Profile("!reactive")
+@Slf4j
+public class StreamingCarUploadService {
+    public final static String CAR_FIELD = "car";
+    public final static String FILE_FIELD = "file";
+    // far larger than any car, the whole request has to be read to find out
+    static final int MAX_CAR_FIELD_SIZE = 64 * 1024;
+
+    private final CarDealershipService carDealershipService;
+    private final ImageUploadPipeline imageUploadPipeline;
+    private final MultipartProperties multipartProperties;
+
+    public StreamingCarUploadService(CarDealershipService carDealershipService,
+                                     ImageUploadPipeline imageUploadPipeline, MultipartProperties multipartProperties) {
+        this.carDealershipService = carDealershipService;
+        this.imageUploadPipeline = imageUploadPipeline;
+        this.multipartProperties = multipartProperties;
+    }
+
+    /**
+     * Same as {@link CarDealershipService#addCarAndImagesIfValid(String, List)}, with the car read from the
+     * <code>car</code> field and the images from the <code>file</code> parts of the request. Images are uploaded as
+     * they are received; if the car is sent after them, they are deleted again if it is invalid. The size
+     * limits of <code>spring.servlet.multipart</code> apply as for any other multipart request.
+     */
+    public Pair<Boolean, Car> addCarAndImagesIfValid(HttpServletRequest request) throws Exception {
+        FileUpload upload = new FileUpload();
+        upload.setSizeMax(multipartProperties.getMaxRequestSize().toBytes());
+        upload.setFileSizeMax(multipartProperties.getMaxFileSize().toBytes());
+        upload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+
+        Car car = null;
+        List<Future<String>> uploads = new ArrayList<>();
+
+        try {
+            FileItemIterator parts = upload.getItemIterator(new ServletRequestContext(request));
+
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+
+                if (part.isFormField() && CAR_FIELD.equals(part.getFieldName())) {
+                    car = carDealershipService.carFromJsonIfValid(readCarField(part));
+                } else if (!part.isFormField() && FILE_FIELD.equals(part.getFieldName())) {
+                    Future<String> imageUpload = uploadImageIfValid(part, uploads.size());
+                    uploads.add(imageUpload);
+
+                    // the remaining images would be received in vain
+                    if (imageUpload.state() == Future.State.FAILED) {
+                        break;
+                    }
+                }
+            }
+        } catch (CarModelAndOrBrandStringInvalidException | JsonProcessingException | InvalidFileRequestException e) {
+            imageUploadPipeline.discardAll(uploads, CARS_BUCKET);
+            throw e;
+        } catch (Exception e) {
+            imageUploadPipeline.discardAll(uploads, CARS_BUCKET);
+            return uploadFailed(e);
+        }
+
+        List<String> uploadedFilenames;
+        try {
+            // deletes the other images if any upload has failed
+            uploadedFilenames = imageUploadPipeline.awaitAll(uploads, CARS_BUCKET);
+        } catch (Exception e) {
+            return uploadFailed(e);
+        }
+
+        if (car == null) {
+            deleteUploaded(uploadedFilenames);
+            throw new MissingServletRequestParameterException(CAR_FIELD, "String");
+        }
+        if (uploadedFilenames.isEmpty()) {
+            throw new MissingServletRequestPartException(FILE_FIELD);
+        }
+
+        return carDealershipService.saveCarWithUploadedImages(car, uploadedFilenames);
+    }
+
+    private Future<String> uploadImageIfValid(FileItemStream part, int uploadedImages) throws Exception {
+        // checked on the headers, the content of a rejected part is never read
+        AllowedExtension extension = ImageFilenameValidator.validateUploadFilename(part.getName());
+
+        if (extension == null) {
+            throw new InvalidFileRequestException(FILE_UPLOAD_INVALID_NAME_FAILURE_STRING);
+        }
+        if (uploadedImages >= MAX_IMAGES_PER_CAR) {
+            throw new InvalidFileRequestException(TOO_MANY_IMAGES_STRING);
+        }
+
+        try (InputStream image = part.openStream()) {
+            return imageUploadPipeline.uploadWhileReceiving(image, extension.name(), CARS_BUCKET);
+        }
+    }
+
+    private static String readCarField(FileItemStream part) throws IOException,
+            CarModelAndOrBrandStringInvalidException {
+        try (InputStream field = part.openStream()) {
+            byte[] carJson = field.readNBytes(MAX_CAR_FIELD_SIZE + 1);
+
+            if (carJson.length > MAX_CAR_FIELD_SIZE) {
+                throw new CarModelAndOrBrandStringInvalidException(CAR_MODEL_AND_OR_BRAND_NAME_INVALID_STRING);
+            }
+
+            return new String(carJson, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Pair<Boolean, Car> uploadFailed(Exception e) throws MaxUploadSizeExceededException {
+        SizeException sizeException = findSizeException(e);
+        if (sizeException != null) {
+            throw new MaxUploadSizeExceededException(sizeException.getPermittedSize(), e);
+        }
+
+        log.error("Requested multipart data upload failed due to exception", e);
+
+        return Pair.of(false, new Car());
+    }
+
+    /**
+     * Size limits are exceeded while the parts are read, so their exception may be wrapped by the blob store client.
+     */
+    @Nullable
+    private static SizeException findSizeException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SizeException sizeException) {
+                return sizeException;
+            }
+        }
+
+        return null;
+    }
+
+    private void deleteUploaded(List<String> uploadedFilenames) {
+        try {
+            carDealershipService.deleteUploadedImageObjects(uploadedFilenames);
+        } catch (Exception e) {
+            log.error("Cleanup of uploaded images failed due to exception", e);
+        }
+    }
+}
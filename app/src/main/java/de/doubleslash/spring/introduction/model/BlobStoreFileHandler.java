@@ -1,30 +1,105 @@
 package de.doubleslash.spring.introduction.model;
 
-import org.bouncycastle.util.encoders.Hex;
-
 import javax.annotation.Nullable;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.SecureRandom;
-import java.time.LocalDateTime;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public interface BlobStoreFileHandler {
-    default String buildUniqueFilename(String fileExtension, MessageDigest digest) {
-        int random = new SecureRandom().nextInt(0, Integer.MAX_VALUE);
-        String currentDateTime = LocalDateTime.now().toString();
+    String uploadFile(InputStream fileStream, @Nullable Long fileSize,
+                      String fileExtension, String bucketName) throws Exception;
 
-        String message = "%d".formatted(random) + currentDateTime;
-        byte[] hash = digest.digest(message.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Stores <code>fileData</code> under the given name, replacing any object of that name.
+     */
+    void uploadFileAs(byte[] fileData, String filename, String bucketName) throws Exception;
 
-        return Hex.toHexString(hash) + "." + fileExtension;
+    /**
+     * Protects an object uploaded through another handler from deletion until it is released, as
+     * {@link #uploadFile(InputStream, Long, String, String)} does for its own uploads. Handlers which don't check
+     * references before deleting ignore claims.
+     */
+    default void claimUpload(String filename, String bucketName) throws Exception {
     }
 
-    String uploadFile(InputStream fileStream, @Nullable Long fileSize,
-                      String fileExtension, String bucketName) throws Exception;
+    /**
+     * Releases uploads once the car images referring to them are committed, or before deleting uploads which won't be
+     * referred to. Releasing a name once undoes one upload of it.
+     */
+    default void releaseUploads(List<String> filenameList) {
+    }
 
     byte[] downloadFile(String filename, String bucketName) throws Exception;
 
-    void deleteMultiple(List<String> filenameList, String bucketName) throws Exception;
+    /**
+     * Opens the stored object for reading without buffering its content. The returned handle must be closed by the
+     * caller.
+     */
+    BlobStoreObject downloadFileStream(String filename, String bucketName) throws Exception;
+
+    /**
+     * Opens <code>length</code> bytes of the stored object, starting at <code>offset</code>, for reading. The returned
+     * handle must be closed by the caller.
+     */
+    BlobStoreObject downloadFileRange(String filename, String bucketName, long offset, long length) throws Exception;
+
+    /**
+     * Copies the object to a new name within the bucket, replacing any object of that name. The blob store copies the
+     * object itself, its content doesn't pass through the app.
+     */
+    void copyFile(String sourceFilename, String filename, String bucketName) throws Exception;
+
+    /**
+     * Returns the size of the stored object in bytes.
+     */
+    long getFileSize(String filename, String bucketName) throws Exception;
+
+    /**
+     * Returns a URL through which the object can be downloaded without credentials until <code>expiry</code> has
+     * passed. The URL may be relative to the app.
+     *
+     * @param contentType content type of the download, objects are stored without one
+     */
+    String getPresignedDownloadUrl(String filename, String bucketName, Duration expiry, String contentType)
+            throws Exception;
+
+    /**
+     * Returns a URL to which the object can be uploaded with a <code>PUT</code> request without credentials until
+     * <code>expiry</code> has passed. The URL may be relative to the app.
+     */
+    String getPresignedUploadUrl(String filename, String bucketName, Duration expiry) throws Exception;
+
+    /**
+     * Lists up to <code>maxObjects</code> objects of the bucket in ascending name order, starting after
+     * <code>startAfter</code>. Passing the name of the last returned object as <code>startAfter</code> fetches the
+     * next page, so that buckets of any size can be walked with bounded memory.
+     */
+    List<BlobStoreObjectInfo> listFiles(String bucketName, @Nullable String startAfter, int maxObjects)
+            throws Exception;
+
+    /**
+     * Deletes the given objects using as few requests as possible.
+     *
+     * @return names of the objects which could not be deleted
+     */
+    List<String> deleteMultiple(List<String> filenameList, String bucketName) throws Exception;
+
+    /**
+     * Runs {@link #deleteMultiple(List, String)} on the given executor.
+     *
+     * @return names of the objects which could not be deleted
+     */
+    default CompletableFuture<List<String>> deleteMultipleAsync(List<String> filenameList, String bucketName,
+                                                                Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return deleteMultiple(filenameList, bucketName);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
 }
@@ -0,0 +1,19 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Open handle on a stored object. The caller owns the stream and has to close it once the content has been consumed.
+ *
+ * @param stream object content
+ * @param length number of bytes readable from <code>stream</code>
+ */
+public record BlobStoreObject(InputStream stream, long length) implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
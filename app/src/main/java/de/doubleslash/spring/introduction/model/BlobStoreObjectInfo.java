@@ -0,0 +1,12 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.time.Instant;
+
+/**
+ * Entry of a bucket listing.
+ *
+ * @param name         object name
+ * @param lastModified time the object was uploaded
+ */
+public record BlobStoreObjectInfo(String name, Instant lastModified) {
+}
@@ -0,0 +1,13 @@
+package de.doubleslash.spring.introduction.model;
+
+import io.minio.errors.MinioException;
+
+/**
+ * Thrown if the bucket of a requested object doesn't exist. Buckets are created with their first object, so for
+ * buckets filled on demand this means that none of their objects exists yet.
+ */
+public class BucketNotFoundException extends MinioException {
+    public BucketNotFoundException(String bucketName) {
+        super("Bucket %s doesn't exist.".formatted(bucketName));
+    }
+}
@@ -0,0 +1,20 @@
+package de.doubleslash.spring.introduction.model;
+
+/**
+ * Outcome of adding a single car of a bulk request.
+ *
+ * @param index position of the car in the request
+ * @param added whether the car has been saved
+ * @param car   the saved car, <code>null</code> if it hasn't been added
+ * @param error reason why the car hasn't been added, <code>null</code> otherwise
+ */
+public record BulkCarResult(int index, boolean added, Car car, String error) {
+
+    public static BulkCarResult added(int index, Car car) {
+        return new BulkCarResult(index, true, car, null);
+    }
+
+    public static BulkCarResult rejected(int index, String error) {
+        return new BulkCarResult(index, false, null, error);
+    }
+}
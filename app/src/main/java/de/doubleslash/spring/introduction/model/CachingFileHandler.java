@@ -0,0 +1,164 @@
+package de.doubleslash.spring.introduction.model;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Keeps recently used objects of a {@link BlobStoreFileHandler} in memory. Object names are unique and their content
+ * never changes, so entries stay valid until they are evicted or deleted through this handler. Eviction is driven by
+ * the total size of the cached objects.
+ */
+public class CachingFileHandler implements BlobStoreFileHandler, MeterBinder {
+    public static final String CACHE_NAME = "blobstore";
+
+    private final BlobStoreFileHandler delegate;
+    private final Cache<String, byte[]> cache;
+    private final long maximumEntrySize;
+
+    public CachingFileHandler(BlobStoreFileHandler delegate, long maximumSize, long maximumEntrySize) {
+        this.delegate = delegate;
+        this.maximumEntrySize = maximumEntrySize;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((String key, byte[] fileData) -> fileData.length)
+                .recordStats()
+                .build();
+    }
+
+    private static String cacheKey(String filename, String bucketName) {
+        return bucketName + "/" + filename;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Publishes hits, misses, evictions and size of the cache.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public String uploadFile(InputStream fileStream, @Nullable Long fileSize, String fileExtension, String bucketName)
+            throws Exception {
+        return delegate.uploadFile(fileStream, fileSize, fileExtension, bucketName);
+    }
+
+    @Override
+    public void uploadFileAs(byte[] fileData, String filename, String bucketName) throws Exception {
+        delegate.uploadFileAs(fileData, filename, bucketName);
+        cache.invalidate(cacheKey(filename, bucketName));
+    }
+
+    @Override
+    public void claimUpload(String filename, String bucketName) throws Exception {
+        delegate.claimUpload(filename, bucketName);
+    }
+
+    @Override
+    public void releaseUploads(List<String> filenameList) {
+        delegate.releaseUploads(filenameList);
+    }
+
+    @Override
+    public byte[] downloadFile(String filename, String bucketName) throws Exception {
+        String key = cacheKey(filename, bucketName);
+        byte[] fileData = cache.getIfPresent(key);
+
+        if (fileData == null) {
+            fileData = delegate.downloadFile(filename, bucketName);
+            if (fileData != null && fileData.length <= maximumEntrySize) {
+                cache.put(key, fileData);
+            }
+        }
+
+        return fileData;
+    }
+
+    @Override
+    public BlobStoreObject downloadFileStream(String filename, String bucketName) throws Exception {
+        String key = cacheKey(filename, bucketName);
+        byte[] fileData = cache.getIfPresent(key);
+
+        if (fileData != null) {
+            return new BlobStoreObject(new ByteArrayInputStream(fileData), fileData.length);
+        }
+
+        BlobStoreObject object = delegate.downloadFileStream(filename, bucketName);
+
+        // objects of unknown or large size are passed through so that they never have to be held in memory
+        if (object.length() < 0 || object.length() > maximumEntrySize) {
+            return object;
+        }
+
+        try (object) {
+            fileData = object.stream().readAllBytes();
+        }
+        cache.put(key, fileData);
+
+        return new BlobStoreObject(new ByteArrayInputStream(fileData), fileData.length);
+    }
+
+    @Override
+    public BlobStoreObject downloadFileRange(String filename, String bucketName, long offset, long length)
+            throws Exception {
+        byte[] fileData = cache.getIfPresent(cacheKey(filename, bucketName));
+
+        if (fileData == null) {
+            return delegate.downloadFileRange(filename, bucketName, offset, length);
+        }
+
+        return new BlobStoreObject(new ByteArrayInputStream(fileData, (int) offset, (int) length), length);
+    }
+
+    @Override
+    public void copyFile(String sourceFilename, String filename, String bucketName) throws Exception {
+        delegate.copyFile(sourceFilename, filename, bucketName);
+        cache.invalidate(cacheKey(filename, bucketName));
+    }
+
+    @Override
+    public long getFileSize(String filename, String bucketName) throws Exception {
+        byte[] fileData = cache.getIfPresent(cacheKey(filename, bucketName));
+
+        return fileData == null ? delegate.getFileSize(filename, bucketName) : fileData.length;
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String filename, String bucketName, Duration expiry, String contentType)
+            throws Exception {
+        return delegate.getPresignedDownloadUrl(filename, bucketName, expiry, contentType);
+    }
+
+    @Override
+    public String getPresignedUploadUrl(String filename, String bucketName, Duration expiry) throws Exception {
+        // the object is written past this handler, a cached version of it would be stale
+        cache.invalidate(cacheKey(filename, bucketName));
+        return delegate.getPresignedUploadUrl(filename, bucketName, expiry);
+    }
+
+    @Override
+    public List<BlobStoreObjectInfo> listFiles(String bucketName, @Nullable String startAfter, int maxObjects)
+            throws Exception {
+        return delegate.listFiles(bucketName, startAfter, maxObjects);
+    }
+
+    @Override
+    public List<String> deleteMultiple(List<String> filenameList, String bucketName) throws Exception {
+        cache.invalidateAll(filenameList.stream().map(filename -> cacheKey(filename, bucketName)).toList());
+        return delegate.deleteMultiple(filenameList, bucketName);
+    }
+}
@@ -2,14 +2,18 @@ package de.doubleslash.spring.introduction.model;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import de.doubleslash.spring.introduction.spring.configuration.entity.Auditable;
+import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 import org.springframework.data.annotation.CreatedDate;
@@ -27,13 +31,18 @@ public class Car extends Auditable {
     // jpa won't change these values after instantiation, can be final
     private final String brand;
     private final String model;
+    // ids are allocated in blocks of 50 so that inserts can be sent as JDBC batches
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "car_seq")
+    @SequenceGenerator(name = "car_seq", sequenceName = "car_seq", allocationSize = 50)
     private Long id;
     @CreatedDate
     private Instant date;
-    @OneToMany(mappedBy = "associatedCar")
+    // images added together with a new car are inserted in the same transaction
+    @OneToMany(mappedBy = "associatedCar", cascade = CascadeType.PERSIST)
     @OnDelete(action = OnDeleteAction.CASCADE)
+    // initializes the image lists of up to 100 loaded cars at once instead of one query per car
+    @BatchSize(size = 100)
     @JsonManagedReference
     private List<CarImage> carImageList;
 
@@ -49,7 +58,19 @@ public class Car extends Auditable {
                 ", \"brand\":\"" + brand + "\"" +
                 ", \"model\":\"" + model + "\"" +
                 ", \"date\":\"" + date + "\"" +
-                ", \"carImageList\":" + carImageList + "}";
+                ", \"carImageList\":" + carImageListToString() + "}";
+    }
+
+    // same form as the JSON representation of the images, so that the whole string stays valid JSON
+    private String carImageListToString() {
+        if (carImageList == null) {
+            return "null";
+        }
+
+        return carImageList.stream()
+                .map(carImage -> "{\"imageObjectName\":\"" + carImage.getImageObjectName() + "\"}")
+                .toList()
+                .toString();
     }
 
     public int hashCode() {
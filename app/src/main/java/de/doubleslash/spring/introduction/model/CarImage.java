@@ -4,8 +4,12 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIncludeProperties;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,13 +21,16 @@ import lombok.NoArgsConstructor;
 @Data
 @Entity
 @Builder
+// object names are looked up when the blob store is reconciled with the database
+@Table(indexes = @Index(name = "car_image_object_name_idx", columnList = "imageObjectName"))
 @JsonIncludeProperties(value = "imageObjectName")
 public class CarImage {
     @ManyToOne
     @JsonBackReference
     private final Car associatedCar;
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "car_image_seq")
+    @SequenceGenerator(name = "car_image_seq", sequenceName = "car_image_seq", allocationSize = 50)
     private Long id;
     private String imageObjectName;
 
@@ -0,0 +1,11 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Row of the table mapped by {@link CarImage}, used by the reactive repositories.
+ */
+@Table("car_image")
+public record CarImageRow(@Id Long id, Long associatedCarId, String imageObjectName) {
+}
@@ -0,0 +1,14 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * Row of the table mapped by {@link Car}, used by the reactive repositories. Relations are not supported by R2DBC,
+ * the images of a car are loaded separately.
+ */
+@Table("car")
+public record CarRow(@Id Long id, String brand, String model, Instant date) {
+}
@@ -0,0 +1,21 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Lightweight read-only view of a car, used for listings.
+ */
+public record CarSummary(Long id, String brand, String model, Instant date, List<String> imageObjectNames) {
+
+    /**
+     * Used by the JPQL constructor expression in {@code CarRepository}, image names are added afterwards.
+     */
+    public CarSummary(Long id, String brand, String model, Instant date) {
+        this(id, brand, model, date, List.of());
+    }
+
+    public CarSummary withImageObjectNames(List<String> imageObjectNames) {
+        return new CarSummary(id, brand, model, date, imageObjectNames);
+    }
+}
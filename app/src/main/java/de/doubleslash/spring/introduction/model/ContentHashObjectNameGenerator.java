@@ -0,0 +1,89 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Names every object with the SHA-256 hash of its content, so that identical images map to the same object. The
+ * content is hashed while it is streamed to the blob store under a random temporary name, and moved to its final name
+ * once it has been read.
+ */
+public class ContentHashObjectNameGenerator implements ObjectNameGenerator {
+    private final RandomObjectNameGenerator temporaryNames = new RandomObjectNameGenerator();
+    // cloning skips the provider lookup of MessageDigest.getInstance
+    private final MessageDigest prototype;
+
+    public ContentHashObjectNameGenerator() {
+        try {
+            prototype = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public NamedUpload nameUpload(InputStream content, String fileExtension) {
+        MessageDigest digest = newDigest();
+
+        return new HashingUpload(new DigestInputStream(content, digest), temporaryNames.nextName(fileExtension),
+                digest, fileExtension);
+    }
+
+    @Override
+    public String name(byte[] content, String fileExtension) {
+        MessageDigest digest = newDigest();
+        digest.update(content);
+
+        return name(digest, fileExtension);
+    }
+
+    private static String name(MessageDigest digest, String fileExtension) {
+        return HexFormat.of().formatHex(digest.digest()) + "." + fileExtension;
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return (MessageDigest) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class HashingUpload implements NamedUpload {
+        private final InputStream content;
+        private final String uploadName;
+        private final MessageDigest digest;
+        private final String fileExtension;
+        private String objectName;
+
+        HashingUpload(InputStream content, String uploadName, MessageDigest digest, String fileExtension) {
+            this.content = content;
+            this.uploadName = uploadName;
+            this.digest = digest;
+            this.fileExtension = fileExtension;
+        }
+
+        @Override
+        public InputStream content() {
+            return content;
+        }
+
+        @Override
+        public String uploadName() {
+            return uploadName;
+        }
+
+        @Override
+        public String objectName() {
+            // digest() resets the digest, so the name is computed once
+            if (objectName == null) {
+                objectName = name(digest, fileExtension);
+            }
+
+            return objectName;
+        }
+    }
+}
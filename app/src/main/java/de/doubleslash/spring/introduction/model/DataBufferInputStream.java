@@ -0,0 +1,85 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Blocking stream of the content of a {@link Flux} of data buffers, for clients which only read an
+ * {@link InputStream}. At most <code>prefetch</code> buffers are requested ahead of the reader, so that a slow reader
+ * slows down the source instead of buffering its content. Must not be read on a non-blocking thread.
+ */
+class DataBufferInputStream extends InputStream {
+    private final Stream<DataBuffer> buffers;
+    private final Iterator<DataBuffer> iterator;
+    @Nullable
+    private DataBuffer current;
+
+    DataBufferInputStream(Flux<DataBuffer> content, int prefetch) {
+        this.buffers = content.doOnDiscard(DataBuffer.class, DataBufferUtils::release).toStream(prefetch);
+        this.iterator = buffers.iterator();
+    }
+
+    /**
+     * @return whether {@link #current} has readable bytes, false at the end of the content
+     */
+    private boolean advance() {
+        while (current == null || current.readableByteCount() == 0) {
+            releaseCurrent();
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+        }
+
+        return true;
+    }
+
+    private void releaseCurrent() {
+        if (current != null) {
+            DataBufferUtils.release(current);
+            current = null;
+        }
+    }
+
+    @Override
+    public int read() {
+        return advance() ? current.read() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        if (length == 0) {
+            return 0;
+        }
+        if (!advance()) {
+            return -1;
+        }
+
+        int count = Math.min(length, current.readableByteCount());
+        current.read(bytes, offset, count);
+
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.readableByteCount();
+    }
+
+    /**
+     * Cancels the source if it has not been read to its end.
+     */
+    @Override
+    public void close() {
+        releaseCurrent();
+        buffers.close();
+    }
+}
@@ -0,0 +1,40 @@
+package de.doubleslash.spring.introduction.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * An upload or deletion of an image object in progress, see {@link ReferenceCheckingFileHandler}. Claims expire, so
+ * that those of crashed replicas don't last.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+@Table(indexes = @Index(name = "image_object_claim_name_idx", columnList = "imageObjectName"))
+public class ImageObjectClaim {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "image_object_claim_seq")
+    @SequenceGenerator(name = "image_object_claim_seq", sequenceName = "image_object_claim_seq", allocationSize = 50)
+    private Long id;
+    private String imageObjectName;
+    @Enumerated(EnumType.STRING)
+    private Purpose purpose;
+    private Instant expiresAt;
+
+    public enum Purpose {
+        UPLOAD, DELETION
+    }
+}
@@ -0,0 +1,26 @@
+package de.doubleslash.spring.introduction.model;
+
+/**
+ * Downscaled variants of car images, stored in their own bucket in the format of the original. A rendition is named
+ * after its original, so that it can be found and deleted without any lookup.
+ */
+public enum ImageRendition {
+    thumbnail(160),
+    medium(640);
+
+    public static final String BUCKET = "car-image-renditions";
+
+    private final int maximumWidth;
+
+    ImageRendition(int maximumWidth) {
+        this.maximumWidth = maximumWidth;
+    }
+
+    public int getMaximumWidth() {
+        return maximumWidth;
+    }
+
+    public String objectName(String originalObjectName) {
+        return name() + "/" + originalObjectName;
+    }
+}
@@ -1,40 +1,181 @@
 package de.doubleslash.spring.introduction.model;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.util.HashMap;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 @Component
 @Profile("test")
 @Slf4j
 public class InMemoryFileHandler implements BlobStoreFileHandler {
+    // presigned URLs are served by the app itself, see InMemoryBlobStoreController
+    public static final String PRESIGNED_URL_ROOT = "/in-memory-blob-store";
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
 
-    private final Map<String, byte[]> blobStore = new HashMap<>();
+    // per bucket, sorted like the listing of a bucket
+    private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final ObjectNameGenerator objectNameGenerator;
+    private final SecretKeySpec urlSigningKey = new SecretKeySpec(newUrlSigningKey(), SIGNATURE_ALGORITHM);
+
+    public InMemoryFileHandler() {
+        this(new RandomObjectNameGenerator());
+    }
+
+    @Autowired
+    public InMemoryFileHandler(ObjectNameGenerator objectNameGenerator) {
+        this.objectNameGenerator = objectNameGenerator;
+    }
 
     @Override
     public String uploadFile(InputStream fileStream, @Nullable Long fileSize,
                              String fileExtension, String bucketName) throws Exception {
-        String filename = buildUniqueFilename(fileExtension, MessageDigest.getInstance("SHA256"));
-        blobStore.put(filename, fileStream.readAllBytes());
+        ObjectNameGenerator.NamedUpload upload = objectNameGenerator.nameUpload(fileStream, fileExtension);
+        // the content is in memory either way, so it is stored under its final name right away
+        byte[] fileData = upload.content().readAllBytes();
+        String filename = upload.objectName();
+        bucket(bucketName).put(filename, new StoredObject(fileData, Instant.now()));
         fileStream.close();
 
         return filename;
     }
 
+    @Override
+    public void uploadFileAs(byte[] fileData, String filename, String bucketName) {
+        bucket(bucketName).put(filename, new StoredObject(fileData, Instant.now()));
+    }
+
     @Override
     public byte[] downloadFile(String filename, String bucketName) {
-        return blobStore.get(filename);
+        StoredObject object = bucket(bucketName).get(filename);
+
+        return object == null ? null : object.data();
+    }
+
+    @Override
+    public BlobStoreObject downloadFileStream(String filename, String bucketName) throws FileNotFoundException {
+        byte[] fileData = getOrThrow(filename, bucketName);
+
+        return new BlobStoreObject(new ByteArrayInputStream(fileData), fileData.length);
+    }
+
+    @Override
+    public BlobStoreObject downloadFileRange(String filename, String bucketName, long offset, long length)
+            throws FileNotFoundException {
+        byte[] fileData = getOrThrow(filename, bucketName);
+
+        return new BlobStoreObject(new ByteArrayInputStream(fileData, (int) offset, (int) length), length);
     }
 
     @Override
-    public void deleteMultiple(List<String> filenameList, String bucketName) {
-        filenameList.stream().map(blobStore::remove).close();
+    public void copyFile(String sourceFilename, String filename, String bucketName) throws FileNotFoundException {
+        byte[] fileData = getOrThrow(sourceFilename, bucketName);
+        bucket(bucketName).put(filename, new StoredObject(fileData, Instant.now()));
+    }
+
+    @Override
+    public long getFileSize(String filename, String bucketName) throws FileNotFoundException {
+        return getOrThrow(filename, bucketName).length;
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String filename, String bucketName, Duration expiry, String contentType) {
+        return presignedUrl("GET", bucketName, filename, expiry, contentType);
+    }
+
+    @Override
+    public String getPresignedUploadUrl(String filename, String bucketName, Duration expiry) {
+        return presignedUrl("PUT", bucketName, filename, expiry, "");
+    }
+
+    /**
+     * Returns whether the URL has been issued for the given method and object by this handler and has not expired.
+     */
+    public boolean isValidPresignedUrl(String method, String bucketName, String filename, long expires,
+                                       String contentType, String signature) {
+        return Instant.now().getEpochSecond() <= expires && MessageDigest.isEqual(
+                sign(method, bucketName, filename, expires, contentType).getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String presignedUrl(String method, String bucketName, String filename, Duration expiry,
+                                String contentType) {
+        long expires = Instant.now().plus(expiry).getEpochSecond();
+
+        return "%s/%s/%s?expires=%d&response-content-type=%s&signature=%s".formatted(PRESIGNED_URL_ROOT, bucketName,
+                filename, expires, URLEncoder.encode(contentType, StandardCharsets.UTF_8),
+                sign(method, bucketName, filename, expires, contentType));
+    }
+
+    private String sign(String method, String bucketName, String filename, long expires, String contentType) {
+        try {
+            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+            mac.init(urlSigningKey);
+
+            return HexFormat.of().formatHex(mac.doFinal(String.join("\n", method, bucketName, filename,
+                    Long.toString(expires), contentType).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] newUrlSigningKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+
+        return key;
+    }
+
+    @Override
+    public List<BlobStoreObjectInfo> listFiles(String bucketName, @Nullable String startAfter, int maxObjects) {
+        NavigableMap<String, StoredObject> bucket = bucket(bucketName);
+        NavigableMap<String, StoredObject> remaining = startAfter == null ? bucket : bucket.tailMap(startAfter, false);
+
+        return remaining.entrySet().stream().limit(maxObjects)
+                .map(object -> new BlobStoreObjectInfo(object.getKey(), object.getValue().uploadedAt()))
+                .toList();
+    }
+
+    @Override
+    public List<String> deleteMultiple(List<String> filenameList, String bucketName) {
+        filenameList.forEach(bucket(bucketName)::remove);
+
+        return List.of();
+    }
+
+    private byte[] getOrThrow(String filename, String bucketName) throws FileNotFoundException {
+        StoredObject object = bucket(bucketName).get(filename);
+        if (object == null) {
+            throw new FileNotFoundException("Object %s doesn't exist.".formatted(filename));
+        }
+
+        return object.data();
+    }
+
+    private NavigableMap<String, StoredObject> bucket(String bucketName) {
+        return buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+    }
+
+    private record StoredObject(byte[] data, Instant uploadedAt) {
     }
 }
@@ -0,0 +1,34 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@Profile("test")
+public class InMemoryLeaseLock implements LeaseLock {
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String name, String owner, Duration duration) {
+        Instant now = Instant.now();
+        Instant until = now.plus(duration);
+        Lease lease = leases.compute(name, (leaseName, current) ->
+                current == null || !current.getLockedUntil().isAfter(now) || current.getLockedBy().equals(owner) ?
+                        new Lease(leaseName, owner, until) : current);
+
+        return lease.getLockedBy().equals(owner);
+    }
+
+    @Override
+    public void release(String name, String owner, Duration remaining) {
+        Instant until = Instant.now().plus(remaining);
+        leases.computeIfPresent(name, (leaseName, current) -> current.getLockedBy().equals(owner) ?
+                new Lease(leaseName, owner, until) : current);
+    }
+}
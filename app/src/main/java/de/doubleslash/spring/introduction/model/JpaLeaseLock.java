@@ -0,0 +1,59 @@
+package de.doubleslash.spring.introduction.model;
+
+import de.doubleslash.spring.introduction.repository.LeaseRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Leases stored in the database shared by all replicas. Every operation is a single conditional statement committed
+ * on its own, so replicas never wait for each other. Expiry is computed from and compared with the time of the
+ * database instead of the replica's clock, so that clocks skewed between replicas can't let two of them hold a lease.
+ */
+@Profile("!test")
+@Service
+public class JpaLeaseLock implements LeaseLock {
+
+    private final LeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public JpaLeaseLock(LeaseRepository leaseRepository, PlatformTransactionManager transactionManager) {
+        this.leaseRepository = leaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // a lease must be visible to other replicas immediately, independent of the caller's transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public boolean tryAcquire(String name, String owner, Duration duration) {
+        Integer updated = transactionTemplate.execute(status -> {
+            Instant now = leaseRepository.currentInstant();
+            return leaseRepository.updateIfExpiredOrOwned(name, owner, now, now.plus(duration));
+        });
+
+        if (updated != null && updated == 1) {
+            return true;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> leaseRepository.saveAndFlush(new Lease(name, owner,
+                    leaseRepository.currentInstant().plus(duration))));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // the lease exists and is held by another owner
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String name, String owner, Duration remaining) {
+        transactionTemplate.executeWithoutResult(status -> leaseRepository.updateIfOwned(name, owner,
+                leaseRepository.currentInstant().plus(remaining)));
+    }
+}
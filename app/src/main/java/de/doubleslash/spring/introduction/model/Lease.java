@@ -0,0 +1,35 @@
+package de.doubleslash.spring.introduction.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+public class Lease implements Persistable<String> {
+    @Id
+    private String name;
+    private String lockedBy;
+    private Instant lockedUntil;
+
+    @Override
+    public String getId() {
+        return name;
+    }
+
+    /**
+     * Saving a lease always inserts it, so that it fails instead of overwriting a lease held by another owner.
+     * Existing leases are only changed by the conditional updates of LeaseRepository.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
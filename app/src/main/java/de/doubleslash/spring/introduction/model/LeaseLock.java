@@ -0,0 +1,56 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Named locks which expire unless they are renewed, so that a lock held by a crashed replica is freed eventually.
+ * Lease durations are measured by the clock of the lease store, replicas only measure elapsed time themselves. Their
+ * clocks may therefore disagree without two replicas holding the same lease.
+ */
+public interface LeaseLock {
+    /**
+     * @return owner name identifying a lease holder, made of the pod name and a random suffix
+     */
+    static String newOwner() {
+        return "%s-%s".formatted(System.getenv().getOrDefault("HOSTNAME", "localhost"), UUID.randomUUID());
+    }
+
+    /**
+     * Acquires the lease if it is free or has expired, or renews it if it is already held by <code>owner</code>.
+     *
+     * @return whether <code>owner</code> holds the lease for <code>duration</code> from now
+     */
+    boolean tryAcquire(String name, String owner, Duration duration);
+
+    /**
+     * Lets the lease expire after <code>remaining</code>, if it is still held by <code>owner</code>.
+     */
+    void release(String name, String owner, Duration remaining);
+
+    /**
+     * Runs <code>task</code> if the lease can be acquired. The task is passed a callback renewing the lease, which
+     * returns false once it has been lost. Afterwards the lease is kept until at least <code>minimum</code> after
+     * the start, so that replicas starting the same job a little later skip it.
+     *
+     * @return result of the task, empty if the lease is held by another owner
+     */
+    default <T> Optional<T> callWithLease(String name, String owner, Duration maximum, Duration minimum,
+                                          Function<BooleanSupplier, T> task) {
+        long start = System.nanoTime();
+
+        if (!tryAcquire(name, owner, maximum)) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(task.apply(() -> tryAcquire(name, owner, maximum)));
+        } finally {
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            release(name, owner, elapsed.compareTo(minimum) < 0 ? minimum.minus(elapsed) : Duration.ZERO);
+        }
+    }
+}
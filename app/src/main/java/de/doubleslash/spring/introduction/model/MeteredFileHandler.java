@@ -0,0 +1,252 @@
+package de.doubleslash.spring.introduction.model;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+
+import javax.annotation.Nullable;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Records the latency of every operation of a {@link BlobStoreFileHandler} and the bytes it transfers, tagged with
+ * operation and bucket. Wraps the handler talking to the blob store, so that cache hits are not counted.
+ */
+public class MeteredFileHandler implements BlobStoreFileHandler {
+    public static final String REQUESTS_METRIC = "blobstore.requests";
+    public static final String TRANSFERRED_METRIC = "blobstore.transferred";
+
+    private final BlobStoreFileHandler delegate;
+    private final MeterRegistry meterRegistry;
+
+    public MeteredFileHandler(BlobStoreFileHandler delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String uploadFile(InputStream fileStream, @Nullable Long fileSize, String fileExtension, String bucketName)
+            throws Exception {
+        CountingInputStream countingStream = new CountingInputStream(fileStream);
+        String filename = record("upload", bucketName,
+                () -> delegate.uploadFile(countingStream, fileSize, fileExtension, bucketName));
+        recordTransferred(meterRegistry, "upload", bucketName, countingStream.count);
+
+        return filename;
+    }
+
+    @Override
+    public void uploadFileAs(byte[] fileData, String filename, String bucketName) throws Exception {
+        record("upload", bucketName, () -> {
+            delegate.uploadFileAs(fileData, filename, bucketName);
+            return null;
+        });
+        recordTransferred(meterRegistry, "upload", bucketName, fileData.length);
+    }
+
+    @Override
+    public void claimUpload(String filename, String bucketName) throws Exception {
+        delegate.claimUpload(filename, bucketName);
+    }
+
+    @Override
+    public void releaseUploads(List<String> filenameList) {
+        delegate.releaseUploads(filenameList);
+    }
+
+    @Override
+    public byte[] downloadFile(String filename, String bucketName) throws Exception {
+        byte[] fileData = record("download", bucketName, () -> delegate.downloadFile(filename, bucketName));
+        if (fileData != null) {
+            recordTransferred(meterRegistry, "download", bucketName, fileData.length);
+        }
+
+        return fileData;
+    }
+
+    /**
+     * The latency lasts until the object is closed, so that it includes the transfer of its content. The transferred
+     * bytes are those read from it.
+     */
+    @Override
+    public BlobStoreObject downloadFileStream(String filename, String bucketName) throws Exception {
+        return recordUntilClosed("download", bucketName, () -> delegate.downloadFileStream(filename, bucketName));
+    }
+
+    @Override
+    public BlobStoreObject downloadFileRange(String filename, String bucketName, long offset, long length)
+            throws Exception {
+        return recordUntilClosed("download-range", bucketName,
+                () -> delegate.downloadFileRange(filename, bucketName, offset, length));
+    }
+
+    @Override
+    public void copyFile(String sourceFilename, String filename, String bucketName) throws Exception {
+        record("copy", bucketName, () -> {
+            delegate.copyFile(sourceFilename, filename, bucketName);
+            return null;
+        });
+    }
+
+    @Override
+    public long getFileSize(String filename, String bucketName) throws Exception {
+        return record("stat", bucketName, () -> delegate.getFileSize(filename, bucketName));
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String filename, String bucketName, Duration expiry, String contentType)
+            throws Exception {
+        return record("presign", bucketName,
+                () -> delegate.getPresignedDownloadUrl(filename, bucketName, expiry, contentType));
+    }
+
+    @Override
+    public String getPresignedUploadUrl(String filename, String bucketName, Duration expiry) throws Exception {
+        return record("presign", bucketName, () -> delegate.getPresignedUploadUrl(filename, bucketName, expiry));
+    }
+
+    @Override
+    public List<BlobStoreObjectInfo> listFiles(String bucketName, @Nullable String startAfter, int maxObjects)
+            throws Exception {
+        return record("list", bucketName, () -> delegate.listFiles(bucketName, startAfter, maxObjects));
+    }
+
+    @Override
+    public List<String> deleteMultiple(List<String> filenameList, String bucketName) throws Exception {
+        return record("delete", bucketName, () -> delegate.deleteMultiple(filenameList, bucketName));
+    }
+
+    private <T> T record(String operation, String bucketName, Callable<T> call) throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+
+        try {
+            T result = call.call();
+            outcome = "success";
+            return result;
+        } catch (FileNotFoundException e) {
+            outcome = "not-found";
+            throw e;
+        } finally {
+            recordRequest(meterRegistry, sample, operation, bucketName, outcome);
+        }
+    }
+
+    private BlobStoreObject recordUntilClosed(String operation, String bucketName, Callable<BlobStoreObject> open)
+            throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        BlobStoreObject object;
+
+        try {
+            object = open.call();
+        } catch (Exception e) {
+            recordRequest(meterRegistry, sample, operation, bucketName, outcome(e));
+            throw e;
+        }
+
+        CountingInputStream countingStream = new CountingInputStream(object.stream()) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+
+                try {
+                    super.close();
+                } finally {
+                    recordRequest(meterRegistry, sample, operation, bucketName, failed ? "error" : "success");
+                    recordTransferred(meterRegistry, operation, bucketName, count);
+                }
+            }
+        };
+
+        return new BlobStoreObject(countingStream, object.length());
+    }
+
+    static String outcome(Throwable e) {
+        return e instanceof FileNotFoundException ? "not-found" : "error";
+    }
+
+    /**
+     * Shared with {@link ReactiveMeteredFileHandler}, so that both stacks publish the same meters.
+     */
+    static void recordRequest(MeterRegistry meterRegistry, Timer.Sample sample, String operation, String bucketName,
+                              String outcome) {
+        sample.stop(Timer.builder(REQUESTS_METRIC)
+                .description("Requests to the blob store")
+                .tags("operation", operation, "bucket", bucketName, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    static void recordTransferred(MeterRegistry meterRegistry, String operation, String bucketName, long bytes) {
+        // unknown lengths are reported as negative values
+        if (bytes < 0) {
+            return;
+        }
+
+        DistributionSummary.builder(TRANSFERRED_METRIC)
+                .description("Bytes transferred from and to the blob store")
+                .baseUnit(BaseUnits.BYTES)
+                .tags("operation", operation, "bucket", bucketName)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+        // set if reading the content failed, e.g. because the connection to the blob store broke
+        boolean failed;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int read = super.read();
+                if (read >= 0) {
+                    count++;
+                }
+
+                return read;
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    count += read;
+                }
+
+                return read;
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+
+            return skipped;
+        }
+    }
+}
@@ -2,46 +2,113 @@ package de.doubleslash.spring.introduction.model;
 
 import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
 import io.minio.errors.MinioException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.InputStream;
-import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 
 @Profile("!test")
 @Service
 @Slf4j
 public class MinioFileHandler implements BlobStoreFileHandler {
+    // limit of the S3 multi-object delete API
+    private static final int MAX_OBJECTS_PER_DELETE_REQUEST = 1000;
+
     private final MinioClient minioClient;
+    // signs URLs for the endpoint clients use, which may differ from the one the app uses
+    private final MinioClient presigningClient;
+    private final ObjectNameGenerator objectNameGenerator;
+    private final long partSize;
+    // buckets are never deleted by the app, so their existence only has to be checked once
+    private final Set<String> knownBuckets = ConcurrentHashMap.newKeySet();
 
-    public MinioFileHandler(FileHandlerConfiguration configuration) {
-        this.minioClient = getMinioClient(configuration);
+    public MinioFileHandler(FileHandlerConfiguration configuration, ObjectNameGenerator objectNameGenerator,
+                            OkHttpClient blobStoreHttpClient) {
+        this.minioClient = getMinioClient(configuration, blobStoreHttpClient);
+        this.presigningClient = getPresigningClient(configuration, blobStoreHttpClient);
+        this.objectNameGenerator = objectNameGenerator;
+        this.partSize = configuration.getUpload().getPartSize().toBytes();
     }
 
     @NotNull
-    private static MinioClient getMinioClient(FileHandlerConfiguration configuration) {
+    private static MinioClient getMinioClient(FileHandlerConfiguration configuration, OkHttpClient httpClient) {
         log.info(configuration.getEndpoint());
 
         return MinioClient.builder().endpoint(configuration.getEndpoint()).credentials(configuration.getUsername(),
-                configuration.getPassword()).build();
+                configuration.getPassword()).httpClient(httpClient).build();
+    }
+
+    @NotNull
+    private static MinioClient getPresigningClient(FileHandlerConfiguration configuration, OkHttpClient httpClient) {
+        FileHandlerConfiguration.Presigned presigned = configuration.getPresigned();
+        String endpoint = StringUtils.hasText(presigned.getEndpoint()) ? presigned.getEndpoint() :
+                configuration.getEndpoint();
+
+        return MinioClient.builder().endpoint(endpoint).region(presigned.getRegion())
+                .credentials(configuration.getUsername(), configuration.getPassword()).httpClient(httpClient).build();
     }
 
     private void makeBucketIfNotExists(String minioBucket) throws Exception {
+        if (knownBuckets.contains(minioBucket)) {
+            return;
+        }
+
         if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(minioBucket).build())) {
             minioClient.makeBucket(MakeBucketArgs.builder().bucket(minioBucket).build());
             log.info("Minio client created bucket %s".formatted(minioBucket));
         }
+        knownBuckets.add(minioBucket);
     }
 
     private void continueIfBucketExistsOrThrow(String minioBucket) throws Exception {
+        if (knownBuckets.contains(minioBucket)) {
+            return;
+        }
+
         if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(minioBucket).build())) {
-            throw new MinioException("Bucket %s doesn't exist.".formatted(minioBucket));
+            throw new BucketNotFoundException(minioBucket);
+        }
+        knownBuckets.add(minioBucket);
+    }
+
+    /**
+     * Maps error responses of Minio to the exceptions thrown by this handler. A missing bucket also removes it from
+     * the known buckets, so that the next operation checks it again.
+     */
+    private Exception translateErrorResponse(ErrorResponseException e, String bucketName, String filename) {
+        String code = e.errorResponse().code();
+
+        if ("NoSuchBucket".equals(code)) {
+            knownBuckets.remove(bucketName);
+            return new BucketNotFoundException(bucketName);
+        }
+        if ("NoSuchKey".equals(code)) {
+            return new FileNotFoundException("Object %s doesn't exist.".formatted(filename));
         }
+
+        return e;
     }
 
     @Override
@@ -50,38 +117,241 @@ public class MinioFileHandler implements BlobStoreFileHandler {
 
         makeBucketIfNotExists(bucketName);
 
-        String filename = buildUniqueFilename(fileExtension, MessageDigest.getInstance("SHA256"));
+        ObjectNameGenerator.NamedUpload upload = objectNameGenerator.nameUpload(fileStream, fileExtension);
 
-        minioClient.putObject(
-                PutObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(filename)
-                        .stream(fileStream, fileSize, -1)
-                        .build());
+        // a stream of unknown size is sent as a multipart upload, one buffered part at a time
+        try {
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(upload.uploadName())
+                            .stream(upload.content(), fileSize == null ? -1 : fileSize, partSize)
+                            .build());
+        } catch (ErrorResponseException e) {
+            throw translateErrorResponse(e, bucketName, upload.uploadName());
+        }
 
-        return filename;
+        if (upload.isRenamed()) {
+            moveUploaded(upload.uploadName(), upload.objectName(), bucketName);
+        }
+
+        return upload.objectName();
+    }
+
+    /**
+     * Copies an object uploaded under a temporary name to its final name within the blob store, unless an object of
+     * that name exists already. The final name is derived from the content, so an existing object holds the same
+     * content; it is copied onto itself instead, so that its modification time shows the new upload and the
+     * reconciliation job doesn't take it for an old orphan. The temporary object is deleted either way; if that
+     * fails, it is left to the reconciliation job.
+     */
+    private void moveUploaded(String uploadName, String filename, String bucketName) throws Exception {
+        try {
+            if (objectExists(filename, bucketName)) {
+                touchObject(filename, bucketName);
+            } else {
+                copyObject(uploadName, filename, bucketName);
+            }
+        } catch (ErrorResponseException e) {
+            throw translateErrorResponse(e, bucketName, filename);
+        } finally {
+            removeMovedObject(uploadName, bucketName);
+        }
+    }
+
+    @Override
+    public void copyFile(String sourceFilename, String filename, String bucketName) throws Exception {
+        copyObject(sourceFilename, filename, bucketName);
+    }
+
+    private void copyObject(String sourceFilename, String filename, String bucketName) throws Exception {
+        try {
+            minioClient.copyObject(CopyObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(filename)
+                    .source(CopySource.builder().bucket(bucketName).object(sourceFilename).build())
+                    .build());
+        } catch (ErrorResponseException e) {
+            throw translateErrorResponse(e, bucketName, sourceFilename);
+        }
+    }
+
+    /**
+     * An object can only be copied onto itself if its metadata is replaced; objects are stored without any.
+     */
+    private void touchObject(String filename, String bucketName) throws Exception {
+        minioClient.copyObject(CopyObjectArgs.builder()
+                .bucket(bucketName)
+                .object(filename)
+                .source(CopySource.builder().bucket(bucketName).object(filename).build())
+                .metadataDirective(Directive.REPLACE)
+                .build());
+    }
+
+    private void removeMovedObject(String filename, String bucketName) {
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(filename).build());
+        } catch (Exception e) {
+            log.error("Deletion of moved object %s failed".formatted(filename), e);
+        }
+    }
+
+    private boolean objectExists(String filename, String bucketName) throws Exception {
+        try {
+            minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(filename).build());
+            return true;
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void uploadFileAs(byte[] fileData, String filename, String bucketName) throws Exception {
+        makeBucketIfNotExists(bucketName);
+
+        try {
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(filename)
+                            .stream(new ByteArrayInputStream(fileData), fileData.length, -1)
+                            .build());
+        } catch (ErrorResponseException e) {
+            throw translateErrorResponse(e, bucketName, filename);
+        }
     }
 
     @Override
     public byte[] downloadFile(String filename, String bucketName)
             throws Exception {
+        try (BlobStoreObject object = downloadFileStream(filename, bucketName)) {
+            return object.stream().readAllBytes();
+        }
+    }
+
+    @Override
+    public BlobStoreObject downloadFileStream(String filename, String bucketName) throws Exception {
+        continueIfBucketExistsOrThrow(bucketName);
+
+        return openObject(GetObjectArgs.builder().bucket(bucketName).object(filename).build());
+    }
+
+    @Override
+    public BlobStoreObject downloadFileRange(String filename, String bucketName, long offset, long length)
+            throws Exception {
+        continueIfBucketExistsOrThrow(bucketName);
+
+        return openObject(GetObjectArgs.builder().bucket(bucketName).object(filename).offset(offset).length(length)
+                .build());
+    }
+
+    @Override
+    public long getFileSize(String filename, String bucketName) throws Exception {
         continueIfBucketExistsOrThrow(bucketName);
 
-        InputStream fileStream = minioClient.getObject(
-                GetObjectArgs.builder().bucket(bucketName).object(filename).build()
-        );
-        byte[] fileData = fileStream.readAllBytes();
-        fileStream.close();
+        try {
+            return minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(filename).build())
+                    .size();
+        } catch (ErrorResponseException e) {
+            throw translateErrorResponse(e, bucketName, filename);
+        }
+    }
 
-        return fileData;
+    @Override
+    public String getPresignedDownloadUrl(String filename, String bucketName, Duration expiry, String contentType)
+            throws Exception {
+        return presigningClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket(bucketName)
+                .object(filename)
+                .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                .extraQueryParams(Map.of("response-content-type", contentType))
+                .build());
     }
 
     @Override
-    public void deleteMultiple(List<String> filenameList, String bucketName) throws Exception {
+    public String getPresignedUploadUrl(String filename, String bucketName, Duration expiry) throws Exception {
+        makeBucketIfNotExists(bucketName);
+
+        return presigningClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket(bucketName)
+                .object(filename)
+                .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                .build());
+    }
+
+    @Override
+    public List<BlobStoreObjectInfo> listFiles(String bucketName, @Nullable String startAfter, int maxObjects)
+            throws Exception {
         continueIfBucketExistsOrThrow(bucketName);
 
-        for (String filename : filenameList) {
-            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(filename).build());
+        List<BlobStoreObjectInfo> page = new ArrayList<>(maxObjects);
+        ListObjectsArgs.Builder args = ListObjectsArgs.builder().bucket(bucketName).maxKeys(maxObjects);
+        if (startAfter != null) {
+            args.startAfter(startAfter);
         }
+
+        // the listing requests further pages while it is iterated, so iteration stops once the page is full
+        Iterator<Result<Item>> results = minioClient.listObjects(args.build()).iterator();
+        while (page.size() < maxObjects && results.hasNext()) {
+            try {
+                Item item = results.next().get();
+                // object names of the app never contain a slash, prefixes are skipped
+                if (item.isDir()) {
+                    continue;
+                }
+                page.add(new BlobStoreObjectInfo(item.objectName(), item.lastModified().toInstant()));
+            } catch (ErrorResponseException e) {
+                throw translateErrorResponse(e, bucketName, null);
+            }
+        }
+
+        return page;
+    }
+
+    private BlobStoreObject openObject(GetObjectArgs args) throws Exception {
+        try {
+            GetObjectResponse response = minioClient.getObject(args);
+            String contentLength = response.headers().get("Content-Length");
+
+            return new BlobStoreObject(response, contentLength == null ? -1 : Long.parseLong(contentLength));
+        } catch (ErrorResponseException e) {
+            throw translateErrorResponse(e, args.bucket(), args.object());
+        }
+    }
+
+    @Override
+    public List<String> deleteMultiple(List<String> filenameList, String bucketName) throws Exception {
+        List<String> failedFilenames = new ArrayList<>();
+
+        if (filenameList.isEmpty()) {
+            return failedFilenames;
+        }
+
+        continueIfBucketExistsOrThrow(bucketName);
+
+        for (int start = 0; start < filenameList.size(); start += MAX_OBJECTS_PER_DELETE_REQUEST) {
+            List<DeleteObject> chunk = filenameList
+                    .subList(start, Math.min(start + MAX_OBJECTS_PER_DELETE_REQUEST, filenameList.size()))
+                    .stream().map(DeleteObject::new).toList();
+
+            // the request is only sent while iterating the results, which contain one entry per failed object
+            for (Result<DeleteError> result : minioClient.removeObjects(
+                    RemoveObjectsArgs.builder().bucket(bucketName).objects(chunk).build())) {
+                try {
+                    DeleteError error = result.get();
+                    log.error("Deletion of object %s failed: %s".formatted(error.objectName(), error.message()));
+                    failedFilenames.add(error.objectName());
+                } catch (ErrorResponseException e) {
+                    throw translateErrorResponse(e, bucketName, null);
+                }
+            }
+        }
+
+        return failedFilenames;
     }
 }
@@ -0,0 +1,44 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.io.InputStream;
+
+/**
+ * Chooses the names of uploaded objects. Names consist of 64 lowercase hex characters, a dot and the file extension.
+ */
+public interface ObjectNameGenerator {
+    /**
+     * Names the object storing <code>content</code>, which is streamed to the blob store without being buffered. A
+     * name which depends on the content is only known once it has been read, so the content may have to be uploaded
+     * under a temporary name first, see {@link NamedUpload#isRenamed()}.
+     */
+    NamedUpload nameUpload(InputStream content, String fileExtension);
+
+    /**
+     * Names the object storing content which is already in memory.
+     */
+    String name(byte[] content, String fileExtension);
+
+    interface NamedUpload {
+        /**
+         * Stream of the content to upload under {@link #uploadName()}.
+         */
+        InputStream content();
+
+        /**
+         * Name to upload the content under.
+         */
+        String uploadName();
+
+        /**
+         * Final name of the object. May only be called once {@link #content()} has been read to its end.
+         */
+        String objectName();
+
+        /**
+         * Whether the uploaded object has to be moved from {@link #uploadName()} to {@link #objectName()}.
+         */
+        default boolean isRenamed() {
+            return !uploadName().equals(objectName());
+        }
+    }
+}
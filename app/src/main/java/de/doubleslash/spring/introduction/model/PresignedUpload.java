@@ -0,0 +1,13 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.time.Instant;
+
+/**
+ * Object name reserved for an image, which the client uploads to <code>uploadUrl</code> before adding its car.
+ *
+ * @param imageObjectName name under which the image is stored
+ * @param uploadUrl       URL to <code>PUT</code> the image to, may be relative to the app
+ * @param expiresAt       time after which <code>uploadUrl</code> is no longer accepted
+ */
+public record PresignedUpload(String imageObjectName, String uploadUrl, Instant expiresAt) {
+}
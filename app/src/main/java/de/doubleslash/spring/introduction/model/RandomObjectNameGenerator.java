@@ -0,0 +1,52 @@
+package de.doubleslash.spring.introduction.model;
+
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.stream.IntStream;
+
+/**
+ * Names every object with 256 random bits, independent of its content.
+ */
+public class RandomObjectNameGenerator implements ObjectNameGenerator {
+    private static final int NAME_BYTES = 32;
+
+    // seeded once and shared; threads are spread over several instances, so that they rarely wait for each other.
+    // DRBG keeps its state per instance, whereas all NativePRNG instances share one lock.
+    private final SecureRandom[] randoms = IntStream.range(0, Runtime.getRuntime().availableProcessors())
+            .mapToObj(i -> newSecureRandom())
+            .toArray(SecureRandom[]::new);
+
+    private static SecureRandom newSecureRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public NamedUpload nameUpload(InputStream content, String fileExtension) {
+        return new KnownNameUpload(content, nextName(fileExtension));
+    }
+
+    @Override
+    public String name(byte[] content, String fileExtension) {
+        return nextName(fileExtension);
+    }
+
+    String nextName(String fileExtension) {
+        byte[] bytes = new byte[NAME_BYTES];
+        randoms[(int) (Thread.currentThread().threadId() % randoms.length)].nextBytes(bytes);
+
+        return HexFormat.of().formatHex(bytes) + "." + fileExtension;
+    }
+
+    private record KnownNameUpload(InputStream content, String uploadName) implements NamedUpload {
+        @Override
+        public String objectName() {
+            return uploadName;
+        }
+    }
+}
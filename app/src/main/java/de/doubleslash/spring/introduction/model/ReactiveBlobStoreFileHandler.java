@@ -0,0 +1,39 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link BlobStoreFileHandler}.
+ */
+public interface ReactiveBlobStoreFileHandler {
+    /**
+     * Streams <code>content</code> to the blob store while it is being received, without buffering it as a whole.
+     * The buffers are released once they have been read.
+     */
+    Mono<String> uploadFile(Flux<DataBuffer> content, String fileExtension, String bucketName);
+
+    /**
+     * Completes once the object has been found, its content is read while subscribing to
+     * {@link ReactiveBlobStoreObject#content()}.
+     */
+    Mono<ReactiveBlobStoreObject> downloadFileStream(String filename, String bucketName);
+
+    /**
+     * Same as {@link #downloadFileStream(String, String)}, limited to <code>length</code> bytes starting at
+     * <code>offset</code>.
+     */
+    Mono<ReactiveBlobStoreObject> downloadFileRange(String filename, String bucketName, long offset, long length);
+
+    Mono<Long> getFileSize(String filename, String bucketName);
+
+    /**
+     * Deletes the given objects using as few requests as possible.
+     *
+     * @return names of the objects which could not be deleted
+     */
+    Mono<List<String>> deleteMultiple(List<String> filenameList, String bucketName);
+}
@@ -0,0 +1,10 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+/**
+ * Content of a stored object, read while it is subscribed to. The length is <code>-1</code> if it is unknown.
+ */
+public record ReactiveBlobStoreObject(Flux<DataBuffer> content, long length) {
+}
@@ -0,0 +1,62 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * Reactive view of the {@link InMemoryFileHandler}, so that both stacks share the same objects in tests.
+ */
+@Component
+@Profile("reactive & test")
+public class ReactiveInMemoryFileHandler implements ReactiveBlobStoreFileHandler {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int PREFETCH = 4;
+
+    private final InMemoryFileHandler delegate;
+
+    public ReactiveInMemoryFileHandler(InMemoryFileHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    private static ReactiveBlobStoreObject toReactive(BlobStoreObject object) {
+        return new ReactiveBlobStoreObject(DataBufferUtils.readInputStream(object::stream,
+                DefaultDataBufferFactory.sharedInstance, BUFFER_SIZE), object.length());
+    }
+
+    @Override
+    public Mono<String> uploadFile(Flux<DataBuffer> content, String fileExtension, String bucketName) {
+        return Mono.using(() -> new DataBufferInputStream(content, PREFETCH),
+                        stream -> Mono.fromCallable(() -> delegate.uploadFile(stream, null, fileExtension, bucketName)),
+                        DataBufferInputStream::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<ReactiveBlobStoreObject> downloadFileStream(String filename, String bucketName) {
+        return Mono.fromCallable(() -> toReactive(delegate.downloadFileStream(filename, bucketName)));
+    }
+
+    @Override
+    public Mono<ReactiveBlobStoreObject> downloadFileRange(String filename, String bucketName, long offset,
+                                                           long length) {
+        return Mono.fromCallable(() -> toReactive(delegate.downloadFileRange(filename, bucketName, offset, length)));
+    }
+
+    @Override
+    public Mono<Long> getFileSize(String filename, String bucketName) {
+        return Mono.fromCallable(() -> delegate.getFileSize(filename, bucketName));
+    }
+
+    @Override
+    public Mono<List<String>> deleteMultiple(List<String> filenameList, String bucketName) {
+        return Mono.fromCallable(() -> delegate.deleteMultiple(filenameList, bucketName));
+    }
+}
@@ -0,0 +1,96 @@
+package de.doubleslash.spring.introduction.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.doubleslash.spring.introduction.model.MeteredFileHandler.outcome;
+import static de.doubleslash.spring.introduction.model.MeteredFileHandler.recordRequest;
+import static de.doubleslash.spring.introduction.model.MeteredFileHandler.recordTransferred;
+
+/**
+ * Reactive counterpart of {@link MeteredFileHandler}, publishing the same meters. A request is timed from its
+ * subscription until it completes; a download until its content has been consumed.
+ */
+public class ReactiveMeteredFileHandler implements ReactiveBlobStoreFileHandler {
+    private final ReactiveBlobStoreFileHandler delegate;
+    private final MeterRegistry meterRegistry;
+
+    public ReactiveMeteredFileHandler(ReactiveBlobStoreFileHandler delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<String> uploadFile(Flux<DataBuffer> content, String fileExtension, String bucketName) {
+        return Mono.defer(() -> {
+            AtomicLong transferred = new AtomicLong();
+            Flux<DataBuffer> countedContent = content.doOnNext(buffer ->
+                    transferred.addAndGet(buffer.readableByteCount()));
+
+            return record("upload", bucketName, delegate.uploadFile(countedContent, fileExtension, bucketName))
+                    .doOnSuccess(filename -> recordTransferred(meterRegistry, "upload", bucketName,
+                            transferred.get()));
+        });
+    }
+
+    @Override
+    public Mono<ReactiveBlobStoreObject> downloadFileStream(String filename, String bucketName) {
+        return recordUntilConsumed("download", bucketName, delegate.downloadFileStream(filename, bucketName));
+    }
+
+    @Override
+    public Mono<ReactiveBlobStoreObject> downloadFileRange(String filename, String bucketName, long offset,
+                                                           long length) {
+        return recordUntilConsumed("download-range", bucketName,
+                delegate.downloadFileRange(filename, bucketName, offset, length));
+    }
+
+    @Override
+    public Mono<Long> getFileSize(String filename, String bucketName) {
+        return record("stat", bucketName, delegate.getFileSize(filename, bucketName));
+    }
+
+    @Override
+    public Mono<List<String>> deleteMultiple(List<String> filenameList, String bucketName) {
+        return record("delete", bucketName, delegate.deleteMultiple(filenameList, bucketName));
+    }
+
+    private <T> Mono<T> record(String operation, String bucketName, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+
+            return call
+                    .doOnSuccess(result -> recordRequest(meterRegistry, sample, operation, bucketName, "success"))
+                    .doOnError(e -> recordRequest(meterRegistry, sample, operation, bucketName, outcome(e)));
+        });
+    }
+
+    private Mono<ReactiveBlobStoreObject> recordUntilConsumed(String operation, String bucketName,
+                                                              Mono<ReactiveBlobStoreObject> open) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+
+            return open
+                    .doOnError(e -> recordRequest(meterRegistry, sample, operation, bucketName, outcome(e)))
+                    .map(object -> {
+                        AtomicLong transferred = new AtomicLong();
+
+                        // a cancelled download, e.g. by a client which went away, counts like a stream closed early
+                        return new ReactiveBlobStoreObject(object.content()
+                                .doOnNext(buffer -> transferred.addAndGet(buffer.readableByteCount()))
+                                .doFinally(signal -> {
+                                    recordRequest(meterRegistry, sample, operation, bucketName,
+                                            signal == SignalType.ON_ERROR ? "error" : "success");
+                                    recordTransferred(meterRegistry, operation, bucketName, transferred.get());
+                                }), object.length());
+                    });
+        });
+    }
+}
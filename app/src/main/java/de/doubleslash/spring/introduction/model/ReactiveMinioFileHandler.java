@@ -0,0 +1,262 @@
+package de.doubleslash.spring.introduction.model;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.MinioException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reactive file handler based on the asynchronous Minio client. Requests are sent without blocking; reading the body
+ * of a downloaded object and multi-object deletes still block inside the client and therefore run on the bounded
+ * elastic scheduler.
+ */
+@Profile("reactive & !test")
+@Service
+@Slf4j
+public class ReactiveMinioFileHandler implements ReactiveBlobStoreFileHandler {
+    // limit of the S3 multi-object delete API
+    private static final int MAX_OBJECTS_PER_DELETE_REQUEST = 1000;
+    private static final int BUFFER_SIZE = 8192;
+    // buffers of an uploaded request part which are requested ahead of the upload
+    private static final int PREFETCH = 4;
+
+    private final MinioAsyncClient minioClient;
+    private final ObjectNameGenerator objectNameGenerator;
+    private final long partSize;
+    // buckets are never deleted by the app, so their existence only has to be checked once
+    private final Set<String> knownBuckets = ConcurrentHashMap.newKeySet();
+
+    public ReactiveMinioFileHandler(FileHandlerConfiguration configuration, ObjectNameGenerator objectNameGenerator,
+                                    OkHttpClient blobStoreHttpClient) {
+        this.minioClient = MinioAsyncClient.builder().endpoint(configuration.getEndpoint())
+                .credentials(configuration.getUsername(), configuration.getPassword())
+                .httpClient(blobStoreHttpClient).build();
+        this.objectNameGenerator = objectNameGenerator;
+        this.partSize = configuration.getUpload().getPartSize().toBytes();
+    }
+
+    private static <T> Mono<T> call(Callable<CompletableFuture<T>> request) {
+        return Mono.fromCallable(request).flatMap(Mono::fromFuture);
+    }
+
+    private Mono<Void> makeBucketIfNotExists(String minioBucket) {
+        if (knownBuckets.contains(minioBucket)) {
+            return Mono.empty();
+        }
+
+        return call(() -> minioClient.bucketExists(BucketExistsArgs.builder().bucket(minioBucket).build()))
+                .flatMap(exists -> exists ? Mono.<Void>empty() : call(() -> minioClient.makeBucket(
+                        MakeBucketArgs.builder().bucket(minioBucket).build()))
+                        .doOnSuccess(created -> log.info("Minio client created bucket %s".formatted(minioBucket))))
+                .doOnSuccess(checked -> knownBuckets.add(minioBucket));
+    }
+
+    private Mono<Void> continueIfBucketExistsOrThrow(String minioBucket) {
+        if (knownBuckets.contains(minioBucket)) {
+            return Mono.empty();
+        }
+
+        return call(() -> minioClient.bucketExists(BucketExistsArgs.builder().bucket(minioBucket).build()))
+                .flatMap(exists -> exists ? Mono.<Void>empty() :
+                        Mono.error(new BucketNotFoundException(minioBucket)))
+                .doOnSuccess(checked -> knownBuckets.add(minioBucket));
+    }
+
+    /**
+     * Maps error responses of Minio to the exceptions of {@link MinioFileHandler}. A missing bucket also removes it
+     * from the known buckets, so that the next operation checks it again.
+     */
+    private Throwable translateErrorResponse(Throwable e, String bucketName, String filename) {
+        if (!(e instanceof ErrorResponseException errorResponseException)) {
+            return e;
+        }
+
+        String code = errorResponseException.errorResponse().code();
+
+        if ("NoSuchBucket".equals(code)) {
+            knownBuckets.remove(bucketName);
+            return new BucketNotFoundException(bucketName);
+        }
+        if ("NoSuchKey".equals(code)) {
+            return new FileNotFoundException("Object %s doesn't exist.".formatted(filename));
+        }
+
+        return e;
+    }
+
+    /**
+     * The content is read through a stream which only requests a few buffers ahead, so that at most one part of the
+     * multipart upload is held in memory.
+     */
+    @Override
+    public Mono<String> uploadFile(Flux<DataBuffer> content, String fileExtension, String bucketName) {
+        return makeBucketIfNotExists(bucketName)
+                .then(Mono.using(() -> new DataBufferInputStream(content, PREFETCH),
+                                stream -> upload(objectNameGenerator.nameUpload(stream, fileExtension), bucketName),
+                                DataBufferInputStream::close)
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<String> upload(ObjectNameGenerator.NamedUpload upload, String bucketName) {
+        // a stream of unknown size is sent as a multipart upload, one buffered part at a time
+        return call(() -> minioClient.putObject(PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(upload.uploadName())
+                        .stream(upload.content(), -1, partSize)
+                        .build()))
+                .onErrorMap(e -> translateErrorResponse(e, bucketName, upload.uploadName()))
+                .then(Mono.defer(() -> upload.isRenamed() ?
+                        moveUploaded(upload.uploadName(), upload.objectName(), bucketName) : Mono.<Void>empty()))
+                .then(Mono.fromSupplier(upload::objectName));
+    }
+
+    /**
+     * Same as the move of {@link MinioFileHandler}: an existing object of the final name holds the same content and
+     * is copied onto itself, so that the reconciliation job doesn't take it for an old orphan. The temporary object
+     * is deleted either way.
+     */
+    private Mono<Void> moveUploaded(String uploadName, String filename, String bucketName) {
+        return objectExists(filename, bucketName)
+                .flatMap(exists -> call(() -> minioClient.copyObject(exists ?
+                        CopyObjectArgs.builder().bucket(bucketName).object(filename)
+                                .source(CopySource.builder().bucket(bucketName).object(filename).build())
+                                .metadataDirective(Directive.REPLACE).build() :
+                        CopyObjectArgs.builder().bucket(bucketName).object(filename)
+                                .source(CopySource.builder().bucket(bucketName).object(uploadName).build())
+                                .build())))
+                .onErrorMap(e -> translateErrorResponse(e, bucketName, filename))
+                .then(removeMovedObject(uploadName, bucketName))
+                .onErrorResume(e -> removeMovedObject(uploadName, bucketName).then(Mono.error(e)));
+    }
+
+    private Mono<Void> removeMovedObject(String filename, String bucketName) {
+        return call(() -> minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(filename)
+                        .build()))
+                .onErrorResume(e -> {
+                    log.error("Deletion of moved object %s failed".formatted(filename), e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Boolean> objectExists(String filename, String bucketName) {
+        return call(() -> minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(filename)
+                        .build()))
+                .thenReturn(true)
+                .onErrorResume(e -> e instanceof ErrorResponseException errorResponseException &&
+                        "NoSuchKey".equals(errorResponseException.errorResponse().code()), e -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<ReactiveBlobStoreObject> downloadFileStream(String filename, String bucketName) {
+        return continueIfBucketExistsOrThrow(bucketName)
+                .then(openObject(GetObjectArgs.builder().bucket(bucketName).object(filename).build()));
+    }
+
+    @Override
+    public Mono<ReactiveBlobStoreObject> downloadFileRange(String filename, String bucketName, long offset,
+                                                           long length) {
+        return continueIfBucketExistsOrThrow(bucketName)
+                .then(openObject(GetObjectArgs.builder().bucket(bucketName).object(filename).offset(offset)
+                        .length(length).build()));
+    }
+
+    @Override
+    public Mono<Long> getFileSize(String filename, String bucketName) {
+        return continueIfBucketExistsOrThrow(bucketName)
+                .then(call(() -> minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(filename)
+                        .build())))
+                .map(StatObjectResponse::size)
+                .onErrorMap(e -> translateErrorResponse(e, bucketName, filename));
+    }
+
+    /**
+     * The object is only opened once the content is subscribed to, and closed when the content terminates or is
+     * cancelled. Responses which never write the content, e.g. because the request has been cancelled before, would
+     * leave it open otherwise. Its size is looked up first instead, so that a missing object still fails before the
+     * response is committed.
+     */
+    private Mono<ReactiveBlobStoreObject> openObject(GetObjectArgs args) {
+        Flux<DataBuffer> content = Flux.usingWhen(call(() -> minioClient.getObject(args)),
+                        response -> DataBufferUtils.readInputStream(() -> response,
+                                DefaultDataBufferFactory.sharedInstance, BUFFER_SIZE),
+                        response -> Mono.fromRunnable(() -> closeQuietly(response)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(e -> translateErrorResponse(e, args.bucket(), args.object()));
+
+        return call(() -> minioClient.statObject(StatObjectArgs.builder().bucket(args.bucket()).object(args.object())
+                        .build()))
+                .map(stat -> new ReactiveBlobStoreObject(content, contentLength(stat.size(), args)))
+                .onErrorMap(e -> translateErrorResponse(e, args.bucket(), args.object()));
+    }
+
+    private static long contentLength(long size, GetObjectArgs args) {
+        long offset = args.offset() == null ? 0 : args.offset();
+        long remaining = Math.max(0, size - offset);
+
+        return args.length() == null ? remaining : Math.min(args.length(), remaining);
+    }
+
+    private static void closeQuietly(GetObjectResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the response of object %s".formatted(response.object()), e);
+        }
+    }
+
+    @Override
+    public Mono<List<String>> deleteMultiple(List<String> filenameList, String bucketName) {
+        if (filenameList.isEmpty()) {
+            return Mono.just(List.of());
+        }
+
+        return continueIfBucketExistsOrThrow(bucketName)
+                .then(Mono.fromCallable(() -> removeObjects(filenameList, bucketName))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private List<String> removeObjects(List<String> filenameList, String bucketName) throws Exception {
+        List<String> failedFilenames = new ArrayList<>();
+
+        for (int start = 0; start < filenameList.size(); start += MAX_OBJECTS_PER_DELETE_REQUEST) {
+            List<DeleteObject> chunk = filenameList
+                    .subList(start, Math.min(start + MAX_OBJECTS_PER_DELETE_REQUEST, filenameList.size()))
+                    .stream().map(DeleteObject::new).toList();
+
+            // the request is only sent while iterating the results, which contain one entry per failed object
+            for (Result<DeleteError> result : minioClient.removeObjects(
+                    RemoveObjectsArgs.builder().bucket(bucketName).objects(chunk).build())) {
+                try {
+                    DeleteError error = result.get();
+                    log.error("Deletion of object %s failed: %s".formatted(error.objectName(), error.message()));
+                    failedFilenames.add(error.objectName());
+                } catch (ErrorResponseException e) {
+                    throw (Exception) translateErrorResponse(e, bucketName, null);
+                }
+            }
+        }
+
+        return failedFilenames;
+    }
+}
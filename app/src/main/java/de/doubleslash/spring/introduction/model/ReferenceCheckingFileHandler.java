@@ -0,0 +1,256 @@
+package de.doubleslash.spring.introduction.model;
+
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.ImageObjectClaimRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Nullable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static de.doubleslash.spring.introduction.model.ImageObjectClaim.Purpose.DELETION;
+import static de.doubleslash.spring.introduction.model.ImageObjectClaim.Purpose.UPLOAD;
+
+/**
+ * Only deletes objects which no {@link CarImage} refers to. With content-hash naming, all cars with the same image
+ * share one object, which may only be deleted together with its last reference. Deletions therefore have to run after
+ * the rows of the deleted images have been removed, within the same transaction or after it.
+ * <p>
+ * An uploaded object is not referred to before the car is committed, and another car may be deleted in the meantime
+ * with the same object. Uploads and deletions therefore store {@link ImageObjectClaim}s first, committed on their own
+ * so that all replicas see them. A deletion skips objects claimed by uploads; an upload waits for deletions claimed
+ * before it and checks that its object still exists. Either one notices the other, whichever stores its claim first.
+ */
+@Slf4j
+public class ReferenceCheckingFileHandler implements BlobStoreFileHandler {
+    // covers the upload of all images of a car until the car is committed
+    public final static Duration UPLOAD_CLAIM_DURATION = Duration.ofHours(1);
+    // uploads of a claimed object wait at most this long for its deletion
+    public final static Duration DELETION_CLAIM_DURATION = Duration.ofMinutes(5);
+    private final static Duration DELETION_POLL_INTERVAL = Duration.ofMillis(100);
+
+    private final BlobStoreFileHandler delegate;
+    private final CarImageRepository carImageRepository;
+    private final ImageObjectClaimRepository claimRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ReferenceCheckingFileHandler(BlobStoreFileHandler delegate, CarImageRepository carImageRepository,
+                                        ImageObjectClaimRepository claimRepository,
+                                        PlatformTransactionManager transactionManager) {
+        this.delegate = delegate;
+        this.carImageRepository = carImageRepository;
+        this.claimRepository = claimRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // a claim must be visible to other replicas immediately, independent of the caller's transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * The uploaded object is claimed, see {@link #claimUpload(String, String)}.
+     */
+    @Override
+    public String uploadFile(InputStream fileStream, @Nullable Long fileSize, String fileExtension, String bucketName)
+            throws Exception {
+        String filename = delegate.uploadFile(fileStream, fileSize, fileExtension, bucketName);
+        claimUpload(filename, bucketName);
+
+        return filename;
+    }
+
+    /**
+     * A deletion which has checked the claims of the object before this claim was stored may delete the object just
+     * after it has been uploaded. Deletions claimed before are therefore waited for, and the object has to exist
+     * afterwards; otherwise the claim is released again and the upload fails.
+     */
+    @Override
+    public void claimUpload(String filename, String bucketName) throws Exception {
+        transactionTemplate.executeWithoutResult(status -> claimRepository.save(new ImageObjectClaim(null, filename,
+                UPLOAD, claimRepository.currentInstant().plus(UPLOAD_CLAIM_DURATION))));
+
+        while (!claimRepository.findClaimedImageObjectNames(List.of(filename), DELETION).isEmpty()) {
+            Thread.sleep(DELETION_POLL_INTERVAL.toMillis());
+        }
+
+        try {
+            delegate.getFileSize(filename, bucketName);
+        } catch (FileNotFoundException | BucketNotFoundException e) {
+            releaseUploads(List.of(filename));
+            throw new IOException("Object %s has been deleted while it was uploaded.".formatted(filename), e);
+        }
+    }
+
+    /**
+     * Claims which fail to be released expire, the objects are protected from deletion until then.
+     */
+    @Override
+    public void releaseUploads(List<String> filenameList) {
+        if (filenameList.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<String, Deque<Long>> claimIds = new HashMap<>();
+                for (ImageObjectClaim claim : claimRepository.findAllByImageObjectNameInAndPurpose(filenameList,
+                        UPLOAD)) {
+                    claimIds.computeIfAbsent(claim.getImageObjectName(), name -> new ArrayDeque<>())
+                            .add(claim.getId());
+                }
+
+                // one claim per upload, other uploads of the same object keep theirs
+                List<Long> releasedIds = new ArrayList<>();
+                for (String filename : filenameList) {
+                    Deque<Long> ids = claimIds.get(filename);
+                    if (ids != null && !ids.isEmpty()) {
+                        releasedIds.add(ids.poll());
+                    }
+                }
+                claimRepository.deleteAllByIdInBatch(releasedIds);
+            });
+        } catch (Exception e) {
+            log.error("Failed to release the uploads %s, they are kept until their claims expire"
+                    .formatted(filenameList), e);
+        }
+    }
+
+    @Override
+    public void uploadFileAs(byte[] fileData, String filename, String bucketName) throws Exception {
+        delegate.uploadFileAs(fileData, filename, bucketName);
+    }
+
+    @Override
+    public byte[] downloadFile(String filename, String bucketName) throws Exception {
+        return delegate.downloadFile(filename, bucketName);
+    }
+
+    @Override
+    public BlobStoreObject downloadFileStream(String filename, String bucketName) throws Exception {
+        return delegate.downloadFileStream(filename, bucketName);
+    }
+
+    @Override
+    public BlobStoreObject downloadFileRange(String filename, String bucketName, long offset, long length)
+            throws Exception {
+        return delegate.downloadFileRange(filename, bucketName, offset, length);
+    }
+
+    @Override
+    public void copyFile(String sourceFilename, String filename, String bucketName) throws Exception {
+        delegate.copyFile(sourceFilename, filename, bucketName);
+    }
+
+    @Override
+    public long getFileSize(String filename, String bucketName) throws Exception {
+        return delegate.getFileSize(filename, bucketName);
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String filename, String bucketName, Duration expiry, String contentType)
+            throws Exception {
+        return delegate.getPresignedDownloadUrl(filename, bucketName, expiry, contentType);
+    }
+
+    @Override
+    public String getPresignedUploadUrl(String filename, String bucketName, Duration expiry) throws Exception {
+        return delegate.getPresignedUploadUrl(filename, bucketName, expiry);
+    }
+
+    @Override
+    public List<BlobStoreObjectInfo> listFiles(String bucketName, @Nullable String startAfter, int maxObjects)
+            throws Exception {
+        return delegate.listFiles(bucketName, startAfter, maxObjects);
+    }
+
+    /**
+     * Objects which are still referenced or claimed by uploads are kept and not reported as failed. The
+     * {@link ImageRendition}s of deleted objects are deleted as well; renditions which fail to be deleted are only
+     * logged.
+     */
+    @Override
+    public List<String> deleteMultiple(List<String> filenameList, String bucketName) throws Exception {
+        List<String> candidates = carImageRepository.findUnreferencedImageObjectNames(filenameList);
+
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        List<ImageObjectClaim> deletionClaims = transactionTemplate.execute(status -> {
+            Instant expiresAt = claimRepository.currentInstant().plus(DELETION_CLAIM_DURATION);
+            return claimRepository.saveAll(candidates.stream()
+                    .map(filename -> new ImageObjectClaim(null, filename, DELETION, expiresAt))
+                    .toList());
+        });
+
+        try {
+            // checked again once the deletion is claimed, uploads claimed before have been committed or are claimed
+            Set<String> uploading = new HashSet<>(claimRepository.findClaimedImageObjectNames(candidates, UPLOAD));
+            List<String> unreferenced = carImageRepository.findUnreferencedImageObjectNames(candidates).stream()
+                    .filter(filename -> !uploading.contains(filename))
+                    .toList();
+
+            if (unreferenced.isEmpty()) {
+                return List.of();
+            }
+
+            List<String> failedFilenames = delegate.deleteMultiple(unreferenced, bucketName);
+            deleteRenditions(unreferenced.stream().filter(filename -> !failedFilenames.contains(filename))
+                    .toList());
+
+            return failedFilenames;
+        } finally {
+            releaseDeletions(deletionClaims);
+        }
+    }
+
+    private void releaseDeletions(@Nullable List<ImageObjectClaim> deletionClaims) {
+        if (deletionClaims == null) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> claimRepository.deleteAllByIdInBatch(
+                    deletionClaims.stream().map(ImageObjectClaim::getId).toList()));
+        } catch (Exception e) {
+            log.error("Failed to release the deletion of %d image object(s), uploads of them wait until it expires"
+                    .formatted(deletionClaims.size()), e);
+        }
+    }
+
+    private void deleteRenditions(List<String> filenames) {
+        List<String> renditionFilenames = filenames.stream()
+                .flatMap(filename -> Arrays.stream(ImageRendition.values())
+                        .map(rendition -> rendition.objectName(filename)))
+                .toList();
+
+        if (renditionFilenames.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<String> failedRenditionFilenames = delegate.deleteMultiple(renditionFilenames,
+                    ImageRendition.BUCKET);
+            if (!failedRenditionFilenames.isEmpty()) {
+                log.error("Failed to delete renditions %s".formatted(failedRenditionFilenames));
+            }
+        } catch (BucketNotFoundException e) {
+            // no rendition has been generated yet
+        } catch (Exception e) {
+            log.error("Failed to delete the renditions of %d image object(s)".formatted(filenames.size()), e);
+        }
+    }
+}
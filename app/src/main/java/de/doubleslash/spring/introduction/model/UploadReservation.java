@@ -0,0 +1,37 @@
+package de.doubleslash.spring.introduction.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * An object name reserved for a presigned upload, stored in the database so that any replica can add the car with
+ * the uploaded image.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+public class UploadReservation implements Persistable<String> {
+    @Id
+    private String imageObjectName;
+    private Instant expiresAt;
+
+    @Override
+    public String getId() {
+        return imageObjectName;
+    }
+
+    /**
+     * Reserved names are random, so saving a reservation always inserts it.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
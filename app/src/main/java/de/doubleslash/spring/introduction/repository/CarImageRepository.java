@@ -2,12 +2,47 @@ package de.doubleslash.spring.introduction.repository;
 
 import de.doubleslash.spring.introduction.model.CarImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 @Repository
 public interface CarImageRepository extends JpaRepository<CarImage, Long> {
+    int LOOKUP_CHUNK_SIZE = 1000;
+
     List<CarImage> findAllByAssociatedCarId(Long associatedCarId);
-}
\ No newline at end of file
+
+    @Query("select i.associatedCar.id as carId, i.imageObjectName as imageObjectName from CarImage i " +
+            "where i.associatedCar.id in :carIds")
+    List<ImageObjectNameView> findImageObjectNamesByCarIds(Collection<Long> carIds);
+
+    @Query("select i.imageObjectName from CarImage i where i.imageObjectName in :imageObjectNames")
+    List<String> findExistingImageObjectNames(Collection<String> imageObjectNames);
+
+    /**
+     * Returns the given names which no car image refers to, without duplicates. The names are looked up in chunks, so
+     * that the number of bind parameters per query stays bounded.
+     */
+    default List<String> findUnreferencedImageObjectNames(Collection<String> imageObjectNames) {
+        List<String> distinctNames = imageObjectNames.stream().distinct().toList();
+        Set<String> referenced = new HashSet<>();
+
+        for (int i = 0; i < distinctNames.size(); i += LOOKUP_CHUNK_SIZE) {
+            referenced.addAll(findExistingImageObjectNames(distinctNames.subList(i,
+                    Math.min(i + LOOKUP_CHUNK_SIZE, distinctNames.size()))));
+        }
+
+        return distinctNames.stream().filter(name -> !referenced.contains(name)).toList();
+    }
+
+    interface ImageObjectNameView {
+        Long getCarId();
+
+        String getImageObjectName();
+    }
+}
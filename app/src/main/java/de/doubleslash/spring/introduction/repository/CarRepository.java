@@ -1,17 +1,69 @@
 package de.doubleslash.spring.introduction.repository;
 
 import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface CarRepository extends JpaRepository<Car, Long> {
+    int STREAM_FETCH_SIZE = 100;
 
     List<Car> deleteCarByBrand(final String brand);
 
-    List<Car> deleteAllByDateBefore(final Instant expiration);
+    /**
+     * Returns the ids of up to <code>pageable</code>'s page size cars created before <code>expiration</code>, following
+     * the car with id <code>afterId</code>. Only cars whose id modulo <code>partitions</code> equals
+     * <code>partition</code> are returned.
+     */
+    @Query("select c.id from Car c where c.date < :expiration and c.id > :afterId " +
+            "and mod(c.id, :partitions) = :partition order by c.id")
+    List<Long> findExpiredIds(final Instant expiration, final Long afterId, final int partitions, final int partition,
+                              final Pageable pageable);
 
-}
\ No newline at end of file
+    /**
+     * Deletes the given cars with a single statement, their images are removed by the foreign key cascade. Loaded
+     * cars are not updated.
+     */
+    @Modifying
+    @Query("delete from Car c where c.id in :ids")
+    int deleteAllByIdIn(final Collection<Long> ids);
+
+    /**
+     * Keyset pagination: returns the ids of the cars following the car with id <code>afterId</code>, the page size is
+     * taken from <code>pageable</code>.
+     */
+    @Query("select c.id from Car c where c.id > :afterId order by c.id")
+    List<Long> findIdsByIdGreaterThan(final Long afterId, final Pageable pageable);
+
+    /**
+     * Loads the given cars together with their images in a single query. Fetching a collection cannot be combined
+     * with a row limit, which is why pages are selected by {@link #findIdsByIdGreaterThan(Long, Pageable)} first.
+     */
+    @EntityGraph(attributePaths = "carImageList")
+    List<Car> findWithImagesByIdInOrderByIdAsc(final Collection<Long> ids);
+
+    /**
+     * Streams all cars ordered by id. Has to be consumed within a transaction; rows are fetched from the database
+     * in blocks of {@value #STREAM_FETCH_SIZE}.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    Stream<Car> streamAllByOrderByIdAsc();
+
+    @Query("select new de.doubleslash.spring.introduction.model.CarSummary(c.id, c.brand, c.model, c.date) " +
+            "from Car c where c.id > :afterId order by c.id")
+    List<CarSummary> findSummariesByIdGreaterThan(final Long afterId, final Pageable pageable);
+
+}
@@ -0,0 +1,35 @@
+package de.doubleslash.spring.introduction.repository;
+
+import de.doubleslash.spring.introduction.model.ImageObjectClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImageObjectClaimRepository extends JpaRepository<ImageObjectClaim, Long> {
+
+    /**
+     * Claims expire by the clock of the database, which all replicas share.
+     */
+    @Query("select current_instant")
+    Instant currentInstant();
+
+    @Query("select c.imageObjectName from ImageObjectClaim c where c.imageObjectName in :imageObjectNames " +
+            "and c.purpose = :purpose and c.expiresAt > current_instant")
+    List<String> findClaimedImageObjectNames(final Collection<String> imageObjectNames,
+                                             final ImageObjectClaim.Purpose purpose);
+
+    List<ImageObjectClaim> findAllByImageObjectNameInAndPurpose(final Collection<String> imageObjectNames,
+                                                                final ImageObjectClaim.Purpose purpose);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ImageObjectClaim c where c.expiresAt <= current_instant")
+    int deleteExpired();
+}
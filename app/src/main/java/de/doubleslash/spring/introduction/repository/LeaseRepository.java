@@ -0,0 +1,28 @@
+package de.doubleslash.spring.introduction.repository;
+
+import de.doubleslash.spring.introduction.model.Lease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface LeaseRepository extends JpaRepository<Lease, String> {
+
+    /**
+     * Leases expire by the clock of the database, which all replicas share.
+     */
+    @Query("select current_instant")
+    Instant currentInstant();
+
+    @Modifying
+    @Query("update Lease l set l.lockedBy = :owner, l.lockedUntil = :until " +
+            "where l.name = :name and (l.lockedUntil <= :now or l.lockedBy = :owner)")
+    int updateIfExpiredOrOwned(final String name, final String owner, final Instant now, final Instant until);
+
+    @Modifying
+    @Query("update Lease l set l.lockedUntil = :until where l.name = :name and l.lockedBy = :owner")
+    int updateIfOwned(final String name, final String owner, final Instant until);
+}
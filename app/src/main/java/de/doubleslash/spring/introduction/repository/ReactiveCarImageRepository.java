@@ -0,0 +1,17 @@
+package de.doubleslash.spring.introduction.repository;
+
+import de.doubleslash.spring.introduction.model.CarImageRow;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * Reactive counterpart of {@link CarImageRepository}, used with the "reactive" profile.
+ */
+@Repository
+public interface ReactiveCarImageRepository extends R2dbcRepository<CarImageRow, Long> {
+
+    Flux<CarImageRow> findAllByAssociatedCarIdIn(final Collection<Long> associatedCarIds);
+}
@@ -0,0 +1,27 @@
+package de.doubleslash.spring.introduction.repository;
+
+import de.doubleslash.spring.introduction.model.CarRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reactive counterpart of {@link CarRepository}, used with the "reactive" profile.
+ */
+@Repository
+public interface ReactiveCarRepository extends R2dbcRepository<CarRow, Long> {
+
+    /**
+     * Keyset pagination: returns the cars following the car with id <code>afterId</code>, the page size is taken
+     * from <code>pageable</code>.
+     */
+    Flux<CarRow> findByIdGreaterThanOrderByIdAsc(final Long afterId, final Pageable pageable);
+
+    /**
+     * Streams all cars ordered by id, rows are emitted as they are requested.
+     */
+    Flux<CarRow> findAllByOrderByIdAsc();
+
+    Flux<CarRow> findAllByBrand(final String brand);
+}
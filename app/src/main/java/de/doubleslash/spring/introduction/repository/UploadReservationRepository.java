@@ -0,0 +1,36 @@
+package de.doubleslash.spring.introduction.repository;
+
+import de.doubleslash.spring.introduction.model.UploadReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UploadReservationRepository extends JpaRepository<UploadReservation, String> {
+
+    /**
+     * Reservations expire by the clock of the database, which all replicas share.
+     */
+    @Query("select current_instant")
+    Instant currentInstant();
+
+    @Query("select r.imageObjectName from UploadReservation r " +
+            "where r.imageObjectName in :imageObjectNames and r.expiresAt > current_instant")
+    List<String> findReservedImageObjectNames(final Collection<String> imageObjectNames);
+
+    @Modifying
+    @Query("delete from UploadReservation r " +
+            "where r.imageObjectName in :imageObjectNames and r.expiresAt > current_instant")
+    int deleteReserved(final Collection<String> imageObjectNames);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UploadReservation r where r.expiresAt <= current_instant")
+    int deleteExpired();
+}
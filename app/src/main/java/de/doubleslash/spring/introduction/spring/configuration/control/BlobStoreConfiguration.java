@@ -0,0 +1,148 @@
+package de.doubleslash.spring.introduction.spring.configuration.control;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import de.doubleslash.spring.introduction.model.BlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.CachingFileHandler;
+import de.doubleslash.spring.introduction.model.ContentHashObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.MeteredFileHandler;
+import de.doubleslash.spring.introduction.model.ObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.RandomObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.ReactiveBlobStoreFileHandler;
+import de.doubleslash.spring.introduction.model.ReactiveMeteredFileHandler;
+import de.doubleslash.spring.introduction.model.ReferenceCheckingFileHandler;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.ImageObjectClaimRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import io.minio.http.HttpUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the blob store used for car images.
+ */
+@Configuration
+public class BlobStoreConfiguration {
+    public static final String HTTP_METRICS_PREFIX = "blobstore.http";
+    public static final String HTTP_CALLS_METRIC = HTTP_METRICS_PREFIX + ".calls";
+
+    /**
+     * create the HTTP client shared by all blob store clients, based on the defaults of Minio
+     *
+     * @param configuration handler configuration
+     * @return OkHttpClient with the configured timeouts, request limits and connection pool
+     */
+    @Bean
+    public OkHttpClient blobStoreHttpClient(final FileHandlerConfiguration configuration) {
+        final FileHandlerConfiguration.Http http = configuration.getHttp();
+        // okhttp limits requests to a single host to 5 by default, and the blob store is a single host
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(http.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(http.getMaxRequests());
+
+        return HttpUtils.newDefaultHttpClient(http.getConnectTimeout().toMillis(), http.getWriteTimeout().toMillis(),
+                        http.getReadTimeout().toMillis()).newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(http.getMaxIdleConnections(), http.getKeepAlive().toMillis(),
+                        TimeUnit.MILLISECONDS))
+                .build();
+    }
+
+    /**
+     * publish the connections of the blob store HTTP client and its running and queued requests
+     *
+     * @param blobStoreHttpClient HTTP client shared by all blob store clients
+     * @param configuration       handler configuration
+     * @return MeterBinder bound by Spring Boot
+     */
+    @Bean
+    public MeterBinder blobStoreHttpClientMetrics(final OkHttpClient blobStoreHttpClient,
+                                                  final FileHandlerConfiguration configuration) {
+        final Dispatcher dispatcher = blobStoreHttpClient.dispatcher();
+
+        return registry -> {
+            new OkHttpConnectionPoolMetrics(blobStoreHttpClient.connectionPool(), HTTP_METRICS_PREFIX, Tags.empty(),
+                    configuration.getHttp().getMaxIdleConnections()).bindTo(registry);
+            Gauge.builder(HTTP_CALLS_METRIC, dispatcher, Dispatcher::runningCallsCount).tag("state", "running")
+                    .description("Requests sent to the blob store").register(registry);
+            Gauge.builder(HTTP_CALLS_METRIC, dispatcher, Dispatcher::queuedCallsCount).tag("state", "queued")
+                    .description("Requests waiting for one of max-requests to finish").register(registry);
+        };
+    }
+
+    /**
+     * choose how uploaded objects are named
+     *
+     * @param configuration handler configuration
+     * @return ObjectNameGenerator used by all file handlers
+     */
+    @Bean
+    public ObjectNameGenerator objectNameGenerator(final FileHandlerConfiguration configuration) {
+        return switch (configuration.getObjectNaming()) {
+            case RANDOM -> new RandomObjectNameGenerator();
+            case CONTENT_HASH -> new ContentHashObjectNameGenerator();
+        };
+    }
+
+    /**
+     * wrap the profile specific file handler in metrics, if enabled an in-memory image cache, and a check which keeps
+     * objects shared with other cars from being deleted
+     *
+     * @param fileHandler        file handler of the active profile
+     * @param configuration      handler configuration
+     * @param meterRegistry      registry of the blob store and cache metrics
+     * @param carImageRepository references of the image objects
+     * @param claimRepository    uploads and deletions of image objects in progress
+     * @param transactionManager transactions in which claims are stored
+     * @return BlobStoreFileHandler used by the application
+     */
+    @Bean
+    @Primary
+    public BlobStoreFileHandler instrumentedFileHandler(final BlobStoreFileHandler fileHandler,
+                                                        final FileHandlerConfiguration configuration,
+                                                        final MeterRegistry meterRegistry,
+                                                        final CarImageRepository carImageRepository,
+                                                        final ImageObjectClaimRepository claimRepository,
+                                                        final PlatformTransactionManager transactionManager) {
+        final BlobStoreFileHandler meteredFileHandler = new MeteredFileHandler(fileHandler, meterRegistry);
+        final FileHandlerConfiguration.Cache cache = configuration.getCache();
+
+        if (!cache.isEnabled()) {
+            return new ReferenceCheckingFileHandler(meteredFileHandler, carImageRepository, claimRepository,
+                    transactionManager);
+        }
+
+        final CachingFileHandler cachingFileHandler = new CachingFileHandler(meteredFileHandler,
+                cache.getMaximumSize().toBytes(), cache.getMaximumEntrySize().toBytes());
+        cachingFileHandler.bindTo(meterRegistry);
+
+        return new ReferenceCheckingFileHandler(cachingFileHandler, carImageRepository, claimRepository,
+                transactionManager);
+    }
+
+    /**
+     * wrap the reactive file handler in the same metrics as the blocking one
+     *
+     * @param reactiveFileHandler reactive file handler of the active profile
+     * @param meterRegistry       registry of the blob store metrics
+     * @return ReactiveBlobStoreFileHandler used by the reactive stack
+     */
+    @Bean
+    @Primary
+    @Profile("reactive")
+    public ReactiveBlobStoreFileHandler instrumentedReactiveFileHandler(
+            final ReactiveBlobStoreFileHandler reactiveFileHandler, final MeterRegistry meterRegistry) {
+        return new ReactiveMeteredFileHandler(reactiveFileHandler, meterRegistry);
+    }
+}
@@ -1,30 +1,48 @@
 package de.doubleslash.spring.introduction.spring.configuration.control;
 
 import org.apache.catalina.connector.Connector;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
 import org.springframework.boot.web.servlet.server.ServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.List;
 
 /**
  * Configuration of Http Server.
  */
 @Configuration
+@Profile("!reactive")
 public class HttpServerConfig {
 
     /**
      * configure httpPort on tomcat
      *
-     * @param httpPort httpPort
+     * @param httpPort                   httpPort
+     * @param protocolHandlerCustomizers customizers applied to the protocol handlers of both connectors
      * @return ServletWebServerFactory
      */
     @Bean
-    public ServletWebServerFactory servletContainer(@Value("${server.http.port}") final int httpPort) {
+    @SuppressWarnings("unchecked")
+    public ServletWebServerFactory servletContainer(@Value("${server.http.port}") final int httpPort,
+                                                    final ObjectProvider<TomcatProtocolHandlerCustomizer<?>>
+                                                            protocolHandlerCustomizers) {
+        final List<TomcatProtocolHandlerCustomizer<?>> customizers = protocolHandlerCustomizers.orderedStream()
+                .toList();
+
         final Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
         connector.setPort(httpPort);
+        // additional connectors are not customized by the factory
+        customizers.forEach(customizer -> ((TomcatProtocolHandlerCustomizer<ProtocolHandler>) customizer)
+                .customize(connector.getProtocolHandler()));
 
         final TomcatServletWebServerFactory tomcat = new TomcatServletWebServerFactory();
+        tomcat.getTomcatProtocolHandlerCustomizers().addAll(customizers);
         tomcat.addAdditionalTomcatConnectors(connector);
         return tomcat;
     }
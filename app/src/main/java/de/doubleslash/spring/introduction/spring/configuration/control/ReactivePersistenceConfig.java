@@ -0,0 +1,59 @@
+package de.doubleslash.spring.introduction.spring.configuration.control;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+
+/**
+ * Keeps JPA next to R2DBC with the "reactive" profile. Hibernate still manages the schema and the cron task still
+ * uses the repositories, but Spring Boot drops the data source as soon as an R2DBC connection factory exists.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactivePersistenceConfig {
+
+    /**
+     * the data source spring boot would configure without R2DBC
+     *
+     * @param properties spring.datasource properties
+     * @return HikariDataSource
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(final DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * blocking code keeps using JPA transactions
+     *
+     * @param entityManagerFactory entityManagerFactory
+     * @return JpaTransactionManager
+     */
+    @Bean
+    @Primary
+    public JpaTransactionManager transactionManager(final EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    /**
+     * transactions of the reactive stack, see ReactiveCarDealershipService
+     *
+     * @param connectionFactory connectionFactory
+     * @return R2dbcTransactionManager
+     */
+    @Bean
+    public R2dbcTransactionManager reactiveTransactionManager(final ConnectionFactory connectionFactory) {
+        return new R2dbcTransactionManager(connectionFactory);
+    }
+}
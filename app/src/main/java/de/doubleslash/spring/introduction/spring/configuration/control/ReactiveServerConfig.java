@@ -0,0 +1,26 @@
+package de.doubleslash.spring.introduction.spring.configuration.control;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Configuration of the reactive Http Server, which replaces {@link HttpServerConfig} with the "reactive" profile.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+    /**
+     * serve the reactive stack on httpPort, netty only supports a single port per server
+     *
+     * @param httpPort httpPort
+     * @return NettyReactiveWebServerFactory
+     */
+    @Bean
+    public NettyReactiveWebServerFactory reactiveWebServerFactory(@Value("${server.http.port}") final int httpPort) {
+        return new NettyReactiveWebServerFactory(httpPort);
+    }
+}
@@ -0,0 +1,175 @@
+package de.doubleslash.spring.introduction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.doubleslash.spring.introduction.model.PresignedUpload;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the presigned URL flows against the stub of {@link de.doubleslash.spring.introduction.model.InMemoryFileHandler},
+ * which the app serves itself.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "handler.presigned.enabled=true",
+        "server.http.port=0",
+        "spring.datasource.url=jdbc:h2:mem:presigned;DB_CLOSE_DELAY=-1"})
+class PresignedImageIntegrationTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper mapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+    private final String json = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"}";
+
+    @LocalServerPort
+    private int port;
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:%d".formatted(port)).resolve(path);
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpResponse<byte[]> postForm(String path, String form) throws Exception {
+        return send(HttpRequest.newBuilder(uri(path))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofString(form)));
+    }
+
+    private static byte[] pngImage(int width, int height) throws Exception {
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", image);
+
+        return image.toByteArray();
+    }
+
+    private HttpResponse<byte[]> addCar(String imageObjectName) throws Exception {
+        return postForm("/cars/add/confirm", "car=%s&image=%s".formatted(URLEncoder.encode(json,
+                StandardCharsets.UTF_8), imageObjectName));
+    }
+
+    private String imageObjectName(HttpResponse<byte[]> carResponse) throws Exception {
+        return mapper.readTree(carResponse.body()).at("/carImageList/0/imageObjectName").asText();
+    }
+
+    private PresignedUpload reserveUpload(String filename) throws Exception {
+        HttpResponse<byte[]> response = postForm("/cars/add/uploads", "filename=" + filename);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        return mapper.readValue(response.body(), PresignedUpload[].class)[0];
+    }
+
+    @Test
+    void givenImageUploadedToPresignedUrl_whenAddingCarAndFetchingImage_thenRedirectToImage() throws Exception {
+        final byte[] image = pngImage(800, 400);
+        final PresignedUpload upload = reserveUpload("TestTitle.png");
+
+        final HttpResponse<byte[]> uploadResponse = send(HttpRequest.newBuilder(uri(upload.uploadUrl()))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(image)));
+        final HttpResponse<byte[]> carResponse = addCar(upload.imageObjectName());
+        final String imageObjectName = imageObjectName(carResponse);
+
+        assertThat(uploadResponse.statusCode()).isEqualTo(200);
+        assertThat(carResponse.statusCode()).isEqualTo(200);
+        assertThat(imageObjectName).endsWith(".png").isNotEqualTo(upload.imageObjectName());
+
+        final HttpResponse<byte[]> redirect = send(HttpRequest.newBuilder(uri("/images/" + imageObjectName)));
+        final String location = redirect.headers().firstValue(HttpHeaders.LOCATION).orElseThrow();
+        final HttpResponse<byte[]> imageResponse = send(HttpRequest.newBuilder(uri(location)));
+
+        assertThat(redirect.statusCode()).isEqualTo(302);
+        assertThat(imageResponse.statusCode()).isEqualTo(200);
+        assertThat(imageResponse.headers().firstValue(HttpHeaders.CONTENT_TYPE)).hasValue(MediaType.IMAGE_PNG_VALUE);
+        assertThat(imageResponse.body()).isEqualTo(image);
+
+        final HttpResponse<byte[]> thumbnailRedirect = send(HttpRequest.newBuilder(uri("/images/" +
+                imageObjectName + "?size=thumbnail")));
+        final HttpResponse<byte[]> thumbnailResponse = send(HttpRequest.newBuilder(uri(thumbnailRedirect.headers()
+                .firstValue(HttpHeaders.LOCATION).orElseThrow())));
+
+        assertThat(ImageIO.read(new ByteArrayInputStream(thumbnailResponse.body())).getWidth()).isEqualTo(160);
+    }
+
+    @Test
+    void givenTamperedOrUnusedUploadUrl_whenUploadingAndAddingCar_thenRejectRequests() throws Exception {
+        final PresignedUpload upload = reserveUpload("TestTitle.jpg");
+
+        final HttpResponse<byte[]> tamperedUploadResponse = send(HttpRequest.newBuilder(uri(upload.uploadUrl()
+                        .replace("expires=", "expires=1")))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(new byte[1])));
+        final HttpResponse<byte[]> carResponse = addCar(upload.imageObjectName());
+
+        assertThat(tamperedUploadResponse.statusCode()).isEqualTo(403);
+        assertThat(carResponse.statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void givenAddedCar_whenUploadingAgainAndReusingUpload_thenKeepImageAndRejectUpload() throws Exception {
+        final byte[] image = pngImage(100, 50);
+        final PresignedUpload upload = reserveUpload("TestTitle.png");
+
+        send(HttpRequest.newBuilder(uri(upload.uploadUrl())).PUT(HttpRequest.BodyPublishers.ofByteArray(image)));
+        final String imageObjectName = imageObjectName(addCar(upload.imageObjectName()));
+        send(HttpRequest.newBuilder(uri(upload.uploadUrl())).PUT(HttpRequest.BodyPublishers.ofByteArray(
+                pngImage(4000, 4000))));
+
+        final HttpResponse<byte[]> reusedUploadResponse = addCar(upload.imageObjectName());
+        final HttpResponse<byte[]> imageResponse = send(HttpRequest.newBuilder(uri(send(HttpRequest.newBuilder(
+                uri("/images/" + imageObjectName))).headers().firstValue(HttpHeaders.LOCATION).orElseThrow())));
+
+        assertThat(reusedUploadResponse.statusCode()).isEqualTo(404);
+        assertThat(imageResponse.body()).isEqualTo(image);
+    }
+
+    @Test
+    void givenOversizedUpload_whenAddingCarAndRetryingWithSmallerUpload_thenKeepReservationForRetry()
+            throws Exception {
+        final PresignedUpload upload = reserveUpload("TestTitle.png");
+        send(HttpRequest.newBuilder(uri(upload.uploadUrl())).PUT(HttpRequest.BodyPublishers.ofByteArray(
+                new byte[2 * 1024 * 1024])));
+
+        final HttpResponse<byte[]> oversizedResponse = addCar(upload.imageObjectName());
+        send(HttpRequest.newBuilder(uri(upload.uploadUrl())).PUT(HttpRequest.BodyPublishers.ofByteArray(
+                pngImage(100, 50))));
+        final HttpResponse<byte[]> retriedResponse = addCar(upload.imageObjectName());
+
+        assertThat(oversizedResponse.statusCode()).isEqualTo(413);
+        assertThat(retriedResponse.statusCode()).isEqualTo(200);
+        assertThat(addCar(upload.imageObjectName()).statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void givenUnreservedImageObjectName_whenAddingCar_thenReturnNotFound() throws Exception {
+        final PresignedUpload upload = reserveUpload("TestTitle.png");
+        send(HttpRequest.newBuilder(uri(upload.uploadUrl())).PUT(HttpRequest.BodyPublishers.ofByteArray(
+                pngImage(100, 50))));
+        final String imageObjectName = imageObjectName(addCar(upload.imageObjectName()));
+
+        assertThat(addCar(imageObjectName).statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void givenInvalidFilename_whenReservingUpload_thenReturnBadRequest() throws Exception {
+        assertThat(postForm("/cars/add/uploads", "filename=TestTitle.exe.png").statusCode()).isEqualTo(400);
+    }
+}
@@ -0,0 +1,256 @@
+package de.doubleslash.spring.introduction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.doubleslash.spring.introduction.controller.CarDealershipService;
+import de.doubleslash.spring.introduction.model.BulkCarResult;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the API on the "reactive" profile. JPA and R2DBC share one in-memory database, so the schema is created by
+ * Hibernate as in production.
+ */
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1"})
+@AutoConfigureWebTestClient
+class ReactiveIntegrationTest {
+    private static final byte[] IMAGE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    @Autowired
+    private WebTestClient client;
+    @Autowired
+    private InMemoryFileHandler inMemoryFileHandler;
+
+    private static MultipartBodyBuilder carMultipart(String brand, int images, byte[] image) {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("car", "{\"brand\":\"%s\",\"model\":\"TestModel\"}".formatted(brand));
+        for (int i = 0; i < images; i++) {
+            builder.part("file", image).filename("TestTitle%d.png".formatted(i));
+        }
+
+        return builder;
+    }
+
+    private Car addCar(String brand, int images) throws Exception {
+        return addCar(brand, images, IMAGE);
+    }
+
+    private Car addCar(String brand, int images, byte[] image) throws Exception {
+        String body = client.post().uri("/cars/add").contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(carMultipart(brand, images, image).build()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        return objectMapper.readValue(body, Car.class);
+    }
+
+    @Test
+    void givenCarWithImages_whenAddingCar_thenCarAndImagesCanBeRead() throws Exception {
+        Car car = addCar("ReactiveBrand", 3);
+
+        assertThat(car.getCarImageList()).hasSize(3);
+
+        Car readCar = client.get().uri("/cars/" + car.getId()).exchange()
+                .expectStatus().isOk()
+                .expectBody(Car.class).returnResult().getResponseBody();
+
+        assertThat(readCar.equals(car)).isTrue();
+        assertThat(readCar.getCarImageList()).extracting(CarImage::getImageObjectName)
+                .containsExactlyElementsOf(car.getCarImageList().stream().map(CarImage::getImageObjectName).toList());
+
+        byte[] image = client.get().uri("/images/" + car.getCarImageList().get(0).getImageObjectName())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.IMAGE_PNG)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        assertThat(image).isEqualTo(IMAGE);
+    }
+
+    @Test
+    void givenImage_whenRequestingRangeAndMatchingETag_thenReturnPartialContentAndNotModified() throws Exception {
+        String imageObjectName = addCar("ReactiveBrand", 1).getCarImageList().get(0).getImageObjectName();
+
+        byte[] part = client.get().uri("/images/" + imageObjectName).header(HttpHeaders.RANGE, "bytes=2-4")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-4/10")
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        assertThat(part).isEqualTo(new byte[]{2, 3, 4});
+
+        client.get().uri("/images/" + imageObjectName).header(HttpHeaders.RANGE, "bytes=20-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+
+        client.get().uri("/images/" + imageObjectName).ifNoneMatch("\"" + imageObjectName + "\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void givenCars_whenListingPagesAndStream_thenReturnCarsOrderedById() throws Exception {
+        Car first = addCar("ReactivePageBrand", 1);
+        Car second = addCar("ReactivePageBrand", 1);
+
+        List<Car> page = client.get().uri("/cars?after=%d&limit=1".formatted(first.getId() - 1)).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(CarDealershipService.NEXT_CURSOR_HEADER, first.getId().toString())
+                .expectBodyList(Car.class).returnResult().getResponseBody();
+
+        assertThat(page).extracting(Car::getId).containsExactly(first.getId());
+
+        String stream = client.get().uri("/cars/stream").accept(MediaType.APPLICATION_NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        List<Long> streamedIds = stream.lines().map(line -> {
+            try {
+                return objectMapper.readValue(line, Car.class).getId();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).toList();
+
+        assertThat(streamedIds).contains(first.getId(), second.getId()).isSorted();
+    }
+
+    @Test
+    void givenInvalidRequests_whenAddingCar_thenReturnSameErrorsAsBlockingStack() {
+        MultipartBodyBuilder invalidFilename = new MultipartBodyBuilder();
+        invalidFilename.part("car", "{\"brand\":\"ReactiveBrand\",\"model\":\"TestModel\"}");
+        invalidFilename.part("file", IMAGE).filename("TestTitle.exe");
+
+        client.post().uri("/cars/add").contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(invalidFilename.build()))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo(CarDealershipService.FILE_UPLOAD_INVALID_NAME_FAILURE_STRING);
+
+        client.get().uri("/cars/0").exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo(CarDealershipService.CAR_NOT_FOUND_STRING);
+    }
+
+    @Test
+    void givenCarsOfBrand_whenDeletingBrand_thenDeleteCarsAndImages() throws Exception {
+        // identical images of other tests' cars would share the object
+        byte[] image = "ReactiveDeletedBrand".getBytes();
+        Car car = addCar("ReactiveDeletedBrand", 1, image);
+        addCar("ReactiveDeletedBrand", 1, image);
+
+        client.delete().uri("/cars/brand/ReactiveDeletedBrand").exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CarDealershipService.DELETE_CAR_BY_BRAND_SUCCESS_STRING
+                        .formatted(2, "ReactiveDeletedBrand"));
+
+        client.get().uri("/cars/" + car.getId()).exchange().expectStatus().isNotFound();
+        client.get().uri("/images/" + car.getCarImageList().get(0).getImageObjectName()).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void givenCarsWithSameImage_whenDeletingCars_thenKeepSharedImageUntilLastCarIsDeleted() throws Exception {
+        byte[] image = "ReactiveSharedImage".getBytes();
+        Car first = addCar("ReactiveSharedBrand", 1, image);
+        Car second = addCar("ReactiveSharedBrand", 1, image);
+        String imageObjectName = first.getCarImageList().get(0).getImageObjectName();
+
+        assertThat(second.getCarImageList().get(0).getImageObjectName()).isEqualTo(imageObjectName);
+
+        client.delete().uri("/cars/" + first.getId()).exchange().expectStatus().isOk();
+        client.get().uri("/images/" + imageObjectName).exchange().expectStatus().isOk();
+
+        client.delete().uri("/cars/" + second.getId()).exchange().expectStatus().isOk();
+        client.get().uri("/images/" + imageObjectName).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    void givenImageWithRenditions_whenDeletingCar_thenDeleteImageAndRenditions() throws Exception {
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "png", image);
+        Car car = addCar("ReactiveRenditionBrand", 1, image.toByteArray());
+        String imageObjectName = car.getCarImageList().get(0).getImageObjectName();
+
+        client.get().uri("/images/" + imageObjectName + "?size=thumbnail").exchange().expectStatus().isOk();
+        assertThat(inMemoryFileHandler.getFileSize(ImageRendition.thumbnail.objectName(imageObjectName),
+                ImageRendition.BUCKET)).isPositive();
+
+        client.delete().uri("/cars/" + car.getId()).exchange().expectStatus().isOk();
+
+        assertThat(inMemoryFileHandler.listFiles(ImageRendition.BUCKET, null, Integer.MAX_VALUE))
+                .noneMatch(rendition -> rendition.name().endsWith(imageObjectName));
+    }
+
+    @Test
+    void givenFieldsAsQueryParameters_whenReplacingCar_thenAcceptThemAsBlockingStackDoes() throws Exception {
+        Car car = addCar("ReactiveReplacedBrand", 1);
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("file", IMAGE).filename("TestTitle.png");
+
+        String body = client.post().uri(uri -> uri.path("/cars/replace")
+                        .queryParam("oldId", car.getId())
+                        .queryParam("car", "{car}")
+                        .build("{\"brand\":\"ReactiveReplacingBrand\",\"model\":\"TestModel\"}"))
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        assertThat(objectMapper.readValue(body, Car.class).getBrand()).isEqualTo("ReactiveReplacingBrand");
+        client.get().uri("/cars/" + car.getId()).exchange().expectStatus().isNotFound();
+
+        client.post().uri(uri -> uri.path("/cars/replace").queryParam("oldId", car.getId()).build())
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void givenCarsJson_whenAddingCarsInBulk_thenAddValidCarsAndRejectInvalidOnes() throws Exception {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("cars", "[{\"brand\":\"ReactiveBulkBrand\",\"model\":\"TestModel\"},{\"brand\":\"\"," +
+                "\"model\":\"TestModel\"},{\"brand\":\"ReactiveBulkBrand\",\"model\":\"TestModel\"}]");
+        builder.part("file", IMAGE).filename("TestTitle.png");
+
+        String body = client.post().uri("/cars/bulk").contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        List<BulkCarResult> results = Arrays.asList(objectMapper.readValue(body, BulkCarResult[].class));
+
+        assertThat(results).extracting(BulkCarResult::added).containsExactly(true, false, true);
+        assertThat(results.get(0).car().getCarImageList()).hasSize(1);
+        assertThat(results.get(2).car().getCarImageList()).isEmpty();
+    }
+}
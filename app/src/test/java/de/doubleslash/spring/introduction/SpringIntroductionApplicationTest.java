@@ -1,5 +1,10 @@
 package de.doubleslash.spring.introduction;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.doubleslash.spring.introduction.model.BulkCarResult;
 import de.doubleslash.spring.introduction.model.Car;
 import de.doubleslash.spring.introduction.model.CarImage;
 import org.jetbrains.annotations.NotNull;
@@ -13,6 +18,10 @@ import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -124,6 +133,98 @@ class SpringIntroductionApplicationTest {
         assertThat(carList).isNotNull().isNotEmpty();
     }
 
+    @Test
+    void givenCars_whenStreamingCatalogue_thenReturnOneJsonDocumentPerLine() throws JsonProcessingException {
+        ResponseEntity<Car> carResponseEntity = template.postForEntity("http://localhost:9090/cars/add",
+                multiPartHttpEntity, Car.class);
+
+        assertThat(carResponseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(carResponseEntity.getBody()).isNotNull();
+
+        final ResponseEntity<String> streamResponseEntity =
+                template.getForEntity("http://localhost:9090/cars/stream", String.class);
+
+        assertThat(streamResponseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(streamResponseEntity.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        assertThat(streamResponseEntity.getBody()).isNotNull();
+
+        final ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        final List<Long> streamedIds = new ArrayList<>();
+        for (String line : streamResponseEntity.getBody().split("\n")) {
+            streamedIds.add(objectMapper.readValue(line, Car.class).getId());
+        }
+
+        assertThat(streamedIds.contains(carResponseEntity.getBody().getId())).isTrue();
+        assertThat(streamedIds.stream().sorted().toList()).isEqualTo(streamedIds);
+    }
+
+    @Test
+    void givenManyCars_whenAddingCarsInBulk_thenReportResultPerCar() {
+        final String carsJson = "[{\"brand\":\"TestBrand\",\"model\":\"TestModel1\"}," +
+                "{\"brand\":\"\",\"model\":\"TestModel2\"}," +
+                "{\"brand\":\"TestBrand\",\"model\":\"TestModel3\"}]";
+        final Pair<ContentDisposition, byte[]> carsMultipart = Pair.of(ContentDisposition
+                .builder("form-data")
+                .name("cars")
+                .build(), carsJson.getBytes());
+
+        final ResponseEntity<BulkCarResult[]> bulkResponseEntity = template.postForEntity(
+                "http://localhost:9090/cars/bulk", getMultiPartHttpEntity(List.of(carsMultipart, fileMultipart,
+                        fileMultipart), List.of("cars", "file", "file")), BulkCarResult[].class);
+
+        assertThat(bulkResponseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        final BulkCarResult[] results = bulkResponseEntity.getBody();
+
+        assertThat(results).isNotNull();
+        assertThat(results.length).isEqualTo(3);
+        assertThat(results[0].added()).isTrue();
+        assertThat(results[1].added()).isFalse();
+        assertThat(results[2].added()).isTrue();
+
+        final Car carWithImage = template.getForObject("http://localhost:9090/cars/" + results[0].car().getId(),
+                Car.class);
+        final Car carWithoutImage = template.getForObject("http://localhost:9090/cars/" + results[2].car().getId(),
+                Car.class);
+
+        assertThat(carWithImage).isNotNull();
+        assertThat(carWithImage.getCarImageList().size()).isEqualTo(1);
+        assertThat(carWithoutImage).isNotNull();
+        assertThat(carWithoutImage.getCarImageList().size()).isEqualTo(0);
+    }
+
+    @Test
+    void givenCarWithManyImages_whenAddingCar_thenAddAllImages() {
+        final List<Pair<ContentDisposition, byte[]>> parts = new ArrayList<>(List.of(carMultipart));
+        final List<String> parameterNames = new ArrayList<>(List.of("car"));
+        IntStream.range(0, 10).forEach(i -> {
+            parts.add(Pair.of(ContentDisposition.builder("form-data").name("file").filename("TestTitle%d.png"
+                    .formatted(i)).build(), new byte[]{(byte) i}));
+            parameterNames.add("file");
+        });
+
+        ResponseEntity<Car> carResponseEntity = template.postForEntity("http://localhost:9090/cars/add",
+                getMultiPartHttpEntity(parts, parameterNames), Car.class);
+
+        assertThat(carResponseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        Car car = carResponseEntity.getBody();
+
+        assertThat(car).isNotNull();
+        assertThat(car.getCarImageList().size()).isEqualTo(10);
+
+        Car fetchedCar = template.getForObject("http://localhost:9090/cars/" + car.getId(), Car.class);
+
+        assertThat(fetchedCar).isNotNull();
+
+        List<CarImage> carImageList = fetchedCar.getCarImageList();
+
+        assertThat(carImageList.size()).isEqualTo(10);
+
+        IntStream.range(0, 10).forEach(i -> assertThat(template.getForObject("http://localhost:9090/images/" +
+                car.getCarImageList().get(i).getImageObjectName(), byte[].class)).isEqualTo(new byte[]{(byte) i}));
+    }
+
     @Test
     void givenCar_whenFetchingCarById_thenReturnCarWithMatchingCarImageList() {
         ResponseEntity<Car> carResponseEntity = template.postForEntity("http://localhost:9090/cars/add",
@@ -155,6 +256,101 @@ class SpringIntroductionApplicationTest {
         assertThat(entity1.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    void givenImage_whenRequestingWithMatchingETag_thenReturnNotModified() {
+        final String imageObjectName = addCarAndGetFirstImageObjectName(multiPartHttpEntity);
+
+        ResponseEntity<byte[]> imageResponseEntity =
+                template.getForEntity("http://localhost:9090/images/" + imageObjectName, byte[].class);
+
+        assertThat(imageResponseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        final String eTag = imageResponseEntity.getHeaders().getETag();
+
+        assertThat(eTag).isNotNull();
+        assertThat(imageResponseEntity.getHeaders().getCacheControl()).contains("immutable");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        ResponseEntity<byte[]> notModifiedResponseEntity = template.exchange("http://localhost:9090/images/" +
+                imageObjectName, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        assertThat(notModifiedResponseEntity.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModifiedResponseEntity.getBody()).isNull();
+    }
+
+    @Test
+    void givenImage_whenRequestingByteRange_thenReturnPartialContent() {
+        final byte[] imageBytes = new byte[100];
+        IntStream.range(0, imageBytes.length).forEach(i -> imageBytes[i] = (byte) i);
+
+        final Pair<ContentDisposition, byte[]> largerFileMultipart = Pair.of(ContentDisposition
+                .builder("form-data")
+                .name("file")
+                .filename("TestTitle.png")
+                .build(), imageBytes);
+        final String imageObjectName = addCarAndGetFirstImageObjectName(
+                getMultiPartHttpEntity(List.of(carMultipart, largerFileMultipart), List.of("car", "file")));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setRange(List.of(HttpRange.createByteRange(10, 19)));
+
+        ResponseEntity<byte[]> partialResponseEntity = template.exchange("http://localhost:9090/images/" +
+                imageObjectName, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        assertThat(partialResponseEntity.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(partialResponseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-19/100");
+        assertThat(partialResponseEntity.getBody()).isEqualTo(Arrays.copyOfRange(imageBytes, 10, 20));
+    }
+
+    @Test
+    void givenLargeImage_whenRequestingRendition_thenReturnDownscaledImageWithOwnETag() throws Exception {
+        final BufferedImage image = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        final ByteArrayOutputStream imageBytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", imageBytes);
+
+        final Pair<ContentDisposition, byte[]> imageMultipart = Pair.of(ContentDisposition
+                .builder("form-data")
+                .name("file")
+                .filename("TestTitle.png")
+                .build(), imageBytes.toByteArray());
+        final String imageObjectName = addCarAndGetFirstImageObjectName(
+                getMultiPartHttpEntity(List.of(carMultipart, imageMultipart), List.of("car", "file")));
+
+        ResponseEntity<byte[]> thumbnailResponseEntity = template.getForEntity("http://localhost:9090/images/" +
+                imageObjectName + "?size=thumbnail", byte[].class);
+
+        assertThat(thumbnailResponseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(thumbnailResponseEntity.getHeaders().getContentType()).isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(thumbnailResponseEntity.getHeaders().getETag()).isNotEqualTo("\"" + imageObjectName + "\"");
+        assertThat(ImageIO.read(new ByteArrayInputStream(thumbnailResponseEntity.getBody())).getWidth())
+                .isEqualTo(160);
+
+        HttpClientErrorException invalidSize = assertThrows(HttpClientErrorException.class, () ->
+                template.getForEntity("http://localhost:9090/images/" + imageObjectName + "?size=huge",
+                        byte[].class));
+
+        assertThat(invalidSize.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private String addCarAndGetFirstImageObjectName(HttpEntity<MultiValueMap<String, Object>> entity) {
+        ResponseEntity<Car> carResponseEntity = template.postForEntity("http://localhost:9090/cars/add", entity,
+                Car.class);
+
+        assertThat(carResponseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        Car car = carResponseEntity.getBody();
+
+        assertThat(car).isNotNull();
+
+        Car fetchedCar = template.getForObject("http://localhost:9090/cars/" + car.getId(), Car.class);
+
+        assertThat(fetchedCar).isNotNull();
+
+        return fetchedCar.getCarImageList().get(0).getImageObjectName();
+    }
+
     @Test
     void givenCar_whenReplacingCar_thenPerformSuccessfulReplacement() {
         ResponseEntity<Car> oldCarResponseEntity =
@@ -0,0 +1,96 @@
+package de.doubleslash.spring.introduction;
+
+import org.apache.catalina.connector.Connector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Requests only pass the barrier once all of them are handled at the same time, which is impossible with two
+ * platform threads per connector.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=true",
+        "server.tomcat.threads.max=2",
+        "server.http.port=0",
+        "spring.datasource.url=jdbc:h2:mem:virtualthreads;DB_CLOSE_DELAY=-1"})
+@Import(VirtualThreadIntegrationTest.BlockingControllerConfiguration.class)
+class VirtualThreadIntegrationTest {
+    private static final int CONCURRENT_REQUESTS = 20;
+    private static CyclicBarrier barrier;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @TestConfiguration
+    static class BlockingControllerConfiguration {
+        @RestController
+        static class BlockingController {
+            @GetMapping("/test/blocking")
+            String blocking() throws Exception {
+                barrier.await(10, TimeUnit.SECONDS);
+                return String.valueOf(Thread.currentThread().isVirtual());
+            }
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        barrier = new CyclicBarrier(CONCURRENT_REQUESTS);
+    }
+
+    private List<Integer> connectorPorts() {
+        Connector[] connectors = ((TomcatWebServer) context.getWebServer()).getTomcat().getService()
+                .findConnectors();
+
+        return Arrays.stream(connectors).map(Connector::getLocalPort).toList();
+    }
+
+    private void assertRequestsAreHandledConcurrentlyOnVirtualThreads(int port) {
+        List<CompletableFuture<HttpResponse<String>>> responses = IntStream.range(0, CONCURRENT_REQUESTS)
+                .mapToObj(i -> client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:%d/test/blocking"
+                        .formatted(port))).build(), HttpResponse.BodyHandlers.ofString()))
+                .toList();
+
+        assertThat(responses).allSatisfy(response -> {
+            assertThat(response.join().statusCode()).isEqualTo(200);
+            assertThat(response.join().body()).isEqualTo("true");
+        });
+    }
+
+    @Test
+    void givenVirtualThreads_whenSendingMoreRequestsThanMaxThreadsToMainConnector_thenHandleAllConcurrently() {
+        assertRequestsAreHandledConcurrentlyOnVirtualThreads(connectorPorts().get(0));
+    }
+
+    @Test
+    void givenVirtualThreads_whenSendingMoreRequestsThanMaxThreadsToHttpConnector_thenHandleAllConcurrently() {
+        assertThat(connectorPorts()).hasSize(2);
+
+        assertRequestsAreHandledConcurrentlyOnVirtualThreads(connectorPorts().get(1));
+    }
+}
@@ -1,8 +1,9 @@
 package de.doubleslash.spring.introduction.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
 import de.doubleslash.spring.introduction.model.Car;
 import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.CarSummary;
 import de.doubleslash.spring.introduction.model.JsonStringToInstanceConverter;
 import de.doubleslash.spring.introduction.model.MinioFileHandler;
 import de.doubleslash.spring.introduction.repository.CarImageRepository;
@@ -12,15 +13,32 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,14 +52,27 @@ class CarDealershipControllerTest {
     private JsonStringToInstanceConverter converter;
     @Mock
     private MinioFileHandler minioFileHandler;
+    @Mock
+    private CarCatalogueExporter carCatalogueExporter;
+    @Mock
+    private CarBulkIngestionService carBulkIngestionService;
+    @Mock
+    private PresignedImageService presignedImageService;
     private CarDealershipService carDealershipService;
+    private MultipartProperties multipartProperties;
 
     private CarDealershipController controller;
 
     @BeforeEach
     void setUp() {
-        carDealershipService = new CarDealershipService(carRepository, carImageRepository, minioFileHandler, converter);
-        controller = new CarDealershipController(carDealershipService);
+        ImageUploadPipeline imageUploadPipeline = new ImageUploadPipeline(minioFileHandler,
+                new FileHandlerConfiguration(), false);
+        carDealershipService = new CarDealershipService(carRepository, carImageRepository, minioFileHandler, converter,
+                imageUploadPipeline, new ImageRenditionService(minioFileHandler, new FileHandlerConfiguration()));
+        multipartProperties = new MultipartProperties();
+        controller = new CarDealershipController(carDealershipService, carCatalogueExporter,
+                carBulkIngestionService, new StreamingCarUploadService(carDealershipService, imageUploadPipeline,
+                multipartProperties), presignedImageService);
     }
 
     @Test
@@ -49,9 +80,10 @@ class CarDealershipControllerTest {
         final Car car = Car.builder().id(1L).model("TestModel").brand("TestBrand").build();
         List<Car> carList = List.of(car);
 
-        when(carDealershipService.getAllCars()).thenReturn(carList);
+        when(carRepository.findIdsByIdGreaterThan(0L, PageRequest.of(0, 10))).thenReturn(List.of(1L));
+        when(carRepository.findWithImagesByIdInOrderByIdAsc(List.of(1L))).thenReturn(carList);
 
-        assertThat(controller.allCars().getBody()).isEqualTo(carList);
+        assertThat(controller.allCars(0L, 10).getBody()).isEqualTo(carList);
     }
 
     @Test
@@ -66,38 +98,37 @@ class CarDealershipControllerTest {
     }
 
     @Test
-    void givenRequestToAddCarAndImage_whenProcessingRequest_thenReturnSuccessMessage()
-            throws CarModelAndOrBrandStringInvalidException, InvalidFileRequestException, JsonProcessingException {
+    void givenRequestToAddCarAndImage_whenProcessingRequest_thenReturnSuccessMessage() throws Exception {
 
         final String newCarJson = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"}";
         final Car car = Car.builder().id(1L).brand("TestBrand").model("TestModel").build();
         final MockMultipartFile file = new MockMultipartFile("TestTitle.png", "TestTitle.png",
                 MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]);
 
-        final String expected = car.toString();
-
         when(converter.convert(newCarJson, Car.class)).thenReturn(car);
+        when(minioFileHandler.uploadFile(any(), isNull(), eq("png"), eq(CarDealershipService.CARS_BUCKET)))
+                .thenReturn("Test.png");
         when(carRepository.save(car)).thenReturn(car);
 
-        final ResponseEntity<String> result = controller.addCarAndImage(newCarJson, file);
+        final ResponseEntity<String> result = controller.addCarAndImage(multipartRequest(newCarJson, file));
 
-        assertThat(result.getBody()).isEqualTo(expected);
+        assertThat(result.getBody()).isEqualTo(car.toString());
+        assertThat(result.getBody()).contains("\"carImageList\":[{\"imageObjectName\":\"Test.png\"}]");
     }
 
     @Test
-    void givenInvalidRequestToAddCar_whenValidatingCarBrand_thenReturnErrorMessageString()
-            throws JsonProcessingException {
+    void givenInvalidRequestToAddCar_whenValidatingCarBrand_thenReturnErrorMessageString() throws IOException {
         final String newCarJson = "{\"brand\":\"" + "TestBrand".repeat(500) + "\",\"model\":\"TestModel\"}";
         final Car car = Car.builder().brand("TestBrand".repeat(500)).model("TestModel").build();
         final MockMultipartFile file = new MockMultipartFile("file", "TestTitle.png",
                 MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]);
 
         when(converter.convert(newCarJson, Car.class)).thenReturn(car);
-        assertThrows(CarModelAndOrBrandStringInvalidException.class, () -> controller.addCarAndImage(newCarJson, file));
+        assertThrows(CarModelAndOrBrandStringInvalidException.class, () -> controller.addCarAndImage(multipartRequest(newCarJson, file)));
     }
 
     @Test
-    void givenInvalidRequestToAddCar_whenValidatingMultipartFile_thenReturnErrorMessageString() throws JsonProcessingException {
+    void givenInvalidRequestToAddCar_whenValidatingMultipartFile_thenReturnErrorMessageString() throws IOException {
         // file name >= 255 characters
         final MockMultipartFile firstFile =
                 new MockMultipartFile("file", "TestTitle".repeat(500).concat(".png"),
@@ -115,19 +146,129 @@ class CarDealershipControllerTest {
 
         when(converter.convert(carString, Car.class)).thenReturn(car);
 
-        assertThrows(InvalidFileRequestException.class, () -> controller.addCarAndImage(carString, firstFile), expected);
-        assertThrows(InvalidFileRequestException.class, () -> controller.addCarAndImage(carString, secondFile), expected);
+        assertThrows(InvalidFileRequestException.class, () -> controller.addCarAndImage(multipartRequest(carString, firstFile)), expected);
+        assertThrows(InvalidFileRequestException.class, () -> controller.addCarAndImage(multipartRequest(carString, secondFile)), expected);
+    }
+
+    @Test
+    void givenImageSentBeforeInvalidCar_whenAddingCar_thenDeleteUploadedImage() throws Exception {
+        final String newCarJson = "{\"brand\":\"\",\"model\":\"TestModel\"}";
+        final Car car = Car.builder().brand("").model("TestModel").build();
+        final MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("file", new byte[1]).filename("TestTitle.png");
+        body.part("car", newCarJson);
+
+        when(converter.convert(newCarJson, Car.class)).thenReturn(car);
+        when(minioFileHandler.uploadFile(any(), isNull(), eq("png"), eq(CarDealershipService.CARS_BUCKET)))
+                .thenReturn("Test.png");
+        when(minioFileHandler.deleteMultiple(List.of("Test.png"), CarDealershipService.CARS_BUCKET))
+                .thenReturn(List.of());
+
+        assertThrows(CarModelAndOrBrandStringInvalidException.class,
+                () -> controller.addCarAndImage(multipartRequest(body)));
+        verify(minioFileHandler).deleteMultiple(List.of("Test.png"), CarDealershipService.CARS_BUCKET);
+        verify(carRepository, never()).save(any());
+    }
+
+    @Test
+    void givenImageLargerThanMaxFileSize_whenAddingCar_thenRejectRequest() throws Exception {
+        final String newCarJson = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"}";
+        final Car car = Car.builder().brand("TestBrand").model("TestModel").build();
+        final MockMultipartFile file = new MockMultipartFile("file", "TestTitle.png",
+                MediaType.MULTIPART_FORM_DATA_VALUE, new byte[2048]);
+        multipartProperties.setMaxFileSize(DataSize.ofKilobytes(1));
+
+        when(converter.convert(newCarJson, Car.class)).thenReturn(car);
+
+        // the part announces its size, so it is rejected before any of its bytes are uploaded
+        assertThrows(MaxUploadSizeExceededException.class,
+                () -> controller.addCarAndImage(multipartRequest(newCarJson, file)));
+        verify(minioFileHandler, never()).uploadFile(any(), any(), any(), any());
+        verify(carRepository, never()).save(any());
+    }
+
+    private static MockHttpServletRequest multipartRequest(String carJson, MockMultipartFile... images)
+            throws IOException {
+        final MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("car", carJson);
+        for (MockMultipartFile image : images) {
+            body.part("file", image.getBytes()).filename(image.getOriginalFilename());
+        }
+
+        return multipartRequest(body);
+    }
+
+    private static MockHttpServletRequest multipartRequest(MultipartBodyBuilder body) throws IOException {
+        final MockHttpOutputMessage message = new MockHttpOutputMessage();
+        new FormHttpMessageConverter().write(body.build(), MediaType.MULTIPART_FORM_DATA, message);
+
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/cars/add");
+        request.setContentType(String.valueOf(message.getHeaders().getContentType()));
+        request.setContent(message.getBodyAsBytes());
+
+        return request;
     }
 
     @Test
     void givenRequestToFetchAllCars_whenFetchingAllCars_thenReturnCarList() {
         final List<Car> expected = List.of(Car.builder().model("TestModel").brand("TestBrand").build());
-        when(carRepository.findAll()).thenReturn(expected);
+        when(carRepository.findIdsByIdGreaterThan(0L, PageRequest.of(0, CarDealershipService.DEFAULT_PAGE_SIZE)))
+                .thenReturn(List.of(1L));
+        when(carRepository.findWithImagesByIdInOrderByIdAsc(List.of(1L))).thenReturn(expected);
 
-        final ResponseEntity<List<Car>> result = controller.allCars();
+        final ResponseEntity<List<Car>> result = controller.allCars(0L, CarDealershipService.DEFAULT_PAGE_SIZE);
 
         assertThat(result.hasBody()).isTrue();
         assertThat(result.getBody()).isEqualTo(expected);
+        assertThat(result.getHeaders().containsKey(CarDealershipService.NEXT_CURSOR_HEADER)).isFalse();
+    }
+
+    @Test
+    void givenRequestToStreamCatalogue_whenProcessingRequest_thenExportWithOwnTimeout() throws Exception {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        final WebAsyncTask<Void> task = controller.streamAllCars(response);
+        task.getCallable().call();
+
+        assertThat(task.getTimeout()).isEqualTo(CarCatalogueExporter.EXPORT_TIMEOUT.toMillis());
+        assertThat(response.getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON_VALUE);
+        verify(carCatalogueExporter).exportAllCars(response.getOutputStream());
+    }
+
+    @Test
+    void givenFullPageOfCars_whenFetchingCarPage_thenReturnCursorOfNextPage() {
+        final List<Car> expected = List.of(Car.builder().id(3L).build(), Car.builder().id(7L).build());
+        when(carRepository.findIdsByIdGreaterThan(2L, PageRequest.of(0, 2))).thenReturn(List.of(3L, 7L));
+        when(carRepository.findWithImagesByIdInOrderByIdAsc(List.of(3L, 7L))).thenReturn(expected);
+
+        final ResponseEntity<List<Car>> result = controller.allCars(2L, 2);
+
+        assertThat(result.getBody()).isEqualTo(expected);
+        assertThat(result.getHeaders().getFirst(CarDealershipService.NEXT_CURSOR_HEADER)).isEqualTo("7");
+    }
+
+    @Test
+    void givenCarsWithImages_whenFetchingCarSummaryPage_thenReturnSummariesWithImageNames() {
+        final Instant date = Instant.now();
+        final CarImageRepository.ImageObjectNameView imageName = new CarImageRepository.ImageObjectNameView() {
+            public Long getCarId() {
+                return 1L;
+            }
+
+            public String getImageObjectName() {
+                return "TestTitle.png";
+            }
+        };
+
+        when(carRepository.findSummariesByIdGreaterThan(0L, PageRequest.of(0, 10))).thenReturn(List.of(
+                new CarSummary(1L, "TestBrand", "TestModel", date), new CarSummary(2L, "TestBrand", "TestModel", date)));
+        when(carImageRepository.findImageObjectNamesByCarIds(List.of(1L, 2L))).thenReturn(List.of(imageName));
+
+        final ResponseEntity<List<CarSummary>> result = controller.allCarSummaries(0L, 10);
+
+        assertThat(result.getBody()).containsExactly(
+                new CarSummary(1L, "TestBrand", "TestModel", date, List.of("TestTitle.png")),
+                new CarSummary(2L, "TestBrand", "TestModel", date, List.of()));
     }
 
     @Test
@@ -160,6 +301,8 @@ class CarDealershipControllerTest {
 
         when(carRepository.findById(firstCarId)).thenReturn(Optional.of(car));
         when(converter.convert(secondCarString, Car.class)).thenReturn(car);
+        when(minioFileHandler.uploadFile(any(), eq(1L), eq("png"), eq(CarDealershipService.CARS_BUCKET)))
+                .thenReturn("Test.png");
         when(carRepository.save(car)).thenReturn(car);
 
         final ResponseEntity<String> result = controller.replaceCar(1L, secondCarString, file);
@@ -1,6 +1,7 @@
 package de.doubleslash.spring.introduction.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import de.doubleslash.spring.introduction.model.BlobStoreObject;
 import de.doubleslash.spring.introduction.model.Car;
 import de.doubleslash.spring.introduction.model.CarImage;
 import de.doubleslash.spring.introduction.model.JsonStringToInstanceConverter;
@@ -15,13 +16,18 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.util.Pair;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,17 +41,14 @@ public class CarDealershipServiceTest {
     private MinioFileHandler minioFileHandler;
     @Mock
     private JsonStringToInstanceConverter converter;
+    @Mock
+    private ImageUploadPipeline imageUploadPipeline;
+    @Mock
+    private ImageRenditionService imageRenditionService;
 
     @InjectMocks
     private CarDealershipService service;
 
-    @Test
-    void givenImageFilename_whenChoosingMediaType_thenReturnCorrectType() {
-        assertThat(CarDealershipService.getMediaType("png")).isEqualTo(MediaType.IMAGE_PNG);
-        assertThat(CarDealershipService.getMediaType("jpg")).isEqualTo(MediaType.IMAGE_JPEG);
-        assertThat(CarDealershipService.getMediaType("webp")).isEqualTo(MediaType.valueOf("image/webp"));
-    }
-
     @Test
     void givenValidCar_whenCheckingCarExistence_thenReturnTrue() {
         final Car car = Car.builder().id(1L).build();
@@ -75,13 +78,13 @@ public class CarDealershipServiceTest {
 
     @Test
     void givenValidImage_whenFetchingImage_thenReturnImageData() throws Exception {
-        String imageObjectName = "TestTitle.png";
-        byte[] bytes = new byte[1];
+        String imageObjectName = "a".repeat(ImageFilenameValidator.OBJECT_NAME_HASH_LENGTH) + ".png";
+        BlobStoreObject image = new BlobStoreObject(new ByteArrayInputStream(new byte[1]), 1);
 
-        when(minioFileHandler.downloadFile(imageObjectName, CarDealershipService.CARS_BUCKET))
-                .thenReturn(bytes);
+        when(minioFileHandler.downloadFileStream(imageObjectName, CarDealershipService.CARS_BUCKET))
+                .thenReturn(image);
 
-        assertThat(service.getImageIfValid(imageObjectName)).isEqualTo(Pair.of(bytes, MediaType.IMAGE_PNG));
+        assertThat(service.getImageIfValid(imageObjectName)).isEqualTo(Pair.of(image, MediaType.IMAGE_PNG));
     }
 
     @Test
@@ -92,43 +95,68 @@ public class CarDealershipServiceTest {
     }
 
     @Test
-    void givenValidImageFilename_whenValidatingImageFilename_thenReturnTrueAndExtension() {
-        String filename = "TestTitle.png";
-        assertThat(service.validateImageFilenameAndReturnExtension(filename)).isEqualTo(Pair.of(true, "png"));
-    }
+    void givenValidRequestToAddCarAndImage_whenAddingCarAndImage_thenReturnTrue()
+            throws InvalidFileRequestException, CarModelAndOrBrandStringInvalidException, JsonProcessingException {
+        final String newCarJson = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"}";
+        final Car car = Car.builder().brand("TestBrand").model("TestModel").build();
+        final MockMultipartFile file = new MockMultipartFile("TestTitle.png", "TestTitle.png",
+                MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]);
 
-    @Test
-    void givenInvalidImageFilename_whenValidatingImageFilename_thenReturnFalseAndEmptyString() {
-        String filename = "TestTitle.exe.png";
-        assertThat(service.validateImageFilenameAndReturnExtension(filename)).isEqualTo(Pair.of(false, ""));
+        when(converter.convert(newCarJson, Car.class)).thenReturn(car);
+        when(carRepository.save(car)).thenReturn(car);
+
+        assertThat(service.addCarAndImageIfValid(newCarJson, file)).isEqualTo(Pair.of(true, car));
     }
 
     @Test
-    void givenValidImageFileExtension_whenValidatingExtension_thenReturnTrue() {
-        String extension = "png";
+    void givenValidRequestToAddCarAndImages_whenAddingCar_thenSaveCarWithAllImages() throws Exception {
+        final String newCarJson = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"}";
+        final Car car = Car.builder().brand("TestBrand").model("TestModel").build();
+        final List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "TestTitle1.png", MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]),
+                new MockMultipartFile("file", "TestTitle2.jpg", MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]));
+
+        when(converter.convert(newCarJson, Car.class)).thenReturn(car);
+        when(imageUploadPipeline.uploadAll(any(), eq(CarDealershipService.CARS_BUCKET)))
+                .thenReturn(List.of("Test1.png", "Test2.jpg"));
+        when(carRepository.save(car)).thenReturn(car);
 
-        assertThat(service.isValidExtension(extension)).isTrue();
+        assertThat(service.addCarAndImagesIfValid(newCarJson, files)).isEqualTo(Pair.of(true, car));
+        assertThat(car.getCarImageList()).extracting(CarImage::getImageObjectName)
+                .containsExactly("Test1.png", "Test2.jpg");
+        assertThat(car.getCarImageList()).allMatch(carImage -> carImage.getAssociatedCar() == car);
     }
 
     @Test
-    void givenInvalidImageFileExtension_whenValidatingExtension_thenReturnFalse() {
-        String extension = "exe";
+    void givenFailingSave_whenAddingCarAndImages_thenDeleteUploadedImages() throws Exception {
+        final String newCarJson = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"}";
+        final Car car = Car.builder().brand("TestBrand").model("TestModel").build();
+        final List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "TestTitle1.png", MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]),
+                new MockMultipartFile("file", "TestTitle2.png", MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]));
+
+        when(converter.convert(newCarJson, Car.class)).thenReturn(car);
+        when(imageUploadPipeline.uploadAll(any(), eq(CarDealershipService.CARS_BUCKET)))
+                .thenReturn(List.of("Test1.png", "Test2.png"));
+        when(carRepository.save(car)).thenThrow(new RuntimeException("TestException"));
+        when(minioFileHandler.deleteMultiple(List.of("Test1.png", "Test2.png"), CarDealershipService.CARS_BUCKET))
+                .thenReturn(List.of());
 
-        assertThat(service.isValidExtension(extension)).isFalse();
+        assertThat(service.addCarAndImagesIfValid(newCarJson, files).getFirst()).isFalse();
+        verify(minioFileHandler).deleteMultiple(List.of("Test1.png", "Test2.png"), CarDealershipService.CARS_BUCKET);
     }
 
     @Test
-    void givenValidRequestToAddCarAndImage_whenAddingCarAndImage_thenReturnTrue()
-            throws InvalidFileRequestException, CarModelAndOrBrandStringInvalidException, JsonProcessingException {
+    void givenTooManyImages_whenAddingCarAndImages_thenThrowInvalidFileRequestException() throws Exception {
         final String newCarJson = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"}";
         final Car car = Car.builder().brand("TestBrand").model("TestModel").build();
-        final MockMultipartFile file = new MockMultipartFile("TestTitle.png", "TestTitle.png",
-                MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]);
+        final List<MultipartFile> files = new ArrayList<>();
+        IntStream.rangeClosed(0, CarDealershipService.MAX_IMAGES_PER_CAR).forEach(i -> files.add(
+                new MockMultipartFile("file", "TestTitle.png", MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1])));
 
         when(converter.convert(newCarJson, Car.class)).thenReturn(car);
-        when(carRepository.save(car)).thenReturn(car);
 
-        assertThat(service.addCarAndImageIfValid(newCarJson, file)).isEqualTo(Pair.of(true, car));
+        assertThrows(InvalidFileRequestException.class, () -> service.addCarAndImagesIfValid(newCarJson, files));
     }
 
     @Test
@@ -190,6 +218,9 @@ public class CarDealershipServiceTest {
         when(carRepository.deleteCarByBrand("TestBrand")).thenReturn(carList);
         assertThat(service.deleteCarByBrand("TestBrand"))
                 .isEqualTo(CarDealershipService.DELETE_CAR_BY_BRAND_SUCCESS_STRING.formatted(5, "TestBrand"));
+
+        // images of all cars are removed in a single batch
+        verify(minioFileHandler).deleteMultiple(imageObjectNames, CarDealershipService.CARS_BUCKET);
     }
 
     @Test
@@ -0,0 +1,54 @@
+package de.doubleslash.spring.introduction.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageFilenameValidatorTest {
+    private static final String HASH = "3f79bb7b435b05321651daefd374cdc681dc06faa65e374e38337b88ca046dea";
+
+    @Test
+    void givenValidImageFilename_whenValidatingUploadFilename_thenReturnExtension() {
+        assertThat(ImageFilenameValidator.validateUploadFilename("TestTitle.png")).isEqualTo(AllowedExtension.png);
+        assertThat(ImageFilenameValidator.validateUploadFilename("TestTitle.jpeg")).isEqualTo(AllowedExtension.jpeg);
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"TestTitle.exe.png", "TestTitle.php.jpg", "TestTitle.exe", "TestTitle", "TestTitle.",
+            ".png", "TestTitle.PNG"})
+    void givenInvalidImageFilename_whenValidatingUploadFilename_thenReturnNull(String filename) {
+        assertThat(ImageFilenameValidator.validateUploadFilename(filename)).isNull();
+    }
+
+    @Test
+    void givenTooLongImageFilename_whenValidatingUploadFilename_thenReturnNull() {
+        String filename = "a".repeat(ImageFilenameValidator.MAX_FILENAME_LENGTH - ".png".length()) + ".png";
+
+        assertThat(ImageFilenameValidator.validateUploadFilename(filename)).isEqualTo(AllowedExtension.png);
+        assertThat(ImageFilenameValidator.validateUploadFilename("a" + filename)).isNull();
+    }
+
+    @Test
+    void givenGeneratedObjectName_whenValidatingObjectName_thenReturnExtensionWithMediaType() {
+        assertThat(ImageFilenameValidator.validateObjectName(HASH + ".png").getMediaType())
+                .isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(ImageFilenameValidator.validateObjectName(HASH + ".jpg").getMediaType())
+                .isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(ImageFilenameValidator.validateObjectName(HASH + ".webp").getMediaType())
+                .isEqualTo(MediaType.valueOf("image/webp"));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"TestTitle.png", HASH, HASH + ".", HASH + ".exe", HASH + "0.png",
+            "3F79BB7B435B05321651DAEFD374CDC681DC06FAA65E374E38337B88CA046DEA.png",
+            "3f79bb7b435b05321651daefd374cdc681dc06faa65e374e38337b88ca046deg.png"})
+    void givenInvalidObjectName_whenValidatingObjectName_thenReturnNull(String objectName) {
+        assertThat(ImageFilenameValidator.validateObjectName(objectName)).isNull();
+    }
+}
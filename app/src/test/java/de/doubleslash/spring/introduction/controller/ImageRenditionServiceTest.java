@@ -0,0 +1,117 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import io.minio.errors.MinioException;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.CARS_BUCKET;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageRenditionServiceTest {
+    private final InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    private final ImageRenditionService imageRenditionService = new ImageRenditionService(fileHandler,
+            new FileHandlerConfiguration());
+
+    static byte[] encodedImage(int width, int height, String format) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, format, output);
+
+        return output.toByteArray();
+    }
+
+    private String upload(byte[] image, String extension) throws Exception {
+        return fileHandler.uploadFile(new ByteArrayInputStream(image), (long) image.length, extension, CARS_BUCKET);
+    }
+
+    private BufferedImage read(String imageObjectName, AllowedExtension extension, ImageRendition rendition)
+            throws Exception {
+        byte[] image = imageRenditionService.callWithImageOrRendition(imageObjectName, extension, rendition,
+                (bucketName, objectName) -> fileHandler.downloadFileStream(objectName, bucketName).stream().readAllBytes());
+
+        return ImageIO.read(new ByteArrayInputStream(image));
+    }
+
+    @Test
+    void givenLargeImage_whenRequestingRenditions_thenGenerateDownscaledImagesInOriginalFormat() throws Exception {
+        String imageObjectName = upload(encodedImage(1000, 500, "jpg"), "jpg");
+
+        BufferedImage thumbnail = read(imageObjectName, AllowedExtension.jpg, ImageRendition.thumbnail);
+        BufferedImage medium = read(imageObjectName, AllowedExtension.jpg, ImageRendition.medium);
+
+        assertThat(thumbnail.getWidth()).isEqualTo(160);
+        assertThat(thumbnail.getHeight()).isEqualTo(80);
+        assertThat(medium.getWidth()).isEqualTo(640);
+        assertThat(medium.getHeight()).isEqualTo(320);
+        assertThat(fileHandler.getFileSize(ImageRendition.thumbnail.objectName(imageObjectName),
+                ImageRendition.BUCKET)).isLessThan(fileHandler.getFileSize(imageObjectName, CARS_BUCKET));
+    }
+
+    @Test
+    void givenSmallImage_whenRequestingRendition_thenStoreOriginalAsRendition() throws Exception {
+        byte[] image = encodedImage(100, 50, "png");
+        String imageObjectName = upload(image, "png");
+
+        assertThat(read(imageObjectName, AllowedExtension.png, ImageRendition.thumbnail).getWidth()).isEqualTo(100);
+        assertThat(fileHandler.downloadFile(ImageRendition.thumbnail.objectName(imageObjectName),
+                ImageRendition.BUCKET)).isEqualTo(image);
+    }
+
+    @Test
+    void givenUploadedImages_whenGeneratingRenditionsInBackground_thenStoreAllRenditions() throws Exception {
+        String imageObjectName = upload(encodedImage(800, 800, "png"), "png");
+
+        imageRenditionService.generateRenditionsAsync(List.of(imageObjectName));
+        for (ImageRendition rendition : ImageRendition.values()) {
+            // joins the running generation, or finds the stored rendition
+            assertThat(imageRenditionService.generate(imageObjectName, AllowedExtension.png, rendition, true).get())
+                    .isTrue();
+        }
+
+        assertThat(fileHandler.getFileSize(ImageRendition.thumbnail.objectName(imageObjectName),
+                ImageRendition.BUCKET)).isPositive();
+        assertThat(fileHandler.getFileSize(ImageRendition.medium.objectName(imageObjectName),
+                ImageRendition.BUCKET)).isPositive();
+    }
+
+    @Test
+    void givenUndecodableOrWebpImage_whenRequestingRendition_thenServeOriginal() throws Exception {
+        byte[] notAnImage = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        String pngObjectName = upload(notAnImage, "png");
+        String webpObjectName = upload(new byte[]{9, 8, 7}, "webp");
+
+        ImageRenditionService.BlobStoreCall<String> servedObjectName = (bucketName, objectName) -> {
+            fileHandler.getFileSize(objectName, bucketName);
+            return objectName;
+        };
+
+        assertThat(imageRenditionService.callWithImageOrRendition(pngObjectName, AllowedExtension.png,
+                ImageRendition.thumbnail, servedObjectName)).isEqualTo(pngObjectName);
+        assertThat(imageRenditionService.canRender(pngObjectName, AllowedExtension.png, ImageRendition.thumbnail))
+                .isFalse();
+        assertThat(imageRenditionService.callWithImageOrRendition(webpObjectName, AllowedExtension.webp,
+                ImageRendition.medium, servedObjectName)).isEqualTo(webpObjectName);
+    }
+
+    @Test
+    void givenBlobStoreError_whenRequestingRendition_thenPropagateErrorWithoutGenerating() throws Exception {
+        String imageObjectName = upload(encodedImage(1000, 500, "jpg"), "jpg");
+
+        ImageRenditionService.BlobStoreCall<String> failingCall = (bucketName, objectName) -> {
+            throw new MinioException("Access denied.");
+        };
+
+        assertThatThrownBy(() -> imageRenditionService.callWithImageOrRendition(imageObjectName,
+                AllowedExtension.jpg, ImageRendition.thumbnail, failingCall)).isInstanceOf(MinioException.class);
+        assertThat(fileHandler.listFiles(ImageRendition.BUCKET, null, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,141 @@
+package de.doubleslash.spring.introduction.controller;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageUploadPipelineTest {
+    private static final String BUCKET = "test-bucket";
+
+    private final List<String> uploadedFilenames = new CopyOnWriteArrayList<>();
+    private final List<Thread> uploadingThreads = new CopyOnWriteArrayList<>();
+    // uploads are completed by the blob store once they have been read
+    private volatile CountDownLatch completion = new CountDownLatch(0);
+    private InMemoryFileHandler fileHandler;
+    private ImageUploadPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        fileHandler = new InMemoryFileHandler() {
+            @Override
+            public String uploadFile(InputStream fileStream, Long fileSize, String fileExtension, String bucketName)
+                    throws Exception {
+                String filename = super.uploadFile(fileStream, fileSize, fileExtension, bucketName);
+                uploadedFilenames.add(filename);
+                uploadingThreads.add(Thread.currentThread());
+                completion.await();
+                return filename;
+            }
+        };
+        pipeline = new ImageUploadPipeline(fileHandler, new FileHandlerConfiguration(), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    private static ImageUploadPipeline.ImageUpload imageUpload(byte content) {
+        return new ImageUploadPipeline.ImageUpload(new MockMultipartFile("file", "TestTitle.png",
+                MediaType.MULTIPART_FORM_DATA_VALUE, new byte[]{content}), "png");
+    }
+
+    @Test
+    void givenManyImages_whenUploadingAll_thenReturnObjectNamesInOrder() throws Exception {
+        final List<ImageUploadPipeline.ImageUpload> uploads = IntStream.range(0, 10)
+                .mapToObj(i -> imageUpload((byte) i))
+                .toList();
+
+        final List<String> filenames = pipeline.uploadAll(uploads, BUCKET);
+
+        assertThat(filenames).hasSize(uploads.size()).doesNotHaveDuplicates();
+        assertThat(uploadingThreads).noneMatch(thread -> thread == Thread.currentThread());
+        for (int i = 0; i < filenames.size(); i++) {
+            assertThat(fileHandler.downloadFile(filenames.get(i), BUCKET)).containsExactly((byte) i);
+        }
+    }
+
+    @Test
+    void givenFailingUpload_whenUploadingAll_thenDeleteOtherUploadsAndThrow() throws Exception {
+        final ImageUploadPipeline.ImageUpload failingUpload = new ImageUploadPipeline.ImageUpload(
+                new MockMultipartFile("file", "TestTitle.png", MediaType.MULTIPART_FORM_DATA_VALUE, new byte[1]) {
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        throw new IOException("TestException");
+                    }
+                }, "png");
+        final List<ImageUploadPipeline.ImageUpload> uploads = List.of(imageUpload((byte) 0), failingUpload,
+                imageUpload((byte) 2));
+
+        final IOException exception = assertThrows(IOException.class, () -> pipeline.uploadAll(uploads, BUCKET));
+
+        assertThat(exception).hasMessage("TestException");
+        assertThat(uploadedFilenames).hasSize(2);
+        assertThat(uploadedFilenames).allMatch(filename -> fileHandler.downloadFile(filename, BUCKET) == null);
+    }
+
+    @Test
+    void givenSingleImage_whenUploadingAll_thenUploadOnCallingThread() throws Exception {
+        final List<String> filenames = pipeline.uploadAll(List.of(imageUpload((byte) 1)), BUCKET);
+
+        assertThat(filenames).hasSize(1);
+        assertThat(fileHandler.downloadFile(filenames.get(0), BUCKET)).containsExactly((byte) 1);
+        assertThat(uploadingThreads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    void givenSlowlyCompletingUploads_whenUploadingWhileReceiving_thenReturnOnceContentIsReceived() throws Exception {
+        completion = new CountDownLatch(1);
+        final List<Future<String>> uploads = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            final InputStream content = new ByteArrayInputStream(new byte[]{(byte) i});
+            uploads.add(pipeline.uploadWhileReceiving(content, "png", BUCKET));
+
+            assertThat(content.read()).isEqualTo(-1);
+        }
+
+        assertThat(uploads).noneMatch(Future::isDone);
+
+        completion.countDown();
+        final List<String> filenames = pipeline.awaitAll(uploads, BUCKET);
+
+        assertThat(uploadingThreads).noneMatch(thread -> thread == Thread.currentThread());
+        for (int i = 0; i < filenames.size(); i++) {
+            assertThat(fileHandler.downloadFile(filenames.get(i), BUCKET)).containsExactly((byte) i);
+        }
+    }
+
+    @Test
+    void givenFailingContent_whenUploadingWhileReceiving_thenReturnFailedUploadAndDeleteOthers() throws Exception {
+        final Future<String> upload = pipeline.uploadWhileReceiving(new ByteArrayInputStream(new byte[1]), "png",
+                BUCKET);
+        final Future<String> failingUpload = pipeline.uploadWhileReceiving(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("TestException");
+            }
+        }, "png", BUCKET);
+
+        assertThat(failingUpload.state()).isEqualTo(Future.State.FAILED);
+        assertThrows(IOException.class, () -> pipeline.awaitAll(List.of(upload, failingUpload), BUCKET));
+        assertThat(fileHandler.downloadFile(upload.get(), BUCKET)).isNull();
+    }
+}
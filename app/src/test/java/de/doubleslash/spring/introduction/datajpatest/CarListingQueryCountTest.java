@@ -0,0 +1,86 @@
+package de.doubleslash.spring.introduction.datajpatest;
+
+import de.doubleslash.spring.introduction.controller.CarDealershipService;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.CarSummary;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.CarRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CarListingQueryCountTest {
+    private static final int CAR_COUNT = 150;
+    private static final int IMAGES_PER_CAR = 2;
+
+    @Autowired
+    private CarRepository carRepository;
+    @Autowired
+    private CarImageRepository carImageRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    private CarDealershipService service;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        carImageRepository.deleteAllInBatch();
+        carRepository.deleteAllInBatch();
+
+        IntStream.range(0, CAR_COUNT).forEach(i -> {
+            Car car = carRepository.save(Car.builder().brand("TestBrand").model("TestModel%d".formatted(i)).build());
+            IntStream.range(0, IMAGES_PER_CAR).forEach(j ->
+                    carImageRepository.save(new CarImage(car, "Test%d_%d.png".formatted(i, j))));
+        });
+
+        entityManager.flush();
+        entityManager.clear();
+
+        service = new CarDealershipService(carRepository, carImageRepository, null, null, null, null);
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void givenManyCarsWithImages_whenListingCarPage_thenUseTwoStatements() {
+        List<Car> page = service.getCarPage(0L, CarDealershipService.MAX_PAGE_SIZE);
+
+        // touch every image list the same way serialization does
+        int imageCount = page.stream().mapToInt(car -> car.getCarImageList().size()).sum();
+
+        assertThat(page).hasSize(CAR_COUNT);
+        assertThat(imageCount).isEqualTo(CAR_COUNT * IMAGES_PER_CAR);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void givenManyCarsWithImages_whenListingCarSummaryPage_thenUseTwoStatements() {
+        List<CarSummary> page = service.getCarSummaryPage(0L, CarDealershipService.MAX_PAGE_SIZE);
+
+        assertThat(page).hasSize(CAR_COUNT);
+        assertThat(page).allMatch(summary -> summary.imageObjectNames().size() == IMAGES_PER_CAR);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void givenManyCars_whenLoadingCarsWithoutEntityGraph_thenBatchFetchImages() {
+        List<Car> cars = carRepository.findAll();
+
+        cars.forEach(car -> car.getCarImageList().size());
+
+        // one query for the cars and one per 100 image lists
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(1 + (CAR_COUNT + 99) / 100);
+    }
+}
@@ -0,0 +1,155 @@
+package de.doubleslash.spring.introduction.datajpatest;
+
+import de.doubleslash.spring.introduction.CronTask;
+import de.doubleslash.spring.introduction.config.CronConfiguration;
+import de.doubleslash.spring.introduction.controller.CarDealershipService;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import de.doubleslash.spring.introduction.model.InMemoryLeaseLock;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.CarRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CronTaskTest {
+    private static final int CHUNK_SIZE = 4;
+    private static final int EXPIRED_CARS = 10;
+    private static final Instant EXPIRATION = Instant.now().minus(24, ChronoUnit.HOURS);
+
+    @Autowired
+    private CarRepository carRepository;
+    @Autowired
+    private CarImageRepository carImageRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    private final InMemoryLeaseLock leaseLock = new InMemoryLeaseLock();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> expiredImageObjectNames = new ArrayList<>();
+    private final List<String> currentImageObjectNames = new ArrayList<>();
+    private CronTask cronTask;
+    private Statistics statistics;
+
+    private void saveCar(Instant date, List<String> imageObjectNames) throws Exception {
+        Car car = carRepository.save(Car.builder().brand("TestBrand").model("TestModel").build());
+        // bypasses auditing, which sets the creation date on save if another test context has enabled it
+        entityManager.createQuery("update Car c set c.date = :date where c.id = :id")
+                .setParameter("date", date).setParameter("id", car.getId()).executeUpdate();
+        String imageObjectName = fileHandler.uploadFile(new ByteArrayInputStream(new byte[1]), 1L, "png",
+                CarDealershipService.CARS_BUCKET);
+        carImageRepository.save(new CarImage(car, imageObjectName));
+        imageObjectNames.add(imageObjectName);
+    }
+
+    private CronTask newCronTask(int partitions) {
+        CronConfiguration configuration = new CronConfiguration();
+        configuration.setChunkSize(CHUNK_SIZE);
+        configuration.setPartitions(partitions);
+
+        return new CronTask(carRepository, carImageRepository, fileHandler, leaseLock,
+                new TransactionTemplate(transactionManager), Runnable::run, configuration, meterRegistry);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        carImageRepository.deleteAllInBatch();
+        carRepository.deleteAllInBatch();
+
+        for (int i = 0; i < EXPIRED_CARS; i++) {
+            saveCar(EXPIRATION.minus(i + 1, ChronoUnit.MINUTES), expiredImageObjectNames);
+            saveCar(Instant.now(), currentImageObjectNames);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        cronTask = newCronTask(1);
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void givenExpiredAndCurrentCars_whenDeletingExpiredCars_thenDeleteOnlyExpiredCarsAndTheirImages() throws Exception {
+        int deletedCars = cronTask.deleteCarsCreatedBefore(EXPIRATION);
+
+        assertThat(deletedCars).isEqualTo(EXPIRED_CARS);
+        assertThat(carRepository.findAll()).hasSize(EXPIRED_CARS).allMatch(car -> car.getDate().isAfter(EXPIRATION));
+        assertThat(carImageRepository.findAll()).extracting(CarImage::getImageObjectName)
+                .containsExactlyInAnyOrderElementsOf(currentImageObjectNames);
+
+        for (String imageObjectName : expiredImageObjectNames) {
+            assertThat(fileHandler.downloadFile(imageObjectName, CarDealershipService.CARS_BUCKET)).isNull();
+        }
+        for (String imageObjectName : currentImageObjectNames) {
+            assertThat(fileHandler.downloadFile(imageObjectName, CarDealershipService.CARS_BUCKET)).isNotNull();
+        }
+        assertThat(meterRegistry.get("retention.cars.deleted").counter().count()).isEqualTo(EXPIRED_CARS);
+        assertThat(meterRegistry.get("retention.images.deleted").counter().count()).isEqualTo(EXPIRED_CARS);
+        assertThat(meterRegistry.get("retention.duration").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("retention.partition.duration").tag("partition", "0").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("retention.rate").gauge().value()).isPositive();
+    }
+
+    @Test
+    void givenExpiredCars_whenDeletingExpiredCars_thenUseBulkStatementsPerChunk() {
+        cronTask.deleteCarsCreatedBefore(EXPIRATION);
+
+        int chunks = (EXPIRED_CARS + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        // select ids, select image names and one bulk delete per chunk, no entities are loaded
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3L * chunks);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void givenJobJustRunByOtherReplica_whenDeletingExpiredCars_thenSkipDeletion() throws Exception {
+        cronTask.deleteCarsCreatedBefore(EXPIRATION);
+        saveCar(EXPIRATION.minus(1, ChronoUnit.MINUTES), expiredImageObjectNames);
+
+        int deletedCars = newCronTask(1).deleteCarsCreatedBefore(EXPIRATION);
+
+        assertThat(deletedCars).isZero();
+        assertThat(carRepository.findAll()).hasSize(EXPIRED_CARS + 1);
+    }
+
+    @Test
+    void givenPartitionLeasedByOtherReplica_whenDeletingExpiredCars_thenDeleteOtherPartitions() {
+        int partitions = 3;
+        leaseLock.tryAcquire("car-retention-1", "otherReplica", Duration.ofHours(1));
+
+        int deletedCars = newCronTask(partitions).deleteCarsCreatedBefore(EXPIRATION);
+
+        List<Car> expiredCars = carRepository.findAll().stream()
+                .filter(car -> car.getDate().isBefore(EXPIRATION)).toList();
+
+        assertThat(deletedCars).isEqualTo(EXPIRED_CARS - expiredCars.size());
+        assertThat(expiredCars).isNotEmpty().allMatch(car -> car.getId() % partitions == 1);
+        assertThat(meterRegistry.find("retention.partition.duration").timers())
+                .extracting(timer -> timer.getId().getTag("partition"))
+                .containsExactlyInAnyOrder("0", "2");
+    }
+}
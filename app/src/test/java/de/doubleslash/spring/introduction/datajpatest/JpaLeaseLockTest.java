@@ -0,0 +1,68 @@
+package de.doubleslash.spring.introduction.datajpatest;
+
+import de.doubleslash.spring.introduction.model.JpaLeaseLock;
+import de.doubleslash.spring.introduction.repository.LeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// leases are committed in their own transactions
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JpaLeaseLockTest {
+    private static final String LEASE = "TestLease";
+    private static final Duration ONE_HOUR = Duration.ofHours(1);
+
+    @Autowired
+    private LeaseRepository leaseRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JpaLeaseLock leaseLock;
+
+    @BeforeEach
+    void setUp() {
+        leaseRepository.deleteAllInBatch();
+        leaseLock = new JpaLeaseLock(leaseRepository, transactionManager);
+    }
+
+    @Test
+    void givenNoLease_whenAcquiring_thenAcquireAndBlockOtherOwners() {
+        assertThat(leaseLock.tryAcquire(LEASE, "owner1", ONE_HOUR)).isTrue();
+        assertThat(leaseLock.tryAcquire(LEASE, "owner2", ONE_HOUR)).isFalse();
+        assertThat(leaseRepository.findById(LEASE)).get().extracting("lockedBy").isEqualTo("owner1");
+    }
+
+    @Test
+    void givenOwnLease_whenAcquiringAgain_thenRenew() {
+        leaseLock.tryAcquire(LEASE, "owner1", Duration.ofMinutes(1));
+
+        assertThat(leaseLock.tryAcquire(LEASE, "owner1", ONE_HOUR)).isTrue();
+        // the database computes the expiry, its clock is the one of the test
+        assertThat(leaseRepository.findById(LEASE).get().getLockedUntil())
+                .isCloseTo(Instant.now().plus(ONE_HOUR), within(5, ChronoUnit.SECONDS));
+    }
+
+    @Test
+    void givenReleasedLease_whenOtherOwnerAcquires_thenAcquireOnlyAfterExpiry() {
+        leaseLock.tryAcquire(LEASE, "owner1", ONE_HOUR);
+        leaseLock.release(LEASE, "owner2", Duration.ZERO);
+
+        assertThat(leaseLock.tryAcquire(LEASE, "owner2", ONE_HOUR)).isFalse();
+
+        leaseLock.release(LEASE, "owner1", Duration.ZERO);
+
+        assertThat(leaseLock.tryAcquire(LEASE, "owner2", ONE_HOUR)).isTrue();
+    }
+}
@@ -0,0 +1,145 @@
+package de.doubleslash.spring.introduction.datajpatest;
+
+import de.doubleslash.spring.introduction.OrphanedImageReconciliationTask;
+import de.doubleslash.spring.introduction.config.CronConfiguration;
+import de.doubleslash.spring.introduction.controller.CarDealershipService;
+import de.doubleslash.spring.introduction.model.BlobStoreObjectInfo;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.ImageRendition;
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import de.doubleslash.spring.introduction.model.InMemoryLeaseLock;
+import de.doubleslash.spring.introduction.model.UploadReservation;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.CarRepository;
+import de.doubleslash.spring.introduction.repository.ImageObjectClaimRepository;
+import de.doubleslash.spring.introduction.repository.UploadReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class OrphanedImageReconciliationTaskTest {
+    // smaller than the number of objects, so that the bucket is walked in several pages
+    private static final int PAGE_SIZE = 3;
+    private static final int CARS = 4;
+    private static final int ORPHANS = 5;
+
+    @Autowired
+    private CarRepository carRepository;
+    @Autowired
+    private CarImageRepository carImageRepository;
+    @Autowired
+    private UploadReservationRepository uploadReservationRepository;
+    @Autowired
+    private ImageObjectClaimRepository claimRepository;
+
+    private final InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    private final InMemoryLeaseLock leaseLock = new InMemoryLeaseLock();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> referencedImageObjectNames = new ArrayList<>();
+    private final List<String> orphanedImageObjectNames = new ArrayList<>();
+    private OrphanedImageReconciliationTask reconciliationTask;
+
+    private String uploadImage() throws Exception {
+        return fileHandler.uploadFile(new ByteArrayInputStream(new byte[1]), 1L, "png",
+                CarDealershipService.CARS_BUCKET);
+    }
+
+    private List<String> listAllImageObjectNames() throws Exception {
+        return fileHandler.listFiles(CarDealershipService.CARS_BUCKET, null, Integer.MAX_VALUE).stream()
+                .map(BlobStoreObjectInfo::name).toList();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        carImageRepository.deleteAllInBatch();
+        carRepository.deleteAllInBatch();
+
+        for (int i = 0; i < CARS; i++) {
+            Car car = carRepository.save(Car.builder().brand("TestBrand").model("TestModel").build());
+            String imageObjectName = uploadImage();
+            carImageRepository.save(new CarImage(car, imageObjectName));
+            referencedImageObjectNames.add(imageObjectName);
+        }
+        for (int i = 0; i < ORPHANS; i++) {
+            orphanedImageObjectNames.add(uploadImage());
+        }
+
+        CronConfiguration configuration = new CronConfiguration();
+        configuration.getReconciliation().setPageSize(PAGE_SIZE);
+        reconciliationTask = new OrphanedImageReconciliationTask(fileHandler, carImageRepository,
+                uploadReservationRepository, claimRepository, leaseLock, configuration, meterRegistry);
+    }
+
+    @Test
+    void givenOrphanedAndReferencedImages_whenReconciling_thenDeleteOnlyOrphanedImages() throws Exception {
+        int deletedImages = reconciliationTask.deleteOrphanedImagesUploadedBefore(Instant.now().plusSeconds(1));
+
+        assertThat(deletedImages).isEqualTo(ORPHANS);
+        assertThat(listAllImageObjectNames()).containsExactlyInAnyOrderElementsOf(referencedImageObjectNames);
+        assertThat(meterRegistry.get("reconciliation.orphans.deleted").counter().count()).isEqualTo(ORPHANS);
+    }
+
+    @Test
+    void givenRenditionsOfImages_whenReconciling_thenListAndDeleteOnlyOrphanedImages() throws Exception {
+        for (String imageObjectName : referencedImageObjectNames) {
+            fileHandler.uploadFileAs(new byte[1], ImageRendition.thumbnail.objectName(imageObjectName),
+                    ImageRendition.BUCKET);
+        }
+
+        assertThat(listAllImageObjectNames()).hasSize(CARS + ORPHANS);
+
+        int deletedImages = reconciliationTask.deleteOrphanedImagesUploadedBefore(Instant.now().plusSeconds(1));
+
+        assertThat(deletedImages).isEqualTo(ORPHANS);
+        assertThat(fileHandler.listFiles(ImageRendition.BUCKET, null, Integer.MAX_VALUE)).hasSize(CARS);
+    }
+
+    @Test
+    void givenReservedUploads_whenReconciling_thenKeepThemUntilTheirReservationExpires() throws Exception {
+        String reservedImageObjectName = orphanedImageObjectNames.get(0);
+        String expiredImageObjectName = orphanedImageObjectNames.get(1);
+        Instant now = uploadReservationRepository.currentInstant();
+        uploadReservationRepository.save(new UploadReservation(reservedImageObjectName, now.plusSeconds(600)));
+        uploadReservationRepository.save(new UploadReservation(expiredImageObjectName, now.minusSeconds(1)));
+
+        int deletedImages = reconciliationTask.deleteOrphanedImagesUploadedBefore(Instant.now().plusSeconds(1));
+
+        assertThat(deletedImages).isEqualTo(ORPHANS - 1);
+        assertThat(listAllImageObjectNames()).contains(reservedImageObjectName)
+                .doesNotContain(expiredImageObjectName);
+        assertThat(uploadReservationRepository.findAll()).extracting(UploadReservation::getImageObjectName)
+                .containsExactly(reservedImageObjectName);
+    }
+
+    @Test
+    void givenImagesWithinGracePeriod_whenReconciling_thenKeepThem() throws Exception {
+        int deletedImages = reconciliationTask.deleteOrphanedImagesUploadedBefore(
+                Instant.now().minus(1, ChronoUnit.HOURS));
+
+        assertThat(deletedImages).isZero();
+        assertThat(listAllImageObjectNames()).hasSize(CARS + ORPHANS);
+    }
+
+    @Test
+    void givenLeaseHeldByOtherReplica_whenReconciling_thenSkipReconciliation() throws Exception {
+        leaseLock.tryAcquire("image-reconciliation", "otherReplica", Duration.ofHours(1));
+
+        int deletedImages = reconciliationTask.deleteOrphanedImagesUploadedBefore(Instant.now().plusSeconds(1));
+
+        assertThat(deletedImages).isZero();
+        assertThat(listAllImageObjectNames()).containsAll(orphanedImageObjectNames);
+    }
+}
@@ -0,0 +1,164 @@
+package de.doubleslash.spring.introduction.datajpatest;
+
+import de.doubleslash.spring.introduction.controller.CarDealershipService;
+import de.doubleslash.spring.introduction.model.BlobStoreObjectInfo;
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.CarImage;
+import de.doubleslash.spring.introduction.model.ContentHashObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.ImageObjectClaim;
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import de.doubleslash.spring.introduction.model.ReferenceCheckingFileHandler;
+import de.doubleslash.spring.introduction.repository.CarImageRepository;
+import de.doubleslash.spring.introduction.repository.CarRepository;
+import de.doubleslash.spring.introduction.repository.ImageObjectClaimRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+class ReferenceCheckingFileHandlerTest {
+    private static final byte[] IMAGE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    @Autowired
+    private CarRepository carRepository;
+    @Autowired
+    private CarImageRepository carImageRepository;
+    @Autowired
+    private ImageObjectClaimRepository claimRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final InMemoryFileHandler inMemoryFileHandler = new InMemoryFileHandler(
+            new ContentHashObjectNameGenerator());
+    private ReferenceCheckingFileHandler fileHandler;
+    // claims are committed on their own, outside the transaction of the test
+    private TransactionTemplate claimTransaction;
+
+    private String uploadImage(byte[] image) throws Exception {
+        return fileHandler.uploadFile(new ByteArrayInputStream(image), (long) image.length, "png",
+                CarDealershipService.CARS_BUCKET);
+    }
+
+    private Car addCarWithImage(byte[] image) throws Exception {
+        String imageObjectName = uploadImage(image);
+        Car car = Car.builder().brand("TestBrand").model("TestModel").build();
+        car.setCarImageList(new ArrayList<>(List.of(new CarImage(car, imageObjectName))));
+
+        Car savedCar = carRepository.save(car);
+        fileHandler.releaseUploads(List.of(imageObjectName));
+
+        return savedCar;
+    }
+
+    private List<String> listAllImageObjectNames() throws Exception {
+        return fileHandler.listFiles(CarDealershipService.CARS_BUCKET, null, Integer.MAX_VALUE).stream()
+                .map(BlobStoreObjectInfo::name).toList();
+    }
+
+    @BeforeEach
+    void setUp() {
+        carImageRepository.deleteAllInBatch();
+        carRepository.deleteAllInBatch();
+        fileHandler = new ReferenceCheckingFileHandler(inMemoryFileHandler, carImageRepository, claimRepository,
+                transactionManager);
+        claimTransaction = new TransactionTemplate(transactionManager);
+        claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        claimTransaction.executeWithoutResult(status -> claimRepository.deleteAllInBatch());
+    }
+
+    @Test
+    void givenCarsWithSameImage_whenDeletingCars_thenDeleteSharedImageWithLastReference() throws Exception {
+        Car first = addCarWithImage(IMAGE);
+        Car second = addCarWithImage(IMAGE);
+        String imageObjectName = first.getCarImageList().get(0).getImageObjectName();
+
+        assertThat(listAllImageObjectNames()).containsExactly(imageObjectName);
+
+        carRepository.delete(first);
+        assertThat(fileHandler.deleteMultiple(List.of(imageObjectName), CarDealershipService.CARS_BUCKET)).isEmpty();
+        assertThat(listAllImageObjectNames()).containsExactly(imageObjectName);
+
+        carRepository.delete(second);
+        assertThat(fileHandler.deleteMultiple(List.of(imageObjectName), CarDealershipService.CARS_BUCKET)).isEmpty();
+        assertThat(listAllImageObjectNames()).isEmpty();
+    }
+
+    @Test
+    void givenUploadNotReferencedYet_whenDeletingIt_thenKeepItUntilUploadIsReleased() throws Exception {
+        String imageObjectName = uploadImage(IMAGE);
+
+        assertThat(fileHandler.deleteMultiple(List.of(imageObjectName), CarDealershipService.CARS_BUCKET)).isEmpty();
+        assertThat(listAllImageObjectNames()).containsExactly(imageObjectName);
+
+        fileHandler.releaseUploads(List.of(imageObjectName));
+        fileHandler.deleteMultiple(List.of(imageObjectName), CarDealershipService.CARS_BUCKET);
+
+        assertThat(listAllImageObjectNames()).isEmpty();
+        assertThat(claimRepository.count()).isZero();
+    }
+
+    @Test
+    void givenSameImageUploadedTwice_whenReleasingOneUpload_thenKeepImageClaimedByOtherUpload() throws Exception {
+        String imageObjectName = uploadImage(IMAGE);
+        uploadImage(IMAGE);
+
+        fileHandler.releaseUploads(List.of(imageObjectName));
+        fileHandler.deleteMultiple(List.of(imageObjectName), CarDealershipService.CARS_BUCKET);
+
+        assertThat(listAllImageObjectNames()).containsExactly(imageObjectName);
+        fileHandler.releaseUploads(List.of(imageObjectName));
+    }
+
+    @Test
+    void givenDeletionInProgress_whenUploadingSameImage_thenWaitAndFailIfImageWasDeleted() throws Exception {
+        String imageObjectName = inMemoryFileHandler.uploadFile(new ByteArrayInputStream(IMAGE),
+                (long) IMAGE.length, "png", CarDealershipService.CARS_BUCKET);
+        ImageObjectClaim deletion = claimTransaction.execute(status -> claimRepository.save(new ImageObjectClaim(
+                null, imageObjectName, ImageObjectClaim.Purpose.DELETION,
+                claimRepository.currentInstant().plusSeconds(60))));
+
+        // the deletion has checked the claims before the upload, and removes the image after it has been stored again
+        CompletableFuture<Void> deletionInProgress = CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(300);
+                inMemoryFileHandler.deleteMultiple(List.of(imageObjectName), CarDealershipService.CARS_BUCKET);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                claimTransaction.executeWithoutResult(status -> claimRepository.deleteById(deletion.getId()));
+            }
+        });
+
+        assertThatThrownBy(() -> uploadImage(IMAGE)).isInstanceOf(IOException.class);
+        deletionInProgress.join();
+        assertThat(claimRepository.count()).isZero();
+    }
+
+    @Test
+    void givenMoreNamesThanOneLookup_whenFindingUnreferencedNames_thenReturnEachUnreferencedNameOnce() throws Exception {
+        String referenced = addCarWithImage(IMAGE).getCarImageList().get(0).getImageObjectName();
+        List<String> unreferenced = IntStream.range(0, CarImageRepository.LOOKUP_CHUNK_SIZE)
+                .mapToObj(i -> "%064x.png".formatted(i))
+                .toList();
+        List<String> names = new ArrayList<>(unreferenced);
+        names.add(referenced);
+        names.add(unreferenced.get(0));
+
+        assertThat(carImageRepository.findUnreferencedImageObjectNames(names))
+                .containsExactlyElementsOf(unreferenced);
+    }
+}
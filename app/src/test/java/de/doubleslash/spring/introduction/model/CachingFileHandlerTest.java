@@ -0,0 +1,86 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingFileHandlerTest {
+    private static final String BUCKET = "TestBucket";
+    private static final String FILENAME = "TestTitle.png";
+
+    @Mock
+    private BlobStoreFileHandler delegate;
+
+    private CachingFileHandler cachingFileHandler;
+
+    @BeforeEach
+    void setUp() {
+        cachingFileHandler = new CachingFileHandler(delegate, 1024, 100);
+    }
+
+    @Test
+    void givenCachedImage_whenDownloadingTwice_thenFetchFromDelegateOnce() throws Exception {
+        when(delegate.downloadFileStream(FILENAME, BUCKET))
+                .thenReturn(new BlobStoreObject(new ByteArrayInputStream(new byte[10]), 10));
+
+        try (BlobStoreObject first = cachingFileHandler.downloadFileStream(FILENAME, BUCKET);
+             BlobStoreObject second = cachingFileHandler.downloadFileStream(FILENAME, BUCKET)) {
+            assertThat(first.stream().readAllBytes()).hasSize(10);
+            assertThat(second.stream().readAllBytes()).hasSize(10);
+        }
+
+        verify(delegate, times(1)).downloadFileStream(FILENAME, BUCKET);
+        assertThat(cachingFileHandler.getStats().hitCount()).isEqualTo(1);
+        assertThat(cachingFileHandler.getStats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void givenImageLargerThanEntryLimit_whenDownloading_thenStreamFromDelegateWithoutCaching() throws Exception {
+        BlobStoreObject largeImage = new BlobStoreObject(new ByteArrayInputStream(new byte[200]), 200);
+        when(delegate.downloadFileStream(FILENAME, BUCKET)).thenReturn(largeImage);
+
+        assertThat(cachingFileHandler.downloadFileStream(FILENAME, BUCKET)).isSameAs(largeImage);
+        assertThat(cachingFileHandler.downloadFileStream(FILENAME, BUCKET)).isSameAs(largeImage);
+
+        verify(delegate, times(2)).downloadFileStream(FILENAME, BUCKET);
+    }
+
+    @Test
+    void givenCachedImage_whenDeletingImage_thenInvalidateEntry() throws Exception {
+        when(delegate.downloadFileStream(FILENAME, BUCKET))
+                .thenReturn(new BlobStoreObject(new ByteArrayInputStream(new byte[10]), 10))
+                .thenReturn(new BlobStoreObject(new ByteArrayInputStream(new byte[10]), 10));
+
+        cachingFileHandler.downloadFileStream(FILENAME, BUCKET).close();
+        cachingFileHandler.deleteMultiple(List.of(FILENAME), BUCKET);
+        cachingFileHandler.downloadFileStream(FILENAME, BUCKET).close();
+
+        verify(delegate).deleteMultiple(List.of(FILENAME), BUCKET);
+        verify(delegate, times(2)).downloadFileStream(FILENAME, BUCKET);
+    }
+
+    @Test
+    void givenCachedImage_whenRequestingRangeAndSize_thenServeFromCache() throws Exception {
+        byte[] fileData = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        when(delegate.downloadFileStream(FILENAME, BUCKET))
+                .thenReturn(new BlobStoreObject(new ByteArrayInputStream(fileData), fileData.length));
+
+        cachingFileHandler.downloadFileStream(FILENAME, BUCKET).close();
+
+        try (BlobStoreObject range = cachingFileHandler.downloadFileRange(FILENAME, BUCKET, 2, 3)) {
+            assertThat(range.stream().readAllBytes()).containsExactly(2, 3, 4);
+        }
+        assertThat(cachingFileHandler.getFileSize(FILENAME, BUCKET)).isEqualTo(10);
+    }
+}
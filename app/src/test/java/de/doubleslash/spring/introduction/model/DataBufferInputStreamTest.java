@@ -0,0 +1,47 @@
+package de.doubleslash.spring.introduction.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DataBufferInputStreamTest {
+    private static DataBuffer buffer(int... bytes) {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.allocateBuffer(bytes.length);
+        for (int b : bytes) {
+            buffer.write((byte) b);
+        }
+        return buffer;
+    }
+
+    @Test
+    void givenSeveralBuffers_whenReading_thenReturnTheirContentInOrder() throws Exception {
+        try (DataBufferInputStream stream = new DataBufferInputStream(
+                Flux.just(buffer(0, 1), buffer(), buffer(2, 3, 255)), 2)) {
+            assertThat(stream.read()).isEqualTo(0);
+            assertThat(stream.readAllBytes()).containsExactly(1, 2, 3, 255);
+            assertThat(stream.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void givenLongContent_whenReadingPartially_thenRequestOnlyFewBuffersAheadAndCancelOnClose() throws Exception {
+        AtomicLong requested = new AtomicLong();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<DataBuffer> content = Flux.range(0, 1000).map(i -> buffer(i))
+                .doOnRequest(requested::addAndGet)
+                .doOnCancel(() -> cancelled.set(true));
+
+        DataBufferInputStream stream = new DataBufferInputStream(content, 4);
+        assertThat(stream.read()).isEqualTo(0);
+        assertThat(requested.get()).isLessThanOrEqualTo(4);
+
+        stream.close();
+        assertThat(cancelled).isTrue();
+    }
+}
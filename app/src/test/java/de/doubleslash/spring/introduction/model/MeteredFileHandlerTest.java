@@ -0,0 +1,68 @@
+package de.doubleslash.spring.introduction.model;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MeteredFileHandlerTest {
+    private static final String BUCKET = "TestBucket";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MeteredFileHandler meteredFileHandler = new MeteredFileHandler(new InMemoryFileHandler(),
+            meterRegistry);
+
+    private Timer requests(String operation, String outcome) {
+        return meterRegistry.get(MeteredFileHandler.REQUESTS_METRIC)
+                .tags("operation", operation, "bucket", BUCKET, "outcome", outcome).timer();
+    }
+
+    @Test
+    void givenUploadAndDownload_whenHandlingImage_thenRecordLatencyAndBytesPerOperation() throws Exception {
+        String filename = meteredFileHandler.uploadFile(new ByteArrayInputStream(new byte[10]), null, "png", BUCKET);
+        try (BlobStoreObject object = meteredFileHandler.downloadFileStream(filename, BUCKET)) {
+            object.stream().readAllBytes();
+        }
+        try (BlobStoreObject object = meteredFileHandler.downloadFileRange(filename, BUCKET, 2, 3)) {
+            object.stream().readAllBytes();
+        }
+
+        assertThat(requests("upload", "success").count()).isEqualTo(1);
+        assertThat(requests("download", "success").count()).isEqualTo(1);
+        assertThat(requests("download-range", "success").count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MeteredFileHandler.TRANSFERRED_METRIC).tags("operation", "upload")
+                .summary().totalAmount()).isEqualTo(10);
+        assertThat(meterRegistry.get(MeteredFileHandler.TRANSFERRED_METRIC).tags("operation", "download-range")
+                .summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void givenOpenedDownload_whenClosingIt_thenRecordLatencyAndBytesReadOnlyAfterClose() throws Exception {
+        String filename = meteredFileHandler.uploadFile(new ByteArrayInputStream(new byte[10]), null, "png", BUCKET);
+        BlobStoreObject object = meteredFileHandler.downloadFileStream(filename, BUCKET);
+        object.stream().readNBytes(4);
+
+        assertThat(meterRegistry.find(MeteredFileHandler.REQUESTS_METRIC).tags("operation", "download").timer())
+                .isNull();
+
+        object.close();
+        object.close();
+
+        assertThat(requests("download", "success").count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MeteredFileHandler.TRANSFERRED_METRIC).tags("operation", "download")
+                .summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void givenMissingImage_whenDownloading_thenRecordNotFoundOutcome() {
+        assertThatThrownBy(() -> meteredFileHandler.downloadFileStream("TestTitle.png", BUCKET))
+                .isInstanceOf(FileNotFoundException.class);
+
+        assertThat(requests("download", "not-found").count()).isEqualTo(1);
+    }
+}
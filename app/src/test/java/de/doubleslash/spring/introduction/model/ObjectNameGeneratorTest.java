@@ -0,0 +1,48 @@
+package de.doubleslash.spring.introduction.model;
+
+import de.doubleslash.spring.introduction.controller.AllowedExtension;
+import de.doubleslash.spring.introduction.controller.ImageFilenameValidator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectNameGeneratorTest {
+    private static final byte[] IMAGE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    private final RandomObjectNameGenerator random = new RandomObjectNameGenerator();
+    private final ContentHashObjectNameGenerator contentHash = new ContentHashObjectNameGenerator();
+
+    @Test
+    void givenSameContent_whenNamingRandomly_thenReturnDifferentValidNames() throws Exception {
+        ObjectNameGenerator.NamedUpload first = random.nameUpload(new ByteArrayInputStream(IMAGE), "png");
+        String second = random.name(IMAGE, "png");
+
+        assertThat(first.isRenamed()).isFalse();
+        assertThat(first.objectName()).isNotEqualTo(second);
+        assertThat(ImageFilenameValidator.validateObjectName(first.objectName())).isEqualTo(AllowedExtension.png);
+        assertThat(ImageFilenameValidator.validateObjectName(second)).isEqualTo(AllowedExtension.png);
+        assertThat(first.content().readAllBytes()).isEqualTo(IMAGE);
+    }
+
+    @Test
+    void givenStreamedContent_whenNamingByContentHash_thenUploadUnderTemporaryNameAndReturnSha256Name()
+            throws Exception {
+        String expectedName = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(IMAGE)) + ".jpg";
+
+        ObjectNameGenerator.NamedUpload upload = contentHash.nameUpload(new ByteArrayInputStream(IMAGE), "jpg");
+
+        // the name to upload under is known before the content has been read
+        assertThat(ImageFilenameValidator.validateObjectName(upload.uploadName())).isEqualTo(AllowedExtension.jpg);
+        assertThat(upload.content().readAllBytes()).isEqualTo(IMAGE);
+
+        assertThat(upload.isRenamed()).isTrue();
+        assertThat(upload.objectName()).isEqualTo(expectedName);
+        assertThat(contentHash.name(IMAGE, "jpg")).isEqualTo(expectedName);
+        assertThat(ImageFilenameValidator.validateObjectName(upload.objectName())).isEqualTo(AllowedExtension.jpg);
+        assertThat(contentHash.name(new byte[]{1}, "jpg")).isNotEqualTo(expectedName);
+    }
+}
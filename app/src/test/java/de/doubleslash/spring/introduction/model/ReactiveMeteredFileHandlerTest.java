@@ -0,0 +1,54 @@
+package de.doubleslash.spring.introduction.model;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.FileNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveMeteredFileHandlerTest {
+    private static final String BUCKET = "TestBucket";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReactiveMeteredFileHandler meteredFileHandler = new ReactiveMeteredFileHandler(
+            new ReactiveInMemoryFileHandler(new InMemoryFileHandler()), meterRegistry);
+
+    private Timer requests(String operation, String outcome) {
+        return meterRegistry.get(MeteredFileHandler.REQUESTS_METRIC)
+                .tags("operation", operation, "bucket", BUCKET, "outcome", outcome).timer();
+    }
+
+    @Test
+    void givenUploadAndDownload_whenContentIsConsumed_thenRecordLatencyAndBytesPerOperation() {
+        String filename = meteredFileHandler.uploadFile(Flux.just(
+                DefaultDataBufferFactory.sharedInstance.wrap(new byte[4]),
+                DefaultDataBufferFactory.sharedInstance.wrap(new byte[6])), "png", BUCKET).block();
+        ReactiveBlobStoreObject object = meteredFileHandler.downloadFileStream(filename, BUCKET).block();
+
+        assertThat(meterRegistry.find(MeteredFileHandler.REQUESTS_METRIC).tags("operation", "download").timer())
+                .isNull();
+
+        StepVerifier.create(DataBufferUtils.join(object.content())).expectNextCount(1).verifyComplete();
+
+        assertThat(requests("upload", "success").count()).isEqualTo(1);
+        assertThat(requests("download", "success").count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MeteredFileHandler.TRANSFERRED_METRIC).tags("operation", "upload")
+                .summary().totalAmount()).isEqualTo(10);
+        assertThat(meterRegistry.get(MeteredFileHandler.TRANSFERRED_METRIC).tags("operation", "download")
+                .summary().totalAmount()).isEqualTo(10);
+    }
+
+    @Test
+    void givenMissingImage_whenDownloading_thenRecordNotFoundOutcome() {
+        StepVerifier.create(meteredFileHandler.downloadFileStream("TestTitle.png", BUCKET))
+                .expectError(FileNotFoundException.class).verify();
+
+        assertThat(requests("download", "not-found").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,45 @@
+package de.doubleslash.spring.introduction.spring.configuration.control;
+
+import de.doubleslash.spring.introduction.config.FileHandlerConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlobStoreConfigurationTest {
+    private final BlobStoreConfiguration blobStoreConfiguration = new BlobStoreConfiguration();
+
+    @Test
+    void givenHttpConfiguration_whenCreatingBlobStoreHttpClient_thenApplyTimeoutsAndRequestLimits() {
+        final FileHandlerConfiguration configuration = new FileHandlerConfiguration();
+        configuration.getHttp().setConnectTimeout(Duration.ofSeconds(2));
+        configuration.getHttp().setReadTimeout(Duration.ofSeconds(20));
+        configuration.getHttp().setWriteTimeout(Duration.ofSeconds(30));
+        configuration.getHttp().setMaxRequests(100);
+
+        final OkHttpClient client = blobStoreConfiguration.blobStoreHttpClient(configuration);
+
+        assertThat(client.connectTimeoutMillis()).isEqualTo(2_000);
+        assertThat(client.readTimeoutMillis()).isEqualTo(20_000);
+        assertThat(client.writeTimeoutMillis()).isEqualTo(30_000);
+        assertThat(client.dispatcher().getMaxRequests()).isEqualTo(100);
+        assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(100);
+    }
+
+    @Test
+    void givenBlobStoreHttpClient_whenBindingMetrics_thenPublishConnectionsAndCalls() {
+        final FileHandlerConfiguration configuration = new FileHandlerConfiguration();
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final OkHttpClient client = blobStoreConfiguration.blobStoreHttpClient(configuration);
+
+        blobStoreConfiguration.blobStoreHttpClientMetrics(client, configuration).bindTo(meterRegistry);
+
+        assertThat(meterRegistry.get(BlobStoreConfiguration.HTTP_CALLS_METRIC).tags("state", "queued").gauge()
+                .value()).isZero();
+        assertThat(meterRegistry.get(BlobStoreConfiguration.HTTP_METRICS_PREFIX + ".connection.limit").gauge()
+                .value()).isEqualTo(configuration.getHttp().getMaxIdleConnections());
+    }
+}
@@ -0,0 +1,53 @@
+package de.doubleslash.spring.introduction.benchmarks;
+
+import de.doubleslash.spring.introduction.controller.AllowedExtension;
+import de.doubleslash.spring.introduction.controller.ImageFilenameValidator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.util.Pair;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of the name of every uploaded and requested image. <code>splitAndStream</code> is the former
+ * implementation, kept as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilenameValidationBenchmark {
+
+    @Param({"TestTitle.png", "TestTitle.php.jpg",
+            "3f79bb7b435b05321651daefd374cdc681dc06faa65e374e38337b88ca046dea.webp"})
+    private String filename;
+
+    @Benchmark
+    public AllowedExtension validateUploadFilename() {
+        return ImageFilenameValidator.validateUploadFilename(filename);
+    }
+
+    @Benchmark
+    public AllowedExtension validateObjectName() {
+        return ImageFilenameValidator.validateObjectName(filename);
+    }
+
+    @Benchmark
+    public Pair<Boolean, String> splitAndStream() {
+        if (filename == null || filename.isEmpty() || filename.length() >= 255) {
+            return Pair.of(false, "");
+        }
+
+        String[] substrings = filename.split("\\.");
+        String fileExtension = substrings[1];
+
+        if (substrings.length != 2 || Arrays.stream(AllowedExtension.values())
+                .noneMatch(allowedExtension -> allowedExtension.name().equals(fileExtension))) {
+            return Pair.of(false, "");
+        }
+
+        return Pair.of(true, fileExtension);
+    }
+}
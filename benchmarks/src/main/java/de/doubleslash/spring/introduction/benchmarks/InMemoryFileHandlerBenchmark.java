@@ -0,0 +1,56 @@
+package de.doubleslash.spring.introduction.benchmarks;
+
+import de.doubleslash.spring.introduction.model.InMemoryFileHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.CARS_BUCKET;
+
+/**
+ * Upload and download through the blob store handler used by the tests, i.e. the cost of the handler itself without
+ * any network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryFileHandlerBenchmark {
+
+    @Param({"16384", "1048576"})
+    private int fileSize;
+
+    private final InMemoryFileHandler fileHandler = new InMemoryFileHandler();
+    private byte[] fileData;
+    private String storedFilename;
+
+    @Setup
+    public void setUp() throws Exception {
+        fileData = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(fileData);
+        storedFilename = fileHandler.uploadFile(new ByteArrayInputStream(fileData), (long) fileSize, "png",
+                CARS_BUCKET);
+    }
+
+    /**
+     * Deletes the object again, so that the store does not grow over the iterations.
+     */
+    @Benchmark
+    public String uploadAndDelete() throws Exception {
+        String filename = fileHandler.uploadFile(new ByteArrayInputStream(fileData), (long) fileSize, "png",
+                CARS_BUCKET);
+        fileHandler.deleteMultiple(List.of(filename), CARS_BUCKET);
+
+        return filename;
+    }
+
+    @Benchmark
+    public byte[] download() {
+        return fileHandler.downloadFile(storedFilename, CARS_BUCKET);
+    }
+}
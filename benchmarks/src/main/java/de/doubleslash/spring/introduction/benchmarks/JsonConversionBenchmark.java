@@ -0,0 +1,28 @@
+package de.doubleslash.spring.introduction.benchmarks;
+
+import de.doubleslash.spring.introduction.model.Car;
+import de.doubleslash.spring.introduction.model.JsonStringToInstanceConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the car sent with every add and replace request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonConversionBenchmark {
+    private static final String CAR_JSON = "{\"brand\":\"TestBrand\",\"model\":\"TestModel\"," +
+            "\"date\":\"2024-01-01T12:00:00Z\"}";
+
+    private final JsonStringToInstanceConverter converter = new JsonStringToInstanceConverter();
+
+    @Benchmark
+    public Car convertCar() throws Exception {
+        return converter.convert(CAR_JSON, Car.class);
+    }
+}
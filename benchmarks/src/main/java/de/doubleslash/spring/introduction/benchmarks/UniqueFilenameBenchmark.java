@@ -0,0 +1,72 @@
+package de.doubleslash.spring.introduction.benchmarks;
+
+import de.doubleslash.spring.introduction.model.ContentHashObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.ObjectNameGenerator;
+import de.doubleslash.spring.introduction.model.RandomObjectNameGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Naming of every uploaded image object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniqueFilenameBenchmark {
+
+    @Param({"16384"})
+    private int imageSize;
+
+    private final ObjectNameGenerator random = new RandomObjectNameGenerator();
+    private final ObjectNameGenerator contentHash = new ContentHashObjectNameGenerator();
+    private byte[] image;
+
+    @Setup
+    public void setUp() {
+        image = new byte[imageSize];
+        new Random(42).nextBytes(image);
+    }
+
+    // the content is read like an upload would, a content hash is only known afterwards
+    private String name(ObjectNameGenerator generator) throws Exception {
+        ObjectNameGenerator.NamedUpload upload = generator.nameUpload(new ByteArrayInputStream(image), "png");
+        upload.content().transferTo(OutputStream.nullOutputStream());
+
+        return upload.objectName();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String randomName() throws Exception {
+        return name(random);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String contentHashName() throws Exception {
+        return name(contentHash);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String previousName() throws Exception {
+        // naming before the generators: a new SecureRandom and digest lookup per upload
+        int randomNumber = new SecureRandom().nextInt(0, Integer.MAX_VALUE);
+        String message = "%d".formatted(randomNumber) + LocalDateTime.now();
+        byte[] hash = MessageDigest.getInstance("SHA256").digest(message.getBytes(StandardCharsets.UTF_8));
+
+        return HexFormat.of().formatHex(hash) + ".png";
+    }
+}
@@ -0,0 +1,138 @@
+package de.doubleslash.spring.introduction.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.CARS_ROOT;
+import static de.doubleslash.spring.introduction.controller.CarDealershipService.IMAGES_ROOT;
+
+/**
+ * Sends the requests of the load test and keeps track of the cars it has added, so that reads and deletions hit
+ * existing data.
+ */
+class CarDealershipWorkload {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String BRAND_PREFIX = "LoadTestBrand";
+
+    private final HttpClient client;
+    private final URI target;
+    private final byte[] image;
+    private final int brands;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // cars added by the load test and not deleted yet
+    private final List<AddedCar> cars = new ArrayList<>();
+
+    CarDealershipWorkload(HttpClient client, URI target, int imageSize, int brands) {
+        this.client = client;
+        this.target = target;
+        this.image = new byte[imageSize];
+        this.brands = brands;
+        ThreadLocalRandom.current().nextBytes(image);
+    }
+
+    /**
+     * Reads and deletions fall back to adding a car while no car is known.
+     */
+    synchronized Operation resolve(Operation operation) {
+        return operation != Operation.ADD_CAR && cars.isEmpty() ? Operation.ADD_CAR : operation;
+    }
+
+    /**
+     * @return whether the app answered with a success status
+     */
+    boolean execute(Operation operation) {
+        try {
+            return switch (operation) {
+                case ADD_CAR -> addCar();
+                case GET_CAR -> get(CARS_ROOT + "/" + randomCar().id());
+                case GET_IMAGE -> get(IMAGES_ROOT + "/" + randomCar().imageObjectName());
+                case DELETE_BRAND -> deleteBrand(randomCar().brand());
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean addCar() throws Exception {
+        String brand = BRAND_PREFIX + ThreadLocalRandom.current().nextInt(brands);
+        String boundary = UUID.randomUUID().toString();
+        HttpRequest request = request(CARS_ROOT + "/add")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(carMultipart(boundary, brand)))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (!isSuccessful(response)) {
+            return false;
+        }
+
+        JsonNode car = objectMapper.readTree(response.body());
+        synchronized (this) {
+            cars.add(new AddedCar(car.get("id").asLong(), brand,
+                    car.get("carImageList").get(0).get("imageObjectName").asText()));
+        }
+
+        return true;
+    }
+
+    private boolean get(String path) throws Exception {
+        HttpResponse<Void> response = client.send(request(path).GET().build(), HttpResponse.BodyHandlers.discarding());
+
+        return isSuccessful(response);
+    }
+
+    private boolean deleteBrand(String brand) throws Exception {
+        // forgotten before the request, so that no further reads of the deleted cars are sent
+        synchronized (this) {
+            cars.removeIf(car -> car.brand().equals(brand));
+        }
+
+        HttpResponse<Void> response = client.send(request(CARS_ROOT + "/brand/" + brand).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        return isSuccessful(response);
+    }
+
+    private synchronized AddedCar randomCar() {
+        return cars.get(ThreadLocalRandom.current().nextInt(cars.size()));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(target.resolve(path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private byte[] carMultipart(String boundary, String brand) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 512);
+        body.writeBytes(("--%s\r\nContent-Disposition: form-data; name=\"car\"\r\n\r\n" +
+                "{\"brand\":\"%s\",\"model\":\"LoadTestModel\"}\r\n").formatted(boundary, brand)
+                .getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(("--%s\r\nContent-Disposition: form-data; name=\"file\"; filename=\"LoadTestImage.png\"\r\n" +
+                "Content-Type: image/png\r\n\r\n").formatted(boundary).getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(image);
+        body.writeBytes("\r\n--%s--\r\n".formatted(boundary).getBytes(StandardCharsets.UTF_8));
+
+        return body.toByteArray();
+    }
+
+    private static boolean isSuccessful(HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 300;
+    }
+
+    private record AddedCar(long id, String brand, String imageObjectName) {
+    }
+}
@@ -0,0 +1,57 @@
+package de.doubleslash.spring.introduction.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the latencies of one operation. All samples are kept, so that the percentiles are exact.
+ */
+class LatencyRecorder {
+    private long[] latencyNanos = new long[1024];
+    private int requests;
+    private int errors;
+
+    static OperationReport report(String name, List<LatencyRecorder> recorders, Duration measured) {
+        LatencyRecorder merged = new LatencyRecorder();
+        recorders.forEach(recorder -> recorder.copyTo(merged));
+
+        return merged.report(name, measured);
+    }
+
+    synchronized void record(long nanos, boolean success) {
+        if (requests == latencyNanos.length) {
+            latencyNanos = Arrays.copyOf(latencyNanos, requests * 2);
+        }
+        latencyNanos[requests++] = nanos;
+        if (!success) {
+            errors++;
+        }
+    }
+
+    synchronized OperationReport report(String name, Duration measured) {
+        long[] sorted = Arrays.copyOf(latencyNanos, requests);
+        Arrays.sort(sorted);
+
+        return new OperationReport(name, requests, errors, requests / (measured.toNanos() / 1e9),
+                percentileMillis(sorted, 0.5), percentileMillis(sorted, 0.99), percentileMillis(sorted, 0.999),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private synchronized void copyTo(LatencyRecorder target) {
+        for (int i = 0; i < requests; i++) {
+            target.record(latencyNanos[i], true);
+        }
+        target.errors += errors;
+    }
+
+    // nearest-rank percentile
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+}
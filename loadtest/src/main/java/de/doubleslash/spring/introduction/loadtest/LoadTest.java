@@ -0,0 +1,123 @@
+package de.doubleslash.spring.introduction.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.doubleslash.spring.introduction.SpringIntroductionApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of requests against the app at a fixed arrival rate and reports latency percentiles and throughput
+ * per operation. Without a <code>--target</code> the app is started in this JVM with an in-memory H2 database and
+ * the in-memory file handler in place of PostgreSQL and MinIO.
+ * <p>
+ * Requests are started on schedule whether or not earlier ones have completed, so a slow app shows up as higher
+ * latency instead of a lower request rate.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ConfigurableApplicationContext app = null;
+        URI target = options.target();
+
+        if (target == null) {
+            app = new SpringApplicationBuilder(SpringIntroductionApplication.class).profiles("test", "loadtest")
+                    .run();
+            int port = ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+            target = URI.create("http://localhost:%d".formatted(port));
+        }
+
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            LoadTestReport report = run(options, target, client);
+            ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule())
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .enable(SerializationFeature.INDENT_OUTPUT).build();
+
+            objectMapper.writeValue(options.reportPath().toFile(), report);
+            System.out.println(objectMapper.writeValueAsString(report));
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    private static LoadTestReport run(LoadTestOptions options, URI target, HttpClient client) {
+        CarDealershipWorkload workload = new CarDealershipWorkload(client, target, options.imageSize(),
+                options.brands());
+        for (int i = 0; i < options.seedCars(); i++) {
+            workload.execute(Operation.ADD_CAR);
+        }
+
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+
+        Instant startedAt = Instant.now();
+        long intervalNanos = (long) (1e9 / options.rate());
+        long start = System.nanoTime();
+        long measurementStart = start + options.warmup().toNanos();
+        long end = measurementStart + options.duration().toNanos();
+
+        // closing the executor waits for the requests still in flight
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long scheduled = start; scheduled < end; scheduled += intervalNanos) {
+                long delay = scheduled - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+
+                Operation operation = workload.resolve(drawOperation(options.mix()));
+                long scheduledStart = scheduled;
+
+                executor.execute(() -> {
+                    boolean success = workload.execute(operation);
+                    long latency = System.nanoTime() - scheduledStart;
+                    if (scheduledStart >= measurementStart) {
+                        recorders.get(operation).record(latency, success);
+                    }
+                });
+            }
+        }
+
+        List<OperationReport> operationReports = new ArrayList<>();
+        recorders.forEach((operation, recorder) ->
+                operationReports.add(recorder.report(operation.getOptionName(), options.duration())));
+
+        return new LoadTestReport(startedAt, target.toString(), options.rate(), options.warmup().toSeconds(),
+                options.duration().toSeconds(), options.imageSize(), operationReports,
+                LatencyRecorder.report("total", List.copyOf(recorders.values()), options.duration()));
+    }
+
+    private static Operation drawOperation(Map<Operation, Integer> mix) {
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int draw = ThreadLocalRandom.current().nextInt(totalWeight);
+
+        for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+            draw -= weight.getValue();
+            if (draw < 0) {
+                return weight.getKey();
+            }
+        }
+
+        throw new IllegalStateException("Operation mix is empty");
+    }
+}
@@ -0,0 +1,74 @@
+package de.doubleslash.spring.introduction.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Options of a load test run, passed as <code>--name=value</code> arguments.
+ *
+ * @param target     URL of a running app, the app is started with local stand-ins if missing
+ * @param rate       requests started per second, independent of how fast the app responds
+ * @param warmup     time before the measurement, its requests are not reported
+ * @param duration   time of the measurement
+ * @param mix        relative share of each operation
+ * @param imageSize  size of the image uploaded with every car in bytes
+ * @param seedCars   cars added before the warmup, so that reads and deletions have data from the start
+ * @param brands     number of distinct brands, a deletion removes all cars of one of them
+ * @param reportPath file the JSON report is written to
+ */
+record LoadTestOptions(@Nullable URI target, double rate, Duration warmup, Duration duration,
+                       Map<Operation, Integer> mix, int imageSize, int seedCars, int brands, Path reportPath) {
+
+    private static final String DEFAULT_MIX = "add-car=10,get-car=45,get-image=40,delete-brand=5";
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Arguments have to be passed as --name=value, got %s".formatted(arg));
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        String target = options.remove("target");
+        LoadTestOptions parsed = new LoadTestOptions(
+                target == null ? null : URI.create(target),
+                Double.parseDouble(take(options, "rate", "100")),
+                DurationStyle.detectAndParse(take(options, "warmup", "10s")),
+                DurationStyle.detectAndParse(take(options, "duration", "60s")),
+                parseMix(take(options, "mix", DEFAULT_MIX)),
+                Integer.parseInt(take(options, "image-size", "16384")),
+                Integer.parseInt(take(options, "seed-cars", "200")),
+                Integer.parseInt(take(options, "brands", "50")),
+                Path.of(take(options, "report", "loadtest-report.json")));
+
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown option(s) %s".formatted(options.keySet()));
+        }
+
+        return parsed;
+    }
+
+    private static String take(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+
+        return value == null ? defaultValue : value;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.split("=");
+            weights.put(Operation.fromOptionName(nameAndWeight[0].trim()), Integer.parseInt(nameAndWeight[1].trim()));
+        }
+
+        return weights;
+    }
+}
@@ -0,0 +1,11 @@
+package de.doubleslash.spring.introduction.loadtest;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Machine-readable result of a load test run, written as JSON so that runs of different builds can be compared.
+ */
+record LoadTestReport(Instant startedAt, String target, double rate, long warmupSeconds, long durationSeconds,
+                      int imageSize, List<OperationReport> operations, OperationReport total) {
+}
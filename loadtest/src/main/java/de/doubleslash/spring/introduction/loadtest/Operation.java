@@ -0,0 +1,28 @@
+package de.doubleslash.spring.introduction.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Requests the load test sends, named as in the <code>--mix</code> option.
+ */
+enum Operation {
+    ADD_CAR("add-car"),
+    GET_CAR("get-car"),
+    GET_IMAGE("get-image"),
+    DELETE_BRAND("delete-brand");
+
+    private final String optionName;
+
+    Operation(String optionName) {
+        this.optionName = optionName;
+    }
+
+    static Operation fromOptionName(String optionName) {
+        return Arrays.stream(values()).filter(operation -> operation.optionName.equals(optionName)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operation %s".formatted(optionName)));
+    }
+
+    String getOptionName() {
+        return optionName;
+    }
+}
@@ -0,0 +1,11 @@
+package de.doubleslash.spring.introduction.loadtest;
+
+/**
+ * Results of one operation during the measurement. Latencies are measured from the time a request was scheduled to
+ * start, so that time spent waiting for a slow app is included.
+ *
+ * @param throughput requests per second
+ */
+record OperationReport(String operation, int requests, int errors, double throughput, double p50Millis,
+                       double p99Millis, double p999Millis, double maxMillis) {
+}